@@ -11,9 +11,13 @@
 
 package org.mihalis.opal.calculator;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.SWTException;
-import org.eclipse.swt.events.KeyListener;
+import org.eclipse.swt.events.KeyAdapter;
+import org.eclipse.swt.events.KeyEvent;
 import org.eclipse.swt.events.ModifyListener;
 import org.eclipse.swt.graphics.Color;
 import org.eclipse.swt.graphics.GC;
@@ -55,8 +59,8 @@ public class CalculatorCombo extends Composite {
 	private Shell popup;
 	private Listener listener, filter;
 	private boolean hasFocus;
-	private KeyListener keyListener;
 	private CalculatorButtonsComposite composite;
+	private final List<ModifyListener> modifyListeners;
 
 	/**
 	 * Constructs a new instance of this class given its parent.
@@ -138,7 +142,16 @@ public class CalculatorCombo extends Composite {
 			}
 		};
 
-		createPopupShell();
+		this.modifyListeners = new ArrayList<ModifyListener>();
+
+		// The keys typed in the label are handled by the calculator, which is
+		// created the first time it is needed
+		this.label.addKeyListener(new KeyAdapter() {
+			@Override
+			public void keyReleased(final KeyEvent e) {
+				getButtonsComposite().getKeyListener().keyReleased(e);
+			}
+		});
 	}
 
 	/**
@@ -161,11 +174,6 @@ public class CalculatorCombo extends Composite {
 			case SWT.Deactivate:
 				hidePopupWindow(false);
 				break;
-			case SWT.Dispose:
-				if (this.keyListener != null) {
-					this.label.removeKeyListener(this.keyListener);
-				}
-				break;
 		}
 	}
 
@@ -186,9 +194,7 @@ public class CalculatorCombo extends Composite {
 			return;
 		}
 
-		if (getShell() != this.popup.getParent()) {
-			this.popup.dispose();
-			this.popup = null;
+		if (this.popup == null || this.popup.isDisposed() || getShell() != this.popup.getParent()) {
 			createPopupShell();
 		}
 
@@ -201,22 +207,50 @@ public class CalculatorCombo extends Composite {
 		this.popup.setFocus();
 	}
 
+	/**
+	 * Create the popup shell. It is created the first time it is displayed,
+	 * then it is hidden and displayed again. If the receiver has been moved to
+	 * another shell, the calculator is moved to a new popup shell.
+	 */
 	private void createPopupShell() {
+		final Shell previousPopup = this.popup;
 		this.popup = new Shell(getShell(), SWT.NO_TRIM | SWT.ON_TOP);
 		this.popup.setLayout(new GridLayout());
 
-		final int[] popupEvents = { SWT.Close, SWT.Paint, SWT.Deactivate, SWT.Dispose };
+		final int[] popupEvents = { SWT.Close, SWT.Paint, SWT.Deactivate };
 		for (final int popupEvent : popupEvents) {
 			this.popup.addListener(popupEvent, this.listener);
 		}
 
+		if (this.composite != null && !this.composite.isDisposed() && this.composite.isReparentable()) {
+			this.composite.setParent(this.popup);
+		} else {
+			createButtonsComposite();
+		}
+		if (previousPopup != null && !previousPopup.isDisposed()) {
+			previousPopup.dispose();
+		}
+
+		this.popup.pack();
+	}
+
+	/**
+	 * @return the calculator, created if needed
+	 */
+	private CalculatorButtonsComposite getButtonsComposite() {
+		if (this.composite == null || this.composite.isDisposed()) {
+			createPopupShell();
+		}
+		return this.composite;
+	}
+
+	private void createButtonsComposite() {
 		this.composite = new CalculatorButtonsComposite(this.popup, SWT.NONE);
 		this.composite.setLayoutData(new GridData(GridData.FILL, GridData.FILL, true, true));
 		this.composite.setDisplayArea(this.label);
-		this.keyListener = this.composite.getKeyListener();
-		this.label.addKeyListener(this.keyListener);
-
-		this.popup.pack();
+		for (final ModifyListener modifyListener : this.modifyListeners) {
+			this.composite.addModifyListener(modifyListener);
+		}
 	}
 
 	private void handleButtonEvent(final Event event) {
@@ -273,7 +307,7 @@ public class CalculatorCombo extends Composite {
 	}
 
 	private boolean isPopupVisible() {
-		return !this.popup.isDisposed() && this.popup.getVisible();
+		return this.popup != null && !this.popup.isDisposed() && this.popup.getVisible();
 	}
 
 	private void handleMultiChoiceEvent(final Event event) {
@@ -322,7 +356,13 @@ public class CalculatorCombo extends Composite {
 	 */
 	public void addModifyListener(final ModifyListener listener) {
 		checkWidget();
-		this.composite.addModifyListener(listener);
+		if (listener == null) {
+			SWT.error(SWT.ERROR_NULL_ARGUMENT);
+		}
+		this.modifyListeners.add(listener);
+		if (this.composite != null && !this.composite.isDisposed()) {
+			this.composite.addModifyListener(listener);
+		}
 	}
 
 	/**
@@ -381,7 +421,13 @@ public class CalculatorCombo extends Composite {
 	 */
 	public void removeModifyListener(final ModifyListener listener) {
 		checkWidget();
-		this.composite.removeModifyListener(listener);
+		if (listener == null) {
+			SWT.error(SWT.ERROR_NULL_ARGUMENT);
+		}
+		this.modifyListeners.remove(listener);
+		if (this.composite != null && !this.composite.isDisposed()) {
+			this.composite.removeModifyListener(listener);
+		}
 	}
 
 	/**
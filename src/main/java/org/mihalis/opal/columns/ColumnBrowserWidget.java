@@ -12,8 +12,9 @@ package org.mihalis.opal.columns;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Iterator;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.SWTException;
@@ -37,6 +38,8 @@ import org.eclipse.swt.widgets.Table;
 import org.eclipse.swt.widgets.TableColumn;
 import org.eclipse.swt.widgets.TableItem;
 import org.eclipse.swt.widgets.Widget;
+import org.mihalis.opal.utils.ModelUpdateQueue;
+import org.mihalis.opal.utils.ResourceManager;
 import org.mihalis.opal.utils.SWTGraphicUtil;
 
 /**
@@ -52,10 +55,20 @@ import org.mihalis.opal.utils.SWTGraphicUtil;
  */
 public class ColumnBrowserWidget extends ScrolledComposite {
 
+	private static final String CHILDREN_KEY = "org.mihalis.opal.columns.ColumnBrowserWidget.children";
+	private static final String COLUMN_INDEX_KEY = "org.mihalis.opal.columns.ColumnBrowserWidget.columnIndex";
+	private static final int MAXIMUM_POOLED_TABLES = 8;
 	private final List<Table> columns;
+	private final List<Table> pooledTables;
 	private final Composite composite;
 	private final Image columnArrow;
 	private final List<SelectionListener> selectionListeners;
+	private int updateDepth;
+	private boolean contentUpdateNeeded;
+	private final Set<ColumnItem> modifiedItems = Collections.newSetFromMap(new IdentityHashMap<ColumnItem, Boolean>());
+	private ModelUpdateQueue<ColumnBrowserWidget> updateQueue;
+	private ColumnLoader loader;
+	private int maximumCachedItems = 100;
 
 	/**
 	 * Constructs a new instance of this class given its parent and a style
@@ -97,6 +110,7 @@ public class ColumnBrowserWidget extends ScrolledComposite {
 		this.columnArrow = SWTGraphicUtil.createImageFromFile("images/columnArrow.png");
 
 		this.columns = new ArrayList<Table>();
+		this.pooledTables = new ArrayList<Table>();
 		for (int i = 0; i < 3; i++) {
 			this.createTable();
 		}
@@ -118,6 +132,7 @@ public class ColumnBrowserWidget extends ScrolledComposite {
 			@Override
 			public void widgetDisposed(final DisposeEvent arg0) {
 				SWTGraphicUtil.safeDispose(ColumnBrowserWidget.this.columnArrow);
+				ColumnBrowserWidget.this.closeLoader();
 			}
 		});
 
@@ -127,14 +142,21 @@ public class ColumnBrowserWidget extends ScrolledComposite {
 	 * Create a column that displays data
 	 */
 	private void createTable() {
-		final Table table = new Table(this.composite, SWT.SINGLE | SWT.H_SCROLL | SWT.FULL_SELECTION | SWT.BORDER);
-		new TableColumn(table, SWT.LEFT);
-
-		table.setLayoutData(new RowData(150, 175));
+		final Table table;
+		if (this.pooledTables.isEmpty()) {
+			table = new Table(this.composite, SWT.SINGLE | SWT.H_SCROLL | SWT.FULL_SELECTION | SWT.BORDER | SWT.VIRTUAL);
+			new TableColumn(table, SWT.LEFT);
+			table.setLayoutData(new RowData(150, 175));
+			addTableListeners(table);
+		} else {
+			table = this.pooledTables.remove(this.pooledTables.size() - 1);
+			((RowData) table.getLayoutData()).exclude = false;
+			table.moveBelow(null);
+			table.setVisible(true);
+		}
+		table.setData(COLUMN_INDEX_KEY, this.columns.size());
 		this.columns.add(table);
 
-		addTableListeners(table);
-
 		if (super.getBackground() != null && super.getBackground().getRed() != 240 && super.getBackground().getGreen() != 240 && super.getBackground().getBlue() != 240) {
 			table.setBackground(super.getBackground());
 		}
@@ -148,6 +170,35 @@ public class ColumnBrowserWidget extends ScrolledComposite {
 
 	}
 
+	/**
+	 * Remove a column. The table is hidden and kept in a pool, so that it can
+	 * be reused by the next column instead of creating a new native widget.
+	 * 
+	 * @param table the table of the column
+	 */
+	private void releaseTable(final Table table) {
+		this.columns.remove(table);
+		if (this.pooledTables.size() >= MAXIMUM_POOLED_TABLES) {
+			table.dispose();
+			return;
+		}
+		table.setData(null);
+		table.setData(CHILDREN_KEY, null);
+		table.setItemCount(0);
+		table.setVisible(false);
+		((RowData) table.getLayoutData()).exclude = true;
+		this.pooledTables.add(table);
+	}
+
+	/**
+	 * @param table a column
+	 * @return the items displayed by the column, or null if the column is
+	 *         empty or loading
+	 */
+	private static ColumnItem[] getDisplayedItems(final Table table) {
+		return (ColumnItem[]) table.getData(CHILDREN_KEY);
+	}
+
 	private void addTableListeners(final Table table) {
 		table.addListener(SWT.Resize, new Listener() {
 
@@ -162,10 +213,30 @@ public class ColumnBrowserWidget extends ScrolledComposite {
 			@Override
 			public void handleEvent(final Event event) {
 				final Table table = (Table) event.widget;
-				if (table.getSelection() == null || table.getSelection().length != 1) {
+				if (table.getSelectionCount() != 1) {
+					return;
+				}
+				ColumnBrowserWidget.this.selectItem(table, table.getSelectionIndex());
+			}
+		});
+
+		table.addListener(SWT.SetData, new Listener() {
+			@Override
+			public void handleEvent(final Event event) {
+				final TableItem item = (TableItem) event.item;
+				final ColumnItem[] children = getDisplayedItems(table);
+				if (children == null || event.index >= children.length) {
+					item.setText(ResourceManager.getLabel(ResourceManager.COLUMN_BROWSER_LOADING));
 					return;
 				}
-				ColumnBrowserWidget.this.selectItem(table.getSelection()[0]);
+				final ColumnItem c = children[event.index];
+				item.setData(c);
+				if (c.getText() != null) {
+					item.setText(c.getText());
+				}
+				if (c.getImage() != null) {
+					item.setImage(c.getImage());
+				}
 			}
 		});
 
@@ -189,7 +260,7 @@ public class ColumnBrowserWidget extends ScrolledComposite {
 							return;
 						}
 
-						if (((ColumnItem) item.getData()).getItemCount() == 0) {
+						if (!((ColumnItem) item.getData()).hasChildren()) {
 							return;
 						}
 
@@ -252,99 +323,394 @@ public class ColumnBrowserWidget extends ScrolledComposite {
 	 * Perform actions when an item is selected (ie fill the next column and
 	 * force focus on it)
 	 * 
-	 * @param tableItem selected item
+	 * @param table the column that contains the selected item
+	 * @param index the index of the selected item
 	 */
-	private void selectItem(final TableItem tableItem) {
-		final ColumnItem c = (ColumnItem) tableItem.getData();
+	private void selectItem(final Table table, final int index) {
+		final ColumnItem[] children = getDisplayedItems(table);
+		if (children == null || index < 0 || index >= children.length) {
+			return;
+		}
+		final ColumnItem c = children[index];
 
-		if (c.getItemCount() == 0) {
+		if (!c.hasChildren()) {
 			return;
 		}
 
-		final int selectedColumn = this.findSelectedColumn(tableItem);
-		boolean needPacking = false;
-		if (selectedColumn != this.columns.size() - 1) {
-			for (int i = selectedColumn + 1; i < this.columns.size(); i++) {
-				this.columns.get(i).setData(null);
-				this.columns.get(i).deselectAll();
-			}
+		final int selectedColumn = this.findSelectedColumn(table);
+		for (int i = this.columns.size() - 1; i > selectedColumn; i--) {
+			this.releaseTable(this.columns.get(i));
+		}
+		this.createTable();
+		this.columns.get(this.columns.size() - 1).setData(c);
+		this.fillColumn(this.columns.get(this.columns.size() - 1));
 
-			int i = 0;
-			final Iterator<Table> it = this.columns.iterator();
-			while (it.hasNext()) {
-				final Table t = it.next();
-				if (i > selectedColumn) {
-					t.dispose();
-					it.remove();
-					this.setMinSize(this.composite.computeSize(SWT.DEFAULT, SWT.DEFAULT));
-				}
-				i++;
+		this.composite.pack();
+		this.setMinSize(this.composite.computeSize(SWT.DEFAULT, SWT.DEFAULT));
+		this.columns.get(this.columns.size() - 1).forceFocus();
+	}
+
+	/**
+	 * Find which column has been selected
+	 * 
+	 * @param table the column that contains the selected item
+	 * @return the index of the selected column
+	 */
+	private int findSelectedColumn(final Table table) {
+		// Columns are only added and removed at the end, so the index stored
+		// when the table has been added is still valid
+		final Integer index = (Integer) table.getData(COLUMN_INDEX_KEY);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * Update the content of the widget
+	 */
+	void updateContent() {
+		if (this.columns == null) {
+			return;
+		}
+		if (this.updateDepth > 0) {
+			this.contentUpdateNeeded = true;
+			return;
+		}
+
+		for (final Table table : this.columns) {
+			this.fillColumn(table);
+		}
+	}
+
+	/**
+	 * Update the content of the widget after the children of an item have been
+	 * modified: only the column that displays these children is filled again
+	 * 
+	 * @param item the modified item
+	 */
+	void updateContent(final ColumnItem item) {
+		if (this.columns == null || item == null) {
+			return;
+		}
+		if (this.updateDepth > 0) {
+			if (!this.contentUpdateNeeded) {
+				this.modifiedItems.add(item);
 			}
+			return;
+		}
 
-			if (selectedColumn != this.columns.size() - 1) {
-				this.columns.get(selectedColumn + 1).setData(c);
-			} else {
-				this.createTable();
-				this.columns.get(this.columns.size() - 1).setData(c);
+		for (final Table table : this.columns) {
+			if (table.getData() == item) {
+				this.fillColumn(table);
+			} else if (table.getData() != null && table.getData() == item.getParentItem()) {
+				// The arrow of the item may appear or disappear
+				table.redraw();
 			}
-			needPacking = true;
+		}
+	}
+
+	/**
+	 * Fill a column with the children of the item it displays. The table is
+	 * virtual: only the number of rows is set here, the visible rows are
+	 * filled on demand. The selected item remains selected if it is still a
+	 * child of the item.
+	 * 
+	 * @param table the column
+	 */
+	private void fillColumn(final Table table) {
+		final ColumnItem[] previousChildren = getDisplayedItems(table);
+		final int selectionIndex = table.getSelectionIndex();
+		final ColumnItem selectedItem = previousChildren == null || selectionIndex < 0 || selectionIndex >= previousChildren.length ? null : previousChildren[selectionIndex];
+
+		final ColumnItem columnItem = (ColumnItem) table.getData();
+		if (columnItem == null) {
+			table.setData(CHILDREN_KEY, null);
+			table.setItemCount(0);
+			return;
+		}
+		if (!columnItem.isLoaded() && this.loader != null) {
+			// A single row displays the loading message
+			table.setData(CHILDREN_KEY, null);
+			table.setItemCount(1);
+			table.clearAll();
+			this.loader.load(columnItem);
+			return;
+		}
 
+		final ColumnItem[] children = columnItem.getItems();
+		table.setData(CHILDREN_KEY, children);
+		table.setItemCount(children.length);
+		table.clearAll();
+
+		final int newSelectionIndex = getDisplayedPosition(children, selectedItem);
+		if (newSelectionIndex == -1) {
+			table.deselectAll();
 		} else {
-			this.createTable();
-			needPacking = true;
-			this.columns.get(this.columns.size() - 1).setData(c);
+			table.setSelection(newSelectionIndex);
 		}
-		this.updateContent();
-		if (needPacking) {
-			this.composite.pack();
-			this.setMinSize(this.composite.computeSize(SWT.DEFAULT, SWT.DEFAULT));
+	}
+
+	private static int getDisplayedPosition(final ColumnItem[] items, final ColumnItem item) {
+		if (items == null || item == null) {
+			return -1;
 		}
-		this.columns.get(this.columns.size() - 1).forceFocus();
+		final int position = item.getPosition();
+		return position >= 0 && position < items.length && items[position] == item ? position : -1;
 	}
 
 	/**
-	 * Find which column has been selected
+	 * Starts an update of the receiver: until <code>endUpdate()</code> is
+	 * called, the columns are not refreshed each time an item is added or
+	 * removed. Calls can be nested. Use it to build a tree of items: the
+	 * columns that display the modified items are then filled once, when the
+	 * update ends.
 	 * 
-	 * @param tableItem selected table item
-	 * @return the index of the selected column
+	 * @exception SWTException <ul>
+	 *                <li>ERROR_WIDGET_DISPOSED - if the receiver has been
+	 *                disposed</li>
+	 *                <li>ERROR_THREAD_INVALID_ACCESS - if not called from the
+	 *                thread that created the receiver</li>
+	 *                </ul>
 	 */
-	private int findSelectedColumn(final TableItem tableItem) {
-		for (int i = 0; i < this.columns.size(); i++) {
-			if (this.columns.get(i).equals(tableItem.getParent())) {
-				return i;
+	public void beginUpdate() {
+		checkWidget();
+		this.updateDepth++;
+	}
+
+	/**
+	 * Ends an update of the receiver. When the outermost update ends, the
+	 * columns are refreshed once if items have been added or removed.
+	 * 
+	 * @exception SWTException <ul>
+	 *                <li>ERROR_WIDGET_DISPOSED - if the receiver has been
+	 *                disposed</li>
+	 *                <li>ERROR_THREAD_INVALID_ACCESS - if not called from the
+	 *                thread that created the receiver</li>
+	 *                </ul>
+	 */
+	public void endUpdate() {
+		checkWidget();
+		if (this.updateDepth == 0 || --this.updateDepth > 0) {
+			return;
+		}
+		if (this.contentUpdateNeeded) {
+			this.contentUpdateNeeded = false;
+			this.modifiedItems.clear();
+			this.updateContent();
+			return;
+		}
+		if (!this.modifiedItems.isEmpty()) {
+			final ColumnItem[] items = this.modifiedItems.toArray(new ColumnItem[this.modifiedItems.size()]);
+			this.modifiedItems.clear();
+			for (final ColumnItem item : items) {
+				this.updateContent(item);
 			}
 		}
-		return -1;
 	}
 
 	/**
-	 * Update the content of the widget
+	 * Runs a set of changes as a single update of the receiver.
+	 * 
+	 * @param runnable code that changes the receiver
+	 * 
+	 * @exception IllegalArgumentException <ul>
+	 *                <li>ERROR_NULL_ARGUMENT - if the runnable is null</li>
+	 *                </ul>
+	 * @exception SWTException <ul>
+	 *                <li>ERROR_WIDGET_DISPOSED - if the receiver has been
+	 *                disposed</li>
+	 *                <li>ERROR_THREAD_INVALID_ACCESS - if not called from the
+	 *                thread that created the receiver</li>
+	 *                </ul>
 	 */
-	void updateContent() {
-		if (this.columns == null) {
-			return;
+	public void batch(final Runnable runnable) {
+		checkWidget();
+		if (runnable == null) {
+			SWT.error(SWT.ERROR_NULL_ARGUMENT);
 		}
+		this.beginUpdate();
+		try {
+			runnable.run();
+		} finally {
+			this.endUpdate();
+		}
+	}
 
-		for (int i = 0; i < this.columns.size(); i++) {
+	/**
+	 * Returns a queue that accepts changes of the receiver from any thread.
+	 * The changes are applied on the UI thread, all the changes posted between
+	 * two UI events being applied in a single batch.
+	 * 
+	 * @return the update queue of the receiver
+	 * 
+	 * @exception SWTException <ul>
+	 *                <li>ERROR_WIDGET_DISPOSED - if the receiver has been
+	 *                disposed</li>
+	 *                <li>ERROR_THREAD_INVALID_ACCESS - if not called from the
+	 *                thread that created the receiver</li>
+	 *                </ul>
+	 */
+	public ModelUpdateQueue<ColumnBrowserWidget> getUpdateQueue() {
+		checkWidget();
+		if (this.updateQueue == null) {
+			this.updateQueue = new ModelUpdateQueue<ColumnBrowserWidget>(this) {
+				@Override
+				protected void applyBatch(final ColumnBrowserWidget widget, final Runnable changes) {
+					widget.batch(changes);
+				}
+			};
+		}
+		return this.updateQueue;
+	}
 
-			final Table table = this.columns.get(i);
-			final int index = table.getSelectionIndex();
-			table.removeAll();
-			if (table.getData() == null) {
-				continue;
-			}
-			for (final ColumnItem c : ((ColumnItem) table.getData()).getItems()) {
-				final TableItem item = new TableItem(table, SWT.NONE);
-				item.setData(c);
-				if (c.getText() != null) {
-					item.setText(c.getText());
+	/**
+	 * Sets the provider of the content of the receiver. The children of an
+	 * element are fetched in background when the user opens it, and the
+	 * columns display a "Loading..." row until they arrive. The children of the
+	 * last opened elements are kept in memory (see
+	 * <code>setMaximumCachedItems</code>).
+	 * <p>
+	 * The items previously added to the receiver are removed. The root items
+	 * are the children of the input.
+	 * </p>
+	 * 
+	 * @param contentProvider the content provider, or null to stop using a
+	 *            content provider
+	 * @param input the element whose children are displayed in the first
+	 *            column
+	 * 
+	 * @exception SWTException <ul>
+	 *                <li>ERROR_WIDGET_DISPOSED - if the receiver has been
+	 *                disposed</li>
+	 *                <li>ERROR_THREAD_INVALID_ACCESS - if not called from the
+	 *                thread that created the receiver</li>
+	 *                </ul>
+	 * 
+	 * @see ColumnContentProvider
+	 */
+	public void setContentProvider(final ColumnContentProvider contentProvider, final Object input) {
+		checkWidget();
+		this.closeLoader();
+		if (contentProvider != null) {
+			this.loader = new ColumnLoader(contentProvider, this.getDisplay(), this.maximumCachedItems, new ColumnLoader.LoaderListener() {
+
+				@Override
+				public void childrenLoaded(final ColumnItem item, final Object[] children, final boolean[] expandable) {
+					if (ColumnBrowserWidget.this.isDisposed()) {
+						return;
+					}
+					for (int i = 0; i < children.length; i++) {
+						contentProvider.updateItem(new ColumnItem(item, children[i], expandable[i]));
+					}
+					item.setLoaded();
+					ColumnBrowserWidget.this.updateContent(item);
 				}
-				if (c.getImage() != null) {
-					item.setImage(c.getImage());
+
+				@Override
+				public void childrenFailed(final ColumnItem item) {
+					if (ColumnBrowserWidget.this.isDisposed()) {
+						return;
+					}
+					// The column is left empty instead of loading again and
+					// again: the item is loaded again when it is reopened
+					for (final Table table : ColumnBrowserWidget.this.columns) {
+						if (table.getData() == item) {
+							table.setData(CHILDREN_KEY, null);
+							table.setItemCount(0);
+						}
+					}
 				}
-			}
-			table.setSelection(index);
+
+				@Override
+				public boolean isDisplayed(final ColumnItem item) {
+					for (final Table table : ColumnBrowserWidget.this.columns) {
+						if (table.getData() == item) {
+							return true;
+						}
+					}
+					return false;
+				}
+			});
 		}
+		this.getRootItem().reset(input, contentProvider != null);
+		this.clear(true);
+	}
+
+	/**
+	 * Returns the provider of the content of the receiver.
+	 * 
+	 * @return the content provider, or null if the items are added to the
+	 *         receiver by the application
+	 * 
+	 * @exception SWTException <ul>
+	 *                <li>ERROR_WIDGET_DISPOSED - if the receiver has been
+	 *                disposed</li>
+	 *                <li>ERROR_THREAD_INVALID_ACCESS - if not called from the
+	 *                thread that created the receiver</li>
+	 *                </ul>
+	 */
+	public ColumnContentProvider getContentProvider() {
+		checkWidget();
+		return this.loader == null ? null : this.loader.getContentProvider();
+	}
+
+	/**
+	 * Sets the maximum number of elements whose children are kept in memory
+	 * when the content is provided by a <code>ColumnContentProvider</code>.
+	 * When this number is reached, the children of the least recently opened
+	 * element are dropped, unless they are displayed. The default value is
+	 * 100.
+	 * 
+	 * @param maximumCachedItems the maximum number of elements whose children
+	 *            are kept in memory
+	 * 
+	 * @exception IllegalArgumentException <ul>
+	 *                <li>ERROR_INVALID_ARGUMENT - if the value is not
+	 *                positive</li>
+	 *                </ul>
+	 * @exception SWTException <ul>
+	 *                <li>ERROR_WIDGET_DISPOSED - if the receiver has been
+	 *                disposed</li>
+	 *                <li>ERROR_THREAD_INVALID_ACCESS - if not called from the
+	 *                thread that created the receiver</li>
+	 *                </ul>
+	 */
+	public void setMaximumCachedItems(final int maximumCachedItems) {
+		checkWidget();
+		if (maximumCachedItems <= 0) {
+			SWT.error(SWT.ERROR_INVALID_ARGUMENT);
+		}
+		this.maximumCachedItems = maximumCachedItems;
+		if (this.loader != null) {
+			this.loader.setMaximumCachedItems(maximumCachedItems);
+		}
+	}
+
+	/**
+	 * Returns the maximum number of elements whose children are kept in
+	 * memory.
+	 * 
+	 * @return the maximum number of elements whose children are kept in memory
+	 * 
+	 * @exception SWTException <ul>
+	 *                <li>ERROR_WIDGET_DISPOSED - if the receiver has been
+	 *                disposed</li>
+	 *                <li>ERROR_THREAD_INVALID_ACCESS - if not called from the
+	 *                thread that created the receiver</li>
+	 *                </ul>
+	 */
+	public int getMaximumCachedItems() {
+		checkWidget();
+		return this.maximumCachedItems;
+	}
+
+	/**
+	 * Stops using the current content provider, if any
+	 */
+	private void closeLoader() {
+		if (this.loader == null) {
+			return;
+		}
+		this.loader.dispose();
+		this.loader = null;
 	}
 
 	/**
@@ -380,20 +746,15 @@ public class ColumnBrowserWidget extends ScrolledComposite {
 	 * @param needPacking if <code>true</code>, the widget is packed
 	 */
 	public void clear(final boolean needPacking) {
-		final Iterator<Table> it = this.columns.iterator();
-		int i = 0;
-		while (it.hasNext()) {
-			final Table t = it.next();
-			if (i >= 3) {
-				t.dispose();
-				it.remove();
-			} else {
-				if (i != 0) {
-					t.setData(null);
-				}
-				t.deselectAll();
+		for (int i = this.columns.size() - 1; i >= 3; i--) {
+			this.releaseTable(this.columns.get(i));
+		}
+		for (int i = 0; i < this.columns.size(); i++) {
+			final Table t = this.columns.get(i);
+			if (i != 0) {
+				t.setData(null);
 			}
-			i++;
+			t.deselectAll();
 		}
 		this.updateContent();
 		if (needPacking) {
@@ -419,10 +780,11 @@ public class ColumnBrowserWidget extends ScrolledComposite {
 	public ColumnItem getSelection() {
 		for (int i = this.columns.size() - 1; i >= 0; i--) {
 			final Table table = this.columns.get(i);
-			if (table == null || table.getData() == null || table.getSelection().length == 0) {
-				continue;
+			final ColumnItem[] children = getDisplayedItems(table);
+			final int index = table.getSelectionIndex();
+			if (children != null && index >= 0 && index < children.length) {
+				return children[index];
 			}
-			return (ColumnItem) table.getItem(table.getSelectionIndex()).getData();
 		}
 		return null;
 	}
@@ -470,29 +832,50 @@ public class ColumnBrowserWidget extends ScrolledComposite {
 	 *                </ul>
 	 */
 	public void select(final ColumnItem item) {
+		checkWidget();
+		if (item == null) {
+			SWT.error(SWT.ERROR_NULL_ARGUMENT);
+		}
+		if (item.getParent() != this) {
+			SWT.error(SWT.ERROR_INVALID_ARGUMENT);
+		}
 
-		final List<ColumnItem> items = new ArrayList<ColumnItem>();
-		this.findElement(item, items);
-		Collections.reverse(items);
-		if (items.isEmpty()) {
+		final List<ColumnItem> path = this.getPath(item);
+		if (path.isEmpty()) {
 			return;
 		}
 
-		this.clear(false);
-		for (int i = 3; i < items.size(); i++) {
+		// Column i displays the children of path[i - 1], and path[i] is
+		// selected in column i
+		final int numberOfColumns = Math.max(3, path.size());
+		for (int i = this.columns.size() - 1; i >= numberOfColumns; i--) {
+			this.releaseTable(this.columns.get(i));
+		}
+		while (this.columns.size() < numberOfColumns) {
 			this.createTable();
 		}
-		for (int i = 0; i < items.size() - 1; i++) {
-			this.columns.get(i + 1).setData(items.get(i));
+		// Only the columns that display another item are filled again
+		for (int i = 1; i < this.columns.size(); i++) {
+			final Table table = this.columns.get(i);
+			final ColumnItem displayedItem = i < path.size() ? path.get(i - 1) : null;
+			if (table.getData() == displayedItem) {
+				continue;
+			}
+			table.setData(displayedItem);
+			if (displayedItem == null) {
+				this.fillColumn(table);
+			} else {
+				this.updateContent(displayedItem);
+			}
 		}
-		this.updateContent();
 
-		for (int i = 0; i < this.columns.size() - 1; i++) {
-			final ColumnItem nextItem = (ColumnItem) this.columns.get(i + 1).getData();
-			for (final TableItem tableItem : this.columns.get(i).getItems()) {
-				if (tableItem.getData() != null && tableItem.getData().equals(nextItem)) {
-					tableItem.getParent().setSelection(tableItem);
-				}
+		for (int i = 0; i < this.columns.size(); i++) {
+			final Table table = this.columns.get(i);
+			final int index = i < path.size() ? getDisplayedPosition(getDisplayedItems(table), path.get(i)) : -1;
+			if (index == -1) {
+				table.deselectAll();
+			} else {
+				table.setSelection(index);
 			}
 		}
 
@@ -503,18 +886,21 @@ public class ColumnBrowserWidget extends ScrolledComposite {
 	}
 
 	/**
-	 * Build an array that contains the hierarchy of ColumnItem from the root
-	 * node to a given item.
+	 * Build the list of the ancestors of an item, by following the links to
+	 * the parents (the cost is proportional to the depth of the item).
 	 * 
 	 * @param item item to find
-	 * @param items the lists of item that composes the hierarchy
+	 * @return the items from the top level item to the given item (the root
+	 *         item is excluded)
 	 */
-	private void findElement(final ColumnItem item, final List<ColumnItem> items) {
-		if (item == null) {
-			return;
+	private List<ColumnItem> getPath(final ColumnItem item) {
+		final ColumnItem root = this.getRootItem();
+		final List<ColumnItem> path = new ArrayList<ColumnItem>();
+		for (ColumnItem current = item; current != null && current != root; current = current.getParentItem()) {
+			path.add(current);
 		}
-		items.add(item);
-		this.findElement(item.getParentItem(), items);
+		Collections.reverse(path);
+		return path;
 	}
 
 	/**
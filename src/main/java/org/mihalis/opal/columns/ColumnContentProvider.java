@@ -0,0 +1,53 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Laurent CARON
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Laurent CARON (laurent.caron at gmail dot com) - Initial implementation and API
+ *******************************************************************************/
+package org.mihalis.opal.columns;
+
+/**
+ * Classes which implement this interface provide the content of a
+ * ColumnBrowserWidget on demand: the children of an element are only fetched
+ * when the user opens it, so that the whole tree never has to be built.
+ * <p>
+ * The methods <code>getChildren()</code> and <code>hasChildren()</code> are
+ * called from a background thread, so they must not access widgets. The method
+ * <code>updateItem()</code> is called from the UI thread.
+ * </p>
+ *
+ * @see ColumnBrowserWidget#setContentProvider(ColumnContentProvider, Object)
+ */
+public interface ColumnContentProvider {
+
+	/**
+	 * Returns the children of an element
+	 *
+	 * @param element an element returned by this provider, or the input of
+	 *            the widget
+	 * @return the children of the element
+	 */
+	Object[] getChildren(Object element);
+
+	/**
+	 * Tells if an element has children, without fetching them. The widget
+	 * displays an arrow next to the elements that have children.
+	 *
+	 * @param element an element returned by this provider
+	 * @return <code>true</code> if the element has children
+	 */
+	boolean hasChildren(Object element);
+
+	/**
+	 * Fills an item created for an element (text, image...). The element is
+	 * returned by <code>item.getData()</code>.
+	 *
+	 * @param item the item that displays the element
+	 */
+	void updateItem(ColumnItem item);
+
+}
@@ -28,6 +28,9 @@ public class ColumnItem extends OpalItem {
 	private final ColumnBrowserWidget widget;
 	private final ColumnItem parent;
 	private final List<ColumnItem> children;
+	private boolean expandable;
+	private boolean loaded = true;
+	private int position = -1;
 
 	/**
 	 * Constructs a new instance of this class given its parent. The item is
@@ -59,7 +62,7 @@ public class ColumnItem extends OpalItem {
 		if (widget.getRootItem() != null) {
 			widget.getRootItem().children.add(this);
 		}
-		widget.updateContent();
+		widget.updateContent(widget.getRootItem());
 	}
 
 	/**
@@ -91,7 +94,7 @@ public class ColumnItem extends OpalItem {
 		this.parent = null;
 		this.children = new ArrayList<ColumnItem>();
 		widget.getRootItem().children.add(index, this);
-		widget.updateContent();
+		widget.updateContent(widget.getRootItem());
 	}
 
 	/**
@@ -122,7 +125,7 @@ public class ColumnItem extends OpalItem {
 		this.parent = parent;
 		this.children = new ArrayList<ColumnItem>();
 		parent.children.add(this);
-		parent.widget.updateContent();
+		parent.widget.updateContent(parent);
 	}
 
 	/**
@@ -153,7 +156,101 @@ public class ColumnItem extends OpalItem {
 		this.parent = parent;
 		this.children = new ArrayList<ColumnItem>();
 		parent.children.add(index, this);
-		parent.widget.updateContent();
+		parent.widget.updateContent(parent);
+	}
+
+	/**
+	 * Constructs an item for an element provided by a
+	 * <code>ColumnContentProvider</code>. The widget is not refreshed, and the
+	 * children of the item will be fetched when the item is opened.
+	 * 
+	 * @param parent the parent item
+	 * @param element the element displayed by this item
+	 * @param expandable <code>true</code> if the element has children
+	 */
+	ColumnItem(final ColumnItem parent, final Object element, final boolean expandable) {
+		this.widget = parent.widget;
+		this.parent = parent;
+		this.children = new ArrayList<ColumnItem>();
+		this.expandable = expandable;
+		this.loaded = !expandable;
+		setData(element);
+		parent.children.add(this);
+	}
+
+	/**
+	 * Returns the position of this item in the children of its parent. The
+	 * positions are cached: when the cached position is wrong (because items
+	 * have been added or removed), the positions of all the siblings are
+	 * computed again in a single pass.
+	 * 
+	 * @return the position of this item, or -1 if it has been removed or if it
+	 *         is the root item
+	 */
+	int getPosition() {
+		final ColumnItem container = this.parent == null ? this.widget.getRootItem() : this.parent;
+		if (container == null || container == this) {
+			return -1;
+		}
+		final List<ColumnItem> siblings = container.children;
+		if (this.position >= 0 && this.position < siblings.size() && siblings.get(this.position) == this) {
+			return this.position;
+		}
+		this.position = -1;
+		for (int i = 0; i < siblings.size(); i++) {
+			siblings.get(i).position = i;
+		}
+		if (this.position >= 0 && siblings.get(this.position) != this) {
+			this.position = -1;
+		}
+		return this.position;
+	}
+
+	/**
+	 * @return <code>true</code> if this item has children, or if it has
+	 *         children that have not been fetched yet
+	 */
+	boolean hasChildren() {
+		return !this.children.isEmpty() || !this.loaded && this.expandable;
+	}
+
+	/**
+	 * @return <code>false</code> if the children of this item must be fetched
+	 *         from the content provider
+	 */
+	boolean isLoaded() {
+		return this.loaded;
+	}
+
+	/**
+	 * Mark the children of this item as fetched
+	 */
+	void setLoaded() {
+		this.loaded = true;
+	}
+
+	/**
+	 * Drop the children of this item: they will be fetched again from the
+	 * content provider
+	 */
+	void unload() {
+		this.children.clear();
+		this.loaded = false;
+		this.expandable = true;
+	}
+
+	/**
+	 * Remove the children of this item (the root item)
+	 * 
+	 * @param element the new element of this item
+	 * @param lazy if <code>true</code>, the children will be fetched from the
+	 *            content provider
+	 */
+	void reset(final Object element, final boolean lazy) {
+		this.children.clear();
+		setData(element);
+		this.expandable = lazy;
+		this.loaded = !lazy;
 	}
 
 	/**
@@ -177,8 +274,11 @@ public class ColumnItem extends OpalItem {
 		if (this.widget.isDisposed()) {
 			SWT.error(SWT.ERROR_WIDGET_DISPOSED);
 		}
-		this.children.remove(item);
-		this.widget.updateContent();
+		final int index = this.indexOf(item);
+		if (index != -1) {
+			this.children.remove(index);
+		}
+		this.widget.updateContent(this);
 	}
 
 	/**
@@ -203,7 +303,7 @@ public class ColumnItem extends OpalItem {
 			SWT.error(SWT.ERROR_WIDGET_DISPOSED);
 		}
 		this.children.remove(index);
-		this.widget.updateContent();
+		this.widget.updateContent(this);
 	}
 
 	/**
@@ -226,7 +326,7 @@ public class ColumnItem extends OpalItem {
 			SWT.error(SWT.ERROR_WIDGET_DISPOSED);
 		}
 		this.children.clear();
-		this.widget.updateContent();
+		this.widget.updateContent(this);
 	}
 
 	/**
@@ -359,7 +459,11 @@ public class ColumnItem extends OpalItem {
 	 *                </ul>
 	 */
 	public int indexOf(final ColumnItem item) {
-		return this.children.indexOf(item);
+		if (item == null || item.widget != this.widget) {
+			return -1;
+		}
+		final int index = item.getPosition();
+		return index != -1 && index < this.children.size() && this.children.get(index) == item ? index : -1;
 	}
 
 	/**
@@ -0,0 +1,279 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Laurent CARON
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Laurent CARON (laurent.caron at gmail dot com) - Initial implementation and API
+ *******************************************************************************/
+package org.mihalis.opal.columns;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.eclipse.swt.SWTException;
+import org.eclipse.swt.widgets.Display;
+
+/**
+ * Instances of this class fetch the children of the items of a
+ * ColumnBrowserWidget from a <code>ColumnContentProvider</code> on a
+ * background thread, and keep the children of the last opened items in a
+ * bounded cache. When the cache is full, the children of the least recently
+ * opened item are dropped (they will be fetched again if the item is opened
+ * again).<br/>
+ * All methods must be called from the UI thread.
+ */
+class ColumnLoader {
+
+	/**
+	 * Callbacks called on the UI thread
+	 */
+	interface LoaderListener {
+		/**
+		 * Called when the children of an item have been fetched
+		 *
+		 * @param item the opened item
+		 * @param children the children of the item
+		 * @param expandable for each child, <code>true</code> if it has
+		 *            children
+		 */
+		void childrenLoaded(ColumnItem item, Object[] children, boolean[] expandable);
+
+		/**
+		 * Called when the content provider has thrown an exception while
+		 * fetching the children of an item. The item is not loaded, so its
+		 * children are fetched again the next time it is opened.
+		 *
+		 * @param item the opened item
+		 */
+		void childrenFailed(ColumnItem item);
+
+		/**
+		 * @param item a loaded item
+		 * @return <code>true</code> if the children of the item are displayed,
+		 *         so they must not be dropped
+		 */
+		boolean isDisplayed(ColumnItem item);
+	}
+
+	private final ColumnContentProvider contentProvider;
+	private final Display display;
+	private final LoaderListener listener;
+	private final ExecutorService executor;
+
+	private int maximumCachedItems;
+	private final List<ColumnItem> loadedItems;
+	private final Set<ColumnItem> pendingItems;
+	private boolean disposed;
+
+	/**
+	 * Constructor
+	 *
+	 * @param contentProvider provider of the children
+	 * @param display display used to report the loaded data
+	 * @param maximumCachedItems maximum number of items whose children are
+	 *            kept in memory
+	 * @param listener listener notified when data arrives
+	 */
+	ColumnLoader(final ColumnContentProvider contentProvider, final Display display, final int maximumCachedItems, final LoaderListener listener) {
+		this.contentProvider = contentProvider;
+		this.display = display;
+		this.listener = listener;
+		this.maximumCachedItems = maximumCachedItems;
+		this.loadedItems = new ArrayList<ColumnItem>();
+		this.pendingItems = Collections.newSetFromMap(new IdentityHashMap<ColumnItem, Boolean>());
+		this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(final Runnable runnable) {
+				final Thread thread = new Thread(runnable, "Opal ColumnBrowser loader");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * @return the content provider
+	 */
+	ColumnContentProvider getContentProvider() {
+		return this.contentProvider;
+	}
+
+	/**
+	 * Fetch the children of an item in background, unless they are already
+	 * loaded or being loaded
+	 *
+	 * @param item the opened item
+	 */
+	void load(final ColumnItem item) {
+		if (item.isLoaded()) {
+			touch(item);
+			return;
+		}
+		if (!this.pendingItems.add(item)) {
+			return;
+		}
+		final Object element = item.getData();
+		this.executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				Object[] children = null;
+				boolean[] expandable = null;
+				try {
+					children = ColumnLoader.this.contentProvider.getChildren(element);
+					if (children == null) {
+						children = new Object[0];
+					}
+					expandable = new boolean[children.length];
+					for (int i = 0; i < children.length; i++) {
+						expandable[i] = ColumnLoader.this.contentProvider.hasChildren(children[i]);
+					}
+				} finally {
+					if (expandable == null) {
+						// The exception goes on to the uncaught exception
+						// handler of the thread, which reports it
+						asyncExec(new Runnable() {
+							@Override
+							public void run() {
+								if (ColumnLoader.this.pendingItems.remove(item)) {
+									ColumnLoader.this.listener.childrenFailed(item);
+								}
+							}
+						});
+					}
+				}
+				final Object[] loadedChildren = children;
+				final boolean[] loadedExpandable = expandable;
+				asyncExec(new Runnable() {
+					@Override
+					public void run() {
+						if (!ColumnLoader.this.pendingItems.remove(item)) {
+							return;
+						}
+						ColumnLoader.this.listener.childrenLoaded(item, loadedChildren, loadedExpandable);
+						touch(item);
+					}
+				});
+			}
+		});
+	}
+
+	/**
+	 * @param item an item
+	 * @return <code>true</code> if the children of the item are being fetched
+	 */
+	boolean isLoading(final ColumnItem item) {
+		return this.pendingItems.contains(item);
+	}
+
+	/**
+	 * @param maximumCachedItems the maximum number of items whose children are
+	 *            kept in memory
+	 */
+	void setMaximumCachedItems(final int maximumCachedItems) {
+		this.maximumCachedItems = maximumCachedItems;
+		evict();
+	}
+
+	/**
+	 * Stop loading data
+	 */
+	void dispose() {
+		this.disposed = true;
+		this.pendingItems.clear();
+		this.executor.shutdownNow();
+	}
+
+	/**
+	 * Mark an item as the most recently used one
+	 *
+	 * @param item a loaded item
+	 */
+	private void touch(final ColumnItem item) {
+		removeLoadedItem(item);
+		this.loadedItems.add(item);
+		evict();
+	}
+
+	/**
+	 * Drop the children of the least recently used items that are not
+	 * displayed, until the cache is not full
+	 */
+	private void evict() {
+		final Iterator<ColumnItem> it = this.loadedItems.iterator();
+		int size = this.loadedItems.size();
+		final List<ColumnItem> evicted = new ArrayList<ColumnItem>();
+		while (size > this.maximumCachedItems && it.hasNext()) {
+			final ColumnItem item = it.next();
+			if (this.listener.isDisplayed(item)) {
+				continue;
+			}
+			it.remove();
+			size--;
+			item.unload();
+			evicted.add(item);
+		}
+		if (evicted.isEmpty()) {
+			return;
+		}
+
+		// The descendants of the dropped items are not reachable any more
+		final Iterator<ColumnItem> descendants = this.loadedItems.iterator();
+		while (descendants.hasNext()) {
+			final ColumnItem item = descendants.next();
+			for (final ColumnItem evictedItem : evicted) {
+				if (isDescendant(item, evictedItem)) {
+					descendants.remove();
+					break;
+				}
+			}
+		}
+	}
+
+	private static boolean isDescendant(final ColumnItem item, final ColumnItem ancestor) {
+		for (ColumnItem current = item.getParentItem(); current != null; current = current.getParentItem()) {
+			if (current == ancestor) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void removeLoadedItem(final ColumnItem item) {
+		final Iterator<ColumnItem> it = this.loadedItems.iterator();
+		while (it.hasNext()) {
+			if (it.next() == item) {
+				it.remove();
+				return;
+			}
+		}
+	}
+
+	private void asyncExec(final Runnable runnable) {
+		if (this.display.isDisposed()) {
+			return;
+		}
+		try {
+			this.display.asyncExec(new Runnable() {
+				@Override
+				public void run() {
+					if (!ColumnLoader.this.disposed) {
+						runnable.run();
+					}
+				}
+			});
+		} catch (final SWTException e) {
+			// The display has been disposed in the meantime
+		}
+	}
+
+}
@@ -0,0 +1,54 @@
+/*******************************************************************************
+ * Copyright (c) 2011 Laurent CARON
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Laurent CARON (laurent.caron at gmail dot com) - Initial implementation and API
+ *******************************************************************************/
+package org.mihalis.opal.heapManager;
+
+/**
+ * Instances of this class are the lines of a class histogram
+ */
+class ClassHistogramEntry {
+	private final String className;
+	private final long instances;
+	private final long bytes;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param className name of the class
+	 * @param instances number of instances
+	 * @param bytes memory used by the instances
+	 */
+	ClassHistogramEntry(final String className, final long instances, final long bytes) {
+		this.className = className;
+		this.instances = instances;
+		this.bytes = bytes;
+	}
+
+	/**
+	 * @return the name of the class
+	 */
+	String getClassName() {
+		return this.className;
+	}
+
+	/**
+	 * @return the number of instances
+	 */
+	long getInstances() {
+		return this.instances;
+	}
+
+	/**
+	 * @return the memory used by the instances
+	 */
+	long getBytes() {
+		return this.bytes;
+	}
+}
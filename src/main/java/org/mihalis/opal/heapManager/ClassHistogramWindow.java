@@ -0,0 +1,148 @@
+/*******************************************************************************
+ * Copyright (c) 2011 Laurent CARON
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Laurent CARON (laurent.caron at gmail dot com) - Initial implementation and API
+ *******************************************************************************/
+package org.mihalis.opal.heapManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.events.SelectionAdapter;
+import org.eclipse.swt.events.SelectionEvent;
+import org.eclipse.swt.layout.FillLayout;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Listener;
+import org.eclipse.swt.widgets.Shell;
+import org.eclipse.swt.widgets.Table;
+import org.eclipse.swt.widgets.TableColumn;
+import org.eclipse.swt.widgets.TableItem;
+import org.mihalis.opal.utils.ResourceManager;
+
+/**
+ * Instances of this class are windows that display a class histogram in a
+ * table, sorted by clicking on the column headers. The table is virtual, so
+ * only the visible lines are created.
+ */
+class ClassHistogramWindow {
+	private final Shell shell;
+	private final Table table;
+	private final List<ClassHistogramEntry> entries;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param parent parent shell
+	 * @param entries entries of the histogram
+	 */
+	ClassHistogramWindow(final Shell parent, final List<ClassHistogramEntry> entries) {
+		this.entries = new ArrayList<ClassHistogramEntry>(entries);
+		this.shell = new Shell(parent, SWT.SHELL_TRIM);
+		this.shell.setText(ResourceManager.getLabel(ResourceManager.HEAP_MANAGER_CLASS_HISTOGRAM));
+		this.shell.setLayout(new FillLayout());
+
+		this.table = new Table(this.shell, SWT.VIRTUAL | SWT.BORDER | SWT.FULL_SELECTION);
+		this.table.setHeaderVisible(true);
+		this.table.setLinesVisible(true);
+
+		final TableColumn classColumn = createColumn(ResourceManager.HEAP_MANAGER_CLASS, SWT.LEFT, 400, new Comparator<ClassHistogramEntry>() {
+			@Override
+			public int compare(final ClassHistogramEntry first, final ClassHistogramEntry second) {
+				return first.getClassName().compareTo(second.getClassName());
+			}
+		});
+		createColumn(ResourceManager.HEAP_MANAGER_INSTANCES, SWT.RIGHT, 120, new Comparator<ClassHistogramEntry>() {
+			@Override
+			public int compare(final ClassHistogramEntry first, final ClassHistogramEntry second) {
+				return compareLongs(first.getInstances(), second.getInstances());
+			}
+		});
+		final TableColumn bytesColumn = createColumn(ResourceManager.HEAP_MANAGER_BYTES, SWT.RIGHT, 120, new Comparator<ClassHistogramEntry>() {
+			@Override
+			public int compare(final ClassHistogramEntry first, final ClassHistogramEntry second) {
+				return compareLongs(first.getBytes(), second.getBytes());
+			}
+		});
+
+		this.table.addListener(SWT.SetData, new Listener() {
+			@Override
+			public void handleEvent(final Event event) {
+				final TableItem item = (TableItem) event.item;
+				final ClassHistogramEntry entry = ClassHistogramWindow.this.entries.get(ClassHistogramWindow.this.table.indexOf(item));
+				item.setText(new String[] { entry.getClassName(), String.valueOf(entry.getInstances()), String.valueOf(entry.getBytes()) });
+			}
+		});
+
+		// The histogram is sorted by decreasing memory usage
+		this.table.setSortColumn(bytesColumn);
+		this.table.setSortDirection(SWT.DOWN);
+		this.table.setItemCount(this.entries.size());
+		classColumn.pack();
+		classColumn.setWidth(Math.max(400, Math.min(classColumn.getWidth(), 800)));
+
+		this.shell.setSize(700, 500);
+	}
+
+	/**
+	 * Create a sortable column
+	 * 
+	 * @param key key of the label of the column
+	 * @param alignment alignment of the column
+	 * @param width width of the column
+	 * @param comparator comparator used to sort the entries
+	 * @return the column
+	 */
+	private TableColumn createColumn(final String key, final int alignment, final int width, final Comparator<ClassHistogramEntry> comparator) {
+		final TableColumn column = new TableColumn(this.table, alignment);
+		column.setText(ResourceManager.getLabel(key));
+		column.setWidth(width);
+		column.addSelectionListener(new SelectionAdapter() {
+			/**
+			 * @see org.eclipse.swt.events.SelectionAdapter#widgetSelected(org.eclipse.swt.events.SelectionEvent)
+			 */
+			@Override
+			public void widgetSelected(final SelectionEvent e) {
+				sort(column, comparator);
+			}
+		});
+		return column;
+	}
+
+	/**
+	 * Sort the entries. Clicking again on the sort column reverses the order.
+	 * 
+	 * @param column selected column
+	 * @param comparator comparator associated to the column
+	 */
+	private void sort(final TableColumn column, final Comparator<ClassHistogramEntry> comparator) {
+		final int direction;
+		if (this.table.getSortColumn() == column) {
+			direction = this.table.getSortDirection() == SWT.UP ? SWT.DOWN : SWT.UP;
+		} else {
+			direction = SWT.UP;
+		}
+		Collections.sort(this.entries, direction == SWT.UP ? comparator : Collections.reverseOrder(comparator));
+		this.table.setSortColumn(column);
+		this.table.setSortDirection(direction);
+		this.table.clearAll();
+	}
+
+	private static int compareLongs(final long first, final long second) {
+		return first < second ? -1 : first == second ? 0 : 1;
+	}
+
+	/**
+	 * Open the window
+	 */
+	void open() {
+		this.shell.open();
+	}
+}
@@ -0,0 +1,166 @@
+/*******************************************************************************
+ * Copyright (c) 2011 Laurent CARON
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Laurent CARON (laurent.caron at gmail dot com) - Initial implementation and API
+ *******************************************************************************/
+package org.mihalis.opal.heapManager;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringTokenizer;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * This class contains the diagnostics offered by the {@link HeapManager}. All
+ * methods are blocking and must be called from a background thread. The
+ * HotSpot specific MBeans are accessed through the platform MBean server, so
+ * there is no dependency on the com.sun.management package.
+ */
+class HeapDiagnostics {
+	private static final long MB = 1024 * 1024;
+	private static final String HOTSPOT_DIAGNOSTIC_OBJECT_NAME = "com.sun.management:type=HotSpotDiagnostic";
+	private static final String DIAGNOSTIC_COMMAND_OBJECT_NAME = "com.sun.management:type=DiagnosticCommand";
+	private static final String DUMP_HEAP = "dumpHeap";
+	private static final String GC_CLASS_HISTOGRAM = "gcClassHistogram";
+	private static final String HPROF_EXTENSION = ".hprof";
+
+	/**
+	 * Result of a GC
+	 */
+	static class GcResult {
+		private final long usedBefore;
+		private final long usedAfter;
+		private final long duration;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param usedBefore used heap before the GC, in bytes
+		 * @param usedAfter used heap after the GC, in bytes
+		 * @param duration duration of the GC, in ms
+		 */
+		GcResult(final long usedBefore, final long usedAfter, final long duration) {
+			this.usedBefore = usedBefore;
+			this.usedAfter = usedAfter;
+			this.duration = duration;
+		}
+
+		/**
+		 * @return the used heap before the GC, in MB
+		 */
+		long getUsedBefore() {
+			return this.usedBefore / MB;
+		}
+
+		/**
+		 * @return the used heap after the GC, in MB
+		 */
+		long getUsedAfter() {
+			return this.usedAfter / MB;
+		}
+
+		/**
+		 * @return the memory freed by the GC, in MB
+		 */
+		long getFreed() {
+			return Math.max(0, this.usedBefore - this.usedAfter) / MB;
+		}
+
+		/**
+		 * @return the duration of the GC, in ms
+		 */
+		long getDuration() {
+			return this.duration;
+		}
+	}
+
+	private HeapDiagnostics() {
+	}
+
+	/**
+	 * Perform a GC and measure the used heap before and after
+	 * 
+	 * @return the result of the GC
+	 */
+	static GcResult performGC() {
+		final MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
+		final long before = memoryBean.getHeapMemoryUsage().getUsed();
+		final long start = System.nanoTime();
+		memoryBean.gc();
+		final long duration = (System.nanoTime() - start) / 1000000;
+		return new GcResult(before, memoryBean.getHeapMemoryUsage().getUsed(), duration);
+	}
+
+	/**
+	 * @param fileName file name chosen by the user
+	 * @return the file name, with the extension required by the JVM
+	 */
+	static String toHeapDumpFileName(final String fileName) {
+		return fileName.endsWith(HPROF_EXTENSION) ? fileName : fileName + HPROF_EXTENSION;
+	}
+
+	/**
+	 * Dump the heap in a file
+	 * 
+	 * @param fileName name of the file, which must not exist
+	 * @param live if <code>true</code>, only the live objects are dumped
+	 * @throws Exception if the heap can not be dumped
+	 */
+	static void dumpHeap(final String fileName, final boolean live) throws Exception {
+		final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		server.invoke(new ObjectName(HOTSPOT_DIAGNOSTIC_OBJECT_NAME), DUMP_HEAP, new Object[] { fileName, Boolean.valueOf(live) }, //
+				new String[] { String.class.getName(), boolean.class.getName() });
+	}
+
+	/**
+	 * Compute the class histogram of the heap
+	 * 
+	 * @return the histogram, sorted by decreasing memory usage
+	 * @throws Exception if the histogram can not be computed
+	 */
+	static List<ClassHistogramEntry> getClassHistogram() throws Exception {
+		final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		final String histogram = (String) server.invoke(new ObjectName(DIAGNOSTIC_COMMAND_OBJECT_NAME), GC_CLASS_HISTOGRAM, new Object[] { new String[0] }, //
+				new String[] { String[].class.getName() });
+		return parseClassHistogram(histogram);
+	}
+
+	/**
+	 * Parse the output of the GC.class_histogram command. The lines look like
+	 * <code>"   1:   1234   56789  java.lang.String (java.base@9)"</code>
+	 * 
+	 * @param histogram output of the command
+	 * @return the entries of the histogram
+	 */
+	static List<ClassHistogramEntry> parseClassHistogram(final String histogram) {
+		final List<ClassHistogramEntry> entries = new ArrayList<ClassHistogramEntry>();
+		for (final String line : histogram.split("\\r?\\n")) {
+			final StringTokenizer tokenizer = new StringTokenizer(line);
+			if (tokenizer.countTokens() < 4) {
+				continue;
+			}
+			final String rank = tokenizer.nextToken();
+			if (!rank.endsWith(":")) {
+				// Header or total line
+				continue;
+			}
+			try {
+				final long instances = Long.parseLong(tokenizer.nextToken());
+				final long bytes = Long.parseLong(tokenizer.nextToken());
+				entries.add(new ClassHistogramEntry(tokenizer.nextToken(), instances, bytes));
+			} catch (final NumberFormatException e) {
+				// Not a line of the histogram
+			}
+		}
+		return entries;
+	}
+}
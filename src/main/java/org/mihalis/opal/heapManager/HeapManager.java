@@ -10,13 +10,23 @@
  *******************************************************************************/
 package org.mihalis.opal.heapManager;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.SWTException;
+import org.eclipse.swt.events.DisposeEvent;
+import org.eclipse.swt.events.DisposeListener;
 import org.eclipse.swt.events.PaintEvent;
 import org.eclipse.swt.events.PaintListener;
 import org.eclipse.swt.events.SelectionAdapter;
 import org.eclipse.swt.events.SelectionEvent;
 import org.eclipse.swt.graphics.Color;
+import org.eclipse.swt.graphics.Font;
 import org.eclipse.swt.graphics.GC;
 import org.eclipse.swt.graphics.Image;
 import org.eclipse.swt.graphics.Point;
@@ -26,13 +36,24 @@ import org.eclipse.swt.layout.GridLayout;
 import org.eclipse.swt.widgets.Button;
 import org.eclipse.swt.widgets.Canvas;
 import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.FileDialog;
+import org.eclipse.swt.widgets.Listener;
+import org.eclipse.swt.widgets.Menu;
+import org.eclipse.swt.widgets.MenuItem;
 import org.eclipse.swt.widgets.Widget;
+import org.mihalis.opal.opalDialog.Dialog;
 import org.mihalis.opal.utils.ResourceManager;
 import org.mihalis.opal.utils.SWTGraphicUtil;
 
 /**
  * Instances of this class are controls that display the memory used, the whole
- * memory, and contains a button to perform a GC
+ * memory, and contains a button that opens a menu of diagnostics (GC, heap
+ * dump and class histogram) executed on a background thread. The bar is split into the
+ * memory used by the eden space, the survivor spaces, the old generation and
+ * the metaspace, and its tooltip gives the details of each pool, the
+ * allocation rate and the last GC.
  */
 public class HeapManager extends Composite {
 	private Canvas bar;
@@ -45,6 +66,19 @@ public class HeapManager extends Composite {
 	private Color barGradientColorTopStart;
 	private Color barGradientColorTopEnd;
 	private Color barGradientColorMiddleStart;
+	private Color barCriticalColor;
+	private Color barCriticalTextColor;
+	private Color edenColor;
+	private Color survivorColor;
+	private Color oldGenColor;
+	private Color metaspaceColor;
+	private boolean critical;
+	private HeapSnapshot snapshot;
+	private String message;
+	private Point messageSize;
+	private Menu menu;
+	private ExecutorService executor;
+	private String status;
 
 	/**
 	 * Constructs a new instance of this class given its parent and a style
@@ -81,8 +115,14 @@ public class HeapManager extends Composite {
 
 		createBar();
 		createButton();
-		updateContent();
 		createDefaultColors();
+		HeapPoller.register(this);
+		addDisposeListener(new DisposeListener() {
+			@Override
+			public void widgetDisposed(final DisposeEvent e) {
+				HeapPoller.unregister(HeapManager.this);
+			}
+		});
 	}
 
 	/**
@@ -95,6 +135,7 @@ public class HeapManager extends Composite {
 		gd.heightHint = 30;
 		this.bar.setLayoutData(gd);
 		this.heapMaxSize = (int) (Runtime.getRuntime().maxMemory() / (1024 * 1024));
+		this.heapSize = (int) (Runtime.getRuntime().totalMemory() / (1024 * 1024));
 		this.bar.addPaintListener(new PaintListener() {
 			@Override
 			public void paintControl(final PaintEvent e) {
@@ -117,30 +158,71 @@ public class HeapManager extends Composite {
 		gc.fillRectangle(clientArea);
 		gc.drawRectangle(clientArea.x, clientArea.y, clientArea.width - 1, clientArea.height - 1);
 
-		final float width = (clientArea.width - 2f) * this.heapSize / this.heapMaxSize;
-
-		gc.setForeground(this.barGradientColorTopStart);
-		gc.setBackground(this.barGradientColorTopEnd);
-		gc.fillGradientRectangle(clientArea.x + 1, clientArea.y + 1, (int) width, clientArea.height / 2, true);
+		if (this.snapshot == null) {
+			final float width = (clientArea.width - 2f) * this.heapSize / this.heapMaxSize;
 
-		gc.setForeground(this.barGradientColorMiddleStart);
-		gc.setBackground(this.barBorderColor);
-		gc.fillGradientRectangle(clientArea.x + 1, clientArea.height / 2, (int) width, clientArea.height / 2, true);
+			gc.setForeground(this.barGradientColorTopStart);
+			gc.setBackground(this.barGradientColorTopEnd);
+			gc.fillGradientRectangle(clientArea.x + 1, clientArea.y + 1, (int) width, clientArea.height / 2, true);
 
-		final String message = this.heapSize + " " + ResourceManager.getLabel(ResourceManager.MEGABYTES) + "/" + //
-				this.heapMaxSize + " " + ResourceManager.getLabel(ResourceManager.MEGABYTES);
-		final Point size = gc.stringExtent(message);
+			gc.setForeground(this.barGradientColorMiddleStart);
+			gc.setBackground(this.critical ? this.barCriticalColor : this.barBorderColor);
+			gc.fillGradientRectangle(clientArea.x + 1, clientArea.height / 2, (int) width, clientArea.height / 2, true);
+		} else {
+			final float total = Math.max(1, this.snapshot.getHeapMaxSize() + this.snapshot.getMetaspaceSize());
+			final float ratio = (clientArea.width - 2f) / total;
+			int x = clientArea.x + 1;
+			x = drawSegment(gc, clientArea, x, (int) (this.snapshot.getEdenSize() * ratio), this.edenColor);
+			x = drawSegment(gc, clientArea, x, (int) (this.snapshot.getSurvivorSize() * ratio), this.survivorColor);
+			x = drawSegment(gc, clientArea, x, (int) (this.snapshot.getOldGenSize() * ratio), this.oldGenColor);
+			drawSegment(gc, clientArea, x, (int) (this.snapshot.getMetaspaceSize() * ratio), this.metaspaceColor);
+		}
 
-		gc.setForeground(this.barTextColor);
 		gc.setFont(getFont());
-		gc.drawText(message, (clientArea.width - size.x) / 2, (clientArea.height - size.y) / 2, true);
+		if (this.message == null) {
+			this.message = this.heapSize + " " + ResourceManager.getLabel(ResourceManager.MEGABYTES) + "/" + //
+					this.heapMaxSize + " " + ResourceManager.getLabel(ResourceManager.MEGABYTES);
+			if (this.snapshot != null && this.snapshot.hasAllocationRate()) {
+				this.message += " (" + String.format(ResourceManager.getLabel(ResourceManager.HEAP_MANAGER_RATE), this.snapshot.getRoundedAllocationRate()) + ")";
+			}
+			this.messageSize = gc.stringExtent(this.message);
+		}
+
+		// The bar ends with the critical color, so the text uses a contrasting color
+		gc.setForeground(this.critical ? this.barCriticalTextColor : this.barTextColor);
+		if (this.status == null) {
+			gc.drawText(this.message, (clientArea.width - this.messageSize.x) / 2, (clientArea.height - this.messageSize.y) / 2, true);
+		} else {
+			final Point statusSize = gc.stringExtent(this.status);
+			gc.drawText(this.status, (clientArea.width - statusSize.x) / 2, (clientArea.height - statusSize.y) / 2, true);
+		}
 
 		gc.dispose();
 
 	}
 
 	/**
-	 * Create the button used to perform GC
+	 * Draw a segment of the bar
+	 * 
+	 * @param gc graphic context
+	 * @param clientArea client area of the bar
+	 * @param x position of the segment
+	 * @param width width of the segment
+	 * @param color color of the segment
+	 * @return the position of the next segment
+	 */
+	private int drawSegment(final GC gc, final Rectangle clientArea, final int x, final int width, final Color color) {
+		if (width <= 0) {
+			return x;
+		}
+		gc.setForeground(color);
+		gc.setBackground(this.critical ? this.barCriticalColor : this.barBorderColor);
+		gc.fillGradientRectangle(x, clientArea.y + 1, width, clientArea.height - 2, true);
+		return x + width;
+	}
+
+	/**
+	 * Create the button that opens the menu of diagnostics
 	 */
 	private void createButton() {
 		this.button = new Button(this, SWT.PUSH);
@@ -148,37 +230,308 @@ public class HeapManager extends Composite {
 		this.button.setImage(image);
 		SWTGraphicUtil.addDisposer(this.button, image);
 		this.button.setLayoutData(new GridData(GridData.FILL, GridData.FILL, false, false));
+		createMenu();
 		this.button.addSelectionListener(new SelectionAdapter() {
 			/**
 			 * @see org.eclipse.swt.events.SelectionAdapter#widgetSelected(org.eclipse.swt.events.SelectionEvent)
 			 */
 			@Override
 			public void widgetSelected(final SelectionEvent e) {
-				System.gc();
+				final Point location = getDisplay().map(HeapManager.this.button, null, 0, HeapManager.this.button.getSize().y);
+				HeapManager.this.menu.setLocation(location);
+				HeapManager.this.menu.setVisible(true);
 			}
 		});
-		this.button.setToolTipText(ResourceManager.getLabel(ResourceManager.PERFORM_GC));
+		this.button.setToolTipText(ResourceManager.getLabel(ResourceManager.HEAP_MANAGER_DIAGNOSTICS));
 		this.button.pack();
 	}
 
 	/**
-	 * Update the content of the bar
+	 * Create the menu of diagnostics. All diagnostics run on a background
+	 * thread, one at a time
+	 */
+	private void createMenu() {
+		this.menu = new Menu(this.button);
+		createMenuItem(ResourceManager.PERFORM_GC, new Listener() {
+			@Override
+			public void handleEvent(final Event event) {
+				performGC();
+			}
+		});
+		createMenuItem(ResourceManager.HEAP_MANAGER_DUMP_HEAP, new Listener() {
+			@Override
+			public void handleEvent(final Event event) {
+				dumpHeap();
+			}
+		});
+		createMenuItem(ResourceManager.HEAP_MANAGER_CLASS_HISTOGRAM, new Listener() {
+			@Override
+			public void handleEvent(final Event event) {
+				showClassHistogram();
+			}
+		});
+		this.menu.addListener(SWT.Show, new Listener() {
+			@Override
+			public void handleEvent(final Event event) {
+				for (final MenuItem item : HeapManager.this.menu.getItems()) {
+					item.setEnabled(HeapManager.this.status == null);
+				}
+			}
+		});
+		addDisposeListener(new DisposeListener() {
+			@Override
+			public void widgetDisposed(final DisposeEvent e) {
+				if (HeapManager.this.executor != null) {
+					HeapManager.this.executor.shutdownNow();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Create an item of the menu
+	 * 
+	 * @param key key of the label of the item
+	 * @param listener listener called when the item is selected
+	 */
+	private void createMenuItem(final String key, final Listener listener) {
+		final MenuItem item = new MenuItem(this.menu, SWT.PUSH);
+		item.setText(ResourceManager.getLabel(key));
+		item.addListener(SWT.Selection, listener);
+	}
+
+	/**
+	 * Perform a GC and report the memory that has been freed
+	 */
+	private void performGC() {
+		runDiagnostic(new DiagnosticTask<HeapDiagnostics.GcResult>() {
+			@Override
+			HeapDiagnostics.GcResult execute() {
+				return HeapDiagnostics.performGC();
+			}
+
+			@Override
+			void succeeded(final HeapDiagnostics.GcResult result) {
+				Dialog.inform(getShell(), ResourceManager.getLabel(ResourceManager.PERFORM_GC), //
+						String.format(ResourceManager.getLabel(ResourceManager.HEAP_MANAGER_GC_RESULT), result.getFreed(), result.getDuration(), result.getUsedBefore(), result.getUsedAfter()));
+			}
+		});
+	}
+
+	/**
+	 * Dump the heap in a file chosen by the user. The size of the file is
+	 * displayed in the bar while the heap is dumped
 	 */
-	private void updateContent() {
-		getDisplay().timerExec(500, new Runnable() {
+	private void dumpHeap() {
+		final FileDialog dialog = new FileDialog(getShell(), SWT.SAVE);
+		dialog.setFilterExtensions(new String[] { "*.hprof" });
+		dialog.setOverwrite(true);
+		final String selected = dialog.open();
+		if (selected == null) {
+			return;
+		}
+		final File file = new File(HeapDiagnostics.toHeapDumpFileName(selected));
+		runDiagnostic(new DiagnosticTask<File>() {
+			@Override
+			File execute() throws Exception {
+				// The user has confirmed the overwrite, and the JVM does not
+				// dump in an existing file
+				if (file.exists() && !file.delete()) {
+					throw new IOException(file.getAbsolutePath());
+				}
+				HeapDiagnostics.dumpHeap(file.getAbsolutePath(), true);
+				return file;
+			}
+
+			@Override
+			void succeeded(final File result) {
+				Dialog.inform(getShell(), ResourceManager.getLabel(ResourceManager.HEAP_MANAGER_DUMP_HEAP), //
+						String.format(ResourceManager.getLabel(ResourceManager.HEAP_MANAGER_DUMP_DONE), result.getAbsolutePath(), result.length() / (1024 * 1024)));
+			}
+		});
+		getDisplay().timerExec(250, new Runnable() {
 			@Override
 			public void run() {
-				HeapManager.this.heapSize = (int) (Runtime.getRuntime().totalMemory() / (1024 * 1024));
-				if (!isDisposed()) {
-					HeapManager.this.bar.redraw();
-					if (!getDisplay().isDisposed()) {
-						getDisplay().timerExec(500, this);
-					}
+				if (isDisposed() || HeapManager.this.status == null) {
+					return;
 				}
+				setStatus(String.format(ResourceManager.getLabel(ResourceManager.HEAP_MANAGER_DUMPING), file.length() / (1024 * 1024)));
+				getDisplay().timerExec(250, this);
 			}
 		});
 	}
 
+	/**
+	 * Compute the class histogram and display it in a window
+	 */
+	private void showClassHistogram() {
+		runDiagnostic(new DiagnosticTask<List<ClassHistogramEntry>>() {
+			@Override
+			List<ClassHistogramEntry> execute() throws Exception {
+				return HeapDiagnostics.getClassHistogram();
+			}
+
+			@Override
+			void succeeded(final List<ClassHistogramEntry> result) {
+				new ClassHistogramWindow(getShell(), result).open();
+			}
+		});
+	}
+
+	/**
+	 * A diagnostic, executed on a background thread
+	 * 
+	 * @param <T> type of the result
+	 */
+	private abstract static class DiagnosticTask<T> {
+		/**
+		 * Execute the diagnostic. Called from the background thread
+		 * 
+		 * @return the result
+		 * @throws Exception if the diagnostic fails
+		 */
+		abstract T execute() throws Exception;
+
+		/**
+		 * Display the result. Called from the UI thread
+		 * 
+		 * @param result result of the diagnostic
+		 */
+		abstract void succeeded(T result);
+	}
+
+	/**
+	 * Run a diagnostic on the background thread
+	 * 
+	 * @param task diagnostic to run
+	 */
+	private <T> void runDiagnostic(final DiagnosticTask<T> task) {
+		if (this.executor == null) {
+			this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(final Runnable runnable) {
+					final Thread thread = new Thread(runnable, "Opal HeapManager diagnostics");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		setStatus(ResourceManager.getLabel(ResourceManager.HEAP_MANAGER_RUNNING));
+		// getDisplay() can not be called from the background thread once the
+		// widget is disposed
+		final Display display = getDisplay();
+		this.executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					final T result = task.execute();
+					asyncExecIfNotDisposed(display, new Runnable() {
+						@Override
+						public void run() {
+							setStatus(null);
+							task.succeeded(result);
+						}
+					});
+				} catch (final Exception e) {
+					asyncExecIfNotDisposed(display, new Runnable() {
+						@Override
+						public void run() {
+							setStatus(null);
+							Dialog.error(getShell(), ResourceManager.getLabel(ResourceManager.HEAP_MANAGER_DIAGNOSTIC_ERROR), String.valueOf(e.getCause() == null ? e.getMessage() : e.getCause().getMessage()));
+						}
+					});
+				}
+			}
+		});
+	}
+
+	/**
+	 * Execute a runnable on the UI thread if the widget is not disposed
+	 * 
+	 * @param display display of the widget, obtained on the UI thread
+	 * @param runnable runnable to execute
+	 */
+	private void asyncExecIfNotDisposed(final Display display, final Runnable runnable) {
+		if (display.isDisposed()) {
+			return;
+		}
+		try {
+			display.asyncExec(new Runnable() {
+				@Override
+				public void run() {
+					if (!isDisposed()) {
+						runnable.run();
+					}
+				}
+			});
+		} catch (final SWTException e) {
+			// The display has been disposed in the meantime
+		}
+	}
+
+	/**
+	 * @param status message displayed in the bar while a diagnostic is running,
+	 *            or <code>null</code> to display the heap
+	 */
+	private void setStatus(final String status) {
+		this.status = status;
+		this.bar.redraw();
+	}
+
+	/**
+	 * Update the content of the bar. Called by the {@link HeapPoller} when one
+	 * of the displayed values has changed. The bar is painted again only if
+	 * one of the values it shows has changed, otherwise only the tooltip is
+	 * updated
+	 * 
+	 * @param snapshot new values to display
+	 */
+	void updateContent(final HeapSnapshot snapshot) {
+		if (isDisposed() || snapshot.equals(this.snapshot)) {
+			return;
+		}
+		final boolean sameBar = snapshot.hasSameBar(this.snapshot);
+		this.snapshot = snapshot;
+		this.bar.setToolTipText(createToolTipText(snapshot));
+		if (sameBar) {
+			return;
+		}
+		this.heapSize = snapshot.getHeapSize();
+		this.heapMaxSize = snapshot.getHeapMaxSize();
+		this.critical = snapshot.isCritical();
+		this.message = null;
+		this.bar.redraw();
+	}
+
+	/**
+	 * @param snapshot displayed values
+	 * @return the tooltip of the bar
+	 */
+	private static String createToolTipText(final HeapSnapshot snapshot) {
+		final StringBuilder sb = new StringBuilder();
+		sb.append(String.format(ResourceManager.getLabel(ResourceManager.HEAP_MANAGER_EDEN), snapshot.getEdenSize())).append("\n");
+		sb.append(String.format(ResourceManager.getLabel(ResourceManager.HEAP_MANAGER_SURVIVOR), snapshot.getSurvivorSize())).append("\n");
+		sb.append(String.format(ResourceManager.getLabel(ResourceManager.HEAP_MANAGER_OLD_GEN), snapshot.getOldGenSize())).append("\n");
+		sb.append(String.format(ResourceManager.getLabel(ResourceManager.HEAP_MANAGER_METASPACE), snapshot.getMetaspaceSize()));
+		if (snapshot.hasAllocationRate()) {
+			sb.append("\n").append(String.format(ResourceManager.getLabel(ResourceManager.HEAP_MANAGER_ALLOCATION_RATE), snapshot.getAllocationRate()));
+		}
+		if (snapshot.getLastGcName() != null) {
+			sb.append("\n").append(String.format(ResourceManager.getLabel(ResourceManager.HEAP_MANAGER_LAST_GC), snapshot.getLastGcName(), snapshot.getLastGcDuration(), snapshot.getLastGcFreed()));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * @see org.eclipse.swt.widgets.Control#setFont(org.eclipse.swt.graphics.Font)
+	 */
+	@Override
+	public void setFont(final Font font) {
+		super.setFont(font);
+		this.message = null;
+		this.bar.redraw();
+	}
+
 	/**
 	 * Creates the default colors
 	 */
@@ -189,6 +542,12 @@ public class HeapManager extends Composite {
 		this.barGradientColorTopStart = SWTGraphicUtil.getDefaultColor(this, 175, 202, 237);
 		this.barGradientColorTopEnd = SWTGraphicUtil.getDefaultColor(this, 136, 177, 229);
 		this.barGradientColorMiddleStart = SWTGraphicUtil.getDefaultColor(this, 112, 161, 223);
+		this.barCriticalColor = SWTGraphicUtil.getDefaultColor(this, 208, 52, 52);
+		this.barCriticalTextColor = SWTGraphicUtil.getDefaultColor(this, 255, 255, 255);
+		this.edenColor = SWTGraphicUtil.getDefaultColor(this, 175, 202, 237);
+		this.survivorColor = SWTGraphicUtil.getDefaultColor(this, 136, 177, 229);
+		this.oldGenColor = SWTGraphicUtil.getDefaultColor(this, 112, 161, 223);
+		this.metaspaceColor = SWTGraphicUtil.getDefaultColor(this, 190, 190, 190);
 	}
 
 	/**
@@ -275,4 +634,88 @@ public class HeapManager extends Composite {
 		this.barGradientColorMiddleStart = barGradientColorMiddleStart;
 	}
 
+	/**
+	 * @return the barCriticalColor
+	 */
+	public Color getBarCriticalColor() {
+		return this.barCriticalColor;
+	}
+
+	/**
+	 * @param barCriticalColor the barCriticalColor to set
+	 */
+	public void setBarCriticalColor(final Color barCriticalColor) {
+		this.barCriticalColor = barCriticalColor;
+	}
+
+	/**
+	 * @return the barCriticalTextColor
+	 */
+	public Color getBarCriticalTextColor() {
+		return this.barCriticalTextColor;
+	}
+
+	/**
+	 * @param barCriticalTextColor the barCriticalTextColor to set
+	 */
+	public void setBarCriticalTextColor(final Color barCriticalTextColor) {
+		this.barCriticalTextColor = barCriticalTextColor;
+	}
+
+	/**
+	 * @return the edenColor
+	 */
+	public Color getEdenColor() {
+		return this.edenColor;
+	}
+
+	/**
+	 * @param edenColor the edenColor to set (color of the eden space in the bar)
+	 */
+	public void setEdenColor(final Color edenColor) {
+		this.edenColor = edenColor;
+	}
+
+	/**
+	 * @return the survivorColor
+	 */
+	public Color getSurvivorColor() {
+		return this.survivorColor;
+	}
+
+	/**
+	 * @param survivorColor the survivorColor to set (color of the survivor spaces in the bar)
+	 */
+	public void setSurvivorColor(final Color survivorColor) {
+		this.survivorColor = survivorColor;
+	}
+
+	/**
+	 * @return the oldGenColor
+	 */
+	public Color getOldGenColor() {
+		return this.oldGenColor;
+	}
+
+	/**
+	 * @param oldGenColor the oldGenColor to set (color of the old generation in the bar)
+	 */
+	public void setOldGenColor(final Color oldGenColor) {
+		this.oldGenColor = oldGenColor;
+	}
+
+	/**
+	 * @return the metaspaceColor
+	 */
+	public Color getMetaspaceColor() {
+		return this.metaspaceColor;
+	}
+
+	/**
+	 * @param metaspaceColor the metaspaceColor to set (color of the metaspace in the bar)
+	 */
+	public void setMetaspaceColor(final Color metaspaceColor) {
+		this.metaspaceColor = metaspaceColor;
+	}
+
 }
@@ -0,0 +1,430 @@
+/*******************************************************************************
+ * Copyright (c) 2011 Laurent CARON
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Laurent CARON (laurent.caron at gmail dot com) - Initial implementation and API
+ *******************************************************************************/
+package org.mihalis.opal.heapManager;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.MBeanServer;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+
+import org.eclipse.swt.SWTException;
+import org.eclipse.swt.widgets.Display;
+
+/**
+ * Instances of this class poll the heap for all the {@link HeapManager}
+ * widgets of a display. The heap is sampled on a background thread, and the
+ * widgets are only notified when the displayed values change. The poller also
+ * listens to the memory notifications of the heap pools, so widgets are
+ * updated as soon as the usage of a pool exceeds a critical threshold instead
+ * of waiting for the next poll.
+ */
+class HeapPoller {
+	private static final int POLLING_TIME = 500;
+	private static final double CRITICAL_THRESHOLD = 0.9d;
+	private static final long MB = 1024 * 1024;
+	private static final String THREADING_OBJECT_NAME = "java.lang:type=Threading";
+	private static final String THREAD_ALLOCATED_MEMORY_ENABLED = "ThreadAllocatedMemoryEnabled";
+	private static final String GET_THREAD_ALLOCATED_BYTES = "getThreadAllocatedBytes";
+	private static final String LAST_GC_INFO = "LastGcInfo";
+	private static final Map<Display, HeapPoller> POLLERS = new HashMap<Display, HeapPoller>();
+
+	private final Display display;
+	private final List<HeapManager> managers;
+	private final NotificationListener notificationListener;
+	private final MBeanServer mBeanServer;
+	private final Map<MemoryPoolMXBean, Long> usageThresholds;
+	private final Map<MemoryPoolMXBean, Long> collectionUsageThresholds;
+	private ScheduledExecutorService executor;
+	private volatile HeapSnapshot lastSnapshot;
+
+	// Only accessed by the polling thread
+	private long lastPollTime;
+	private Map<Long, Long> lastAllocatedBytes;
+	private long lastEdenUsed;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param display display on which the widgets are updated
+	 */
+	private HeapPoller(final Display display) {
+		this.display = display;
+		this.managers = new ArrayList<HeapManager>();
+		this.mBeanServer = ManagementFactory.getPlatformMBeanServer();
+		this.usageThresholds = new HashMap<MemoryPoolMXBean, Long>();
+		this.collectionUsageThresholds = new HashMap<MemoryPoolMXBean, Long>();
+		this.lastEdenUsed = -1;
+		this.notificationListener = new NotificationListener() {
+			@Override
+			public void handleNotification(final Notification notification, final Object handback) {
+				final String type = notification.getType();
+				if (MemoryNotificationInfo.MEMORY_THRESHOLD_EXCEEDED.equals(type) || MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(type)) {
+					pollNow();
+				}
+			}
+		};
+	}
+
+	/**
+	 * Register a widget. The first widget registered on a display starts the
+	 * polling for this display.
+	 * 
+	 * @param manager widget to register
+	 */
+	static synchronized void register(final HeapManager manager) {
+		final Display display = manager.getDisplay();
+		HeapPoller poller = POLLERS.get(display);
+		if (poller == null) {
+			poller = new HeapPoller(display);
+			POLLERS.put(display, poller);
+		}
+		poller.add(manager);
+	}
+
+	/**
+	 * Unregister a widget. The polling stops when the last widget of a display
+	 * is unregistered.
+	 * 
+	 * @param manager widget to unregister
+	 */
+	static synchronized void unregister(final HeapManager manager) {
+		final Display display = manager.getDisplay();
+		final HeapPoller poller = POLLERS.get(display);
+		if (poller == null) {
+			return;
+		}
+		poller.managers.remove(manager);
+		if (poller.managers.isEmpty()) {
+			poller.stop();
+			POLLERS.remove(display);
+		}
+	}
+
+	/**
+	 * Add a widget and start polling if needed
+	 * 
+	 * @param manager widget to add
+	 */
+	private void add(final HeapManager manager) {
+		final boolean start = this.managers.isEmpty();
+		this.managers.add(manager);
+		final HeapSnapshot snapshot = this.lastSnapshot;
+		if (snapshot != null) {
+			manager.updateContent(snapshot);
+		}
+		if (start) {
+			startListeningToNotifications();
+			this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(final Runnable runnable) {
+					final Thread thread = new Thread(runnable, "Opal HeapManager poller");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			this.executor.scheduleWithFixedDelay(new Runnable() {
+				@Override
+				public void run() {
+					poll();
+				}
+			}, 0, POLLING_TIME, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Stop polling and listening to the memory notifications, and remove the
+	 * thresholds set by this poller
+	 */
+	private void stop() {
+		this.executor.shutdownNow();
+		this.executor = null;
+		try {
+			((NotificationEmitter) ManagementFactory.getMemoryMXBean()).removeNotificationListener(this.notificationListener);
+		} catch (final ListenerNotFoundException e) {
+			// Not registered, nothing to do
+		}
+		resetThresholds();
+	}
+
+	/**
+	 * Set a usage threshold on the heap pools that do not have one yet, and
+	 * listen to the notifications sent when a threshold is exceeded
+	 */
+	private void startListeningToNotifications() {
+		for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() != MemoryType.HEAP) {
+				continue;
+			}
+			final long max = pool.getUsage().getMax();
+			if (max <= 0) {
+				continue;
+			}
+			final long threshold = (long) (max * CRITICAL_THRESHOLD);
+			if (pool.isUsageThresholdSupported() && pool.getUsageThreshold() == 0) {
+				pool.setUsageThreshold(threshold);
+				this.usageThresholds.put(pool, threshold);
+			}
+			if (pool.isCollectionUsageThresholdSupported() && pool.getCollectionUsageThreshold() == 0) {
+				pool.setCollectionUsageThreshold(threshold);
+				this.collectionUsageThresholds.put(pool, threshold);
+			}
+		}
+		((NotificationEmitter) ManagementFactory.getMemoryMXBean()).addNotificationListener(this.notificationListener, null, null);
+	}
+
+	/**
+	 * Disable the thresholds set by <code>startListeningToNotifications()</code>,
+	 * unless they have been changed by someone else in the meantime
+	 */
+	private void resetThresholds() {
+		for (final Map.Entry<MemoryPoolMXBean, Long> entry : this.usageThresholds.entrySet()) {
+			final MemoryPoolMXBean pool = entry.getKey();
+			if (pool.isValid() && pool.getUsageThreshold() == entry.getValue().longValue()) {
+				pool.setUsageThreshold(0);
+			}
+		}
+		for (final Map.Entry<MemoryPoolMXBean, Long> entry : this.collectionUsageThresholds.entrySet()) {
+			final MemoryPoolMXBean pool = entry.getKey();
+			if (pool.isValid() && pool.getCollectionUsageThreshold() == entry.getValue().longValue()) {
+				pool.setCollectionUsageThreshold(0);
+			}
+		}
+		this.usageThresholds.clear();
+		this.collectionUsageThresholds.clear();
+	}
+
+	/**
+	 * Ask for an immediate poll, from any thread
+	 */
+	private void pollNow() {
+		final ScheduledExecutorService currentExecutor = this.executor;
+		if (currentExecutor == null) {
+			return;
+		}
+		try {
+			currentExecutor.execute(new Runnable() {
+				@Override
+				public void run() {
+					poll();
+				}
+			});
+		} catch (final RejectedExecutionException e) {
+			// The poller has been stopped in the meantime
+		}
+	}
+
+	/**
+	 * Sample the heap and notify the widgets if a displayed value has changed.
+	 * Called by the polling thread.
+	 */
+	private void poll() {
+		final HeapSnapshot snapshot = sample();
+		if (snapshot.equals(this.lastSnapshot)) {
+			return;
+		}
+		this.lastSnapshot = snapshot;
+		if (this.display.isDisposed()) {
+			return;
+		}
+		try {
+			this.display.asyncExec(new Runnable() {
+				@Override
+				public void run() {
+					final List<HeapManager> copy;
+					synchronized (HeapPoller.class) {
+						copy = new ArrayList<HeapManager>(HeapPoller.this.managers);
+					}
+					for (final HeapManager manager : copy) {
+						manager.updateContent(snapshot);
+					}
+				}
+			});
+		} catch (final SWTException e) {
+			// The display has been disposed in the meantime
+		}
+	}
+
+	/**
+	 * @return a snapshot of the heap
+	 */
+	private HeapSnapshot sample() {
+		final Runtime runtime = Runtime.getRuntime();
+		final long now = System.nanoTime();
+		boolean critical = false;
+		long eden = 0, survivor = 0, oldGen = 0, metaspace = 0;
+		long edenUsed = -1;
+
+		for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (!pool.isValid()) {
+				continue;
+			}
+			final String name = pool.getName();
+			final long used = pool.getUsage().getUsed();
+			if (pool.getType() == MemoryType.NON_HEAP) {
+				if (name.contains("Metaspace") || name.contains("Perm Gen")) {
+					metaspace += used;
+				}
+				continue;
+			}
+			if (name.contains("Eden")) {
+				eden += used;
+				edenUsed = Math.max(0, edenUsed) + used;
+			} else if (name.contains("Survivor")) {
+				survivor += used;
+			} else {
+				oldGen += used;
+			}
+			if (pool.isUsageThresholdSupported() && pool.getUsageThreshold() > 0 && pool.isUsageThresholdExceeded()) {
+				critical = true;
+			}
+			if (pool.isCollectionUsageThresholdSupported() && pool.getCollectionUsageThreshold() > 0 && pool.isCollectionUsageThresholdExceeded()) {
+				critical = true;
+			}
+		}
+
+		double allocationRate = -1;
+		final long allocated = computeAllocatedBytes(edenUsed);
+		if (allocated >= 0 && this.lastPollTime != 0 && now > this.lastPollTime) {
+			allocationRate = allocated / (double) MB / ((now - this.lastPollTime) / 1000000000d);
+		}
+		this.lastPollTime = now;
+
+		String lastGcName = null;
+		long lastGcDuration = 0, lastGcFreed = 0, lastGcEndTime = -1;
+		for (final GarbageCollectorMXBean gcBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+			final CompositeData gcInfo = getLastGcInfo(gcBean);
+			if (gcInfo == null) {
+				continue;
+			}
+			final long endTime = ((Long) gcInfo.get("endTime")).longValue();
+			if (endTime > lastGcEndTime) {
+				lastGcEndTime = endTime;
+				lastGcName = gcBean.getName();
+				lastGcDuration = ((Long) gcInfo.get("duration")).longValue();
+				lastGcFreed = sumUsed((TabularData) gcInfo.get("memoryUsageBeforeGc")) - sumUsed((TabularData) gcInfo.get("memoryUsageAfterGc"));
+			}
+		}
+
+		return new HeapSnapshot((int) (runtime.totalMemory() / MB), (int) (runtime.maxMemory() / MB), critical, //
+				(int) (eden / MB), (int) (survivor / MB), (int) (oldGen / MB), (int) (metaspace / MB), //
+				allocationRate, lastGcName, lastGcDuration, (int) (Math.max(0, lastGcFreed) / MB));
+	}
+
+	/**
+	 * Compute the number of bytes allocated since the last poll. The
+	 * allocation counters of the threads are used when the JVM provides them,
+	 * otherwise the growth of the eden space is used.
+	 * 
+	 * @param edenUsed used size of the eden space, or -1 if there is no eden
+	 *            space
+	 * @return the number of bytes allocated since the last call, or -1 if
+	 *         unknown
+	 */
+	private long computeAllocatedBytes(final long edenUsed) {
+		final long fromThreads = computeAllocatedBytesFromThreads();
+		if (fromThreads >= 0) {
+			return fromThreads;
+		}
+		if (edenUsed < 0) {
+			return -1;
+		}
+		final long previous = this.lastEdenUsed;
+		this.lastEdenUsed = edenUsed;
+		if (previous < 0) {
+			return -1;
+		}
+		// If the eden space shrank, a GC emptied it in the meantime
+		return edenUsed >= previous ? edenUsed - previous : edenUsed;
+	}
+
+	/**
+	 * @return the number of bytes allocated by all threads since the last
+	 *         call, or -1 if the JVM does not provide these counters
+	 */
+	private long computeAllocatedBytesFromThreads() {
+		try {
+			final ObjectName threading = new ObjectName(THREADING_OBJECT_NAME);
+			if (!Boolean.TRUE.equals(this.mBeanServer.getAttribute(threading, THREAD_ALLOCATED_MEMORY_ENABLED))) {
+				return -1;
+			}
+			final long[] ids = ManagementFactory.getThreadMXBean().getAllThreadIds();
+			final long[] bytes = (long[]) this.mBeanServer.invoke(threading, GET_THREAD_ALLOCATED_BYTES, new Object[] { ids }, new String[] { long[].class.getName() });
+			final Map<Long, Long> current = new HashMap<Long, Long>(ids.length * 2);
+			long total = 0;
+			for (int i = 0; i < ids.length; i++) {
+				if (bytes[i] < 0) {
+					continue;
+				}
+				current.put(ids[i], bytes[i]);
+				if (this.lastAllocatedBytes != null) {
+					final Long previous = this.lastAllocatedBytes.get(ids[i]);
+					total += bytes[i] - (previous == null ? 0 : previous.longValue());
+				}
+			}
+			final boolean firstCall = this.lastAllocatedBytes == null;
+			this.lastAllocatedBytes = current;
+			return firstCall ? -1 : Math.max(0, total);
+		} catch (final Exception e) {
+			// Attribute or operation not supported by this JVM
+			return -1;
+		}
+	}
+
+	/**
+	 * @param gcBean garbage collector
+	 * @return the information about the last GC performed by this collector,
+	 *         or <code>null</code> if not available
+	 */
+	private CompositeData getLastGcInfo(final GarbageCollectorMXBean gcBean) {
+		if (gcBean.getCollectionCount() <= 0) {
+			return null;
+		}
+		try {
+			return (CompositeData) this.mBeanServer.getAttribute(new ObjectName(ManagementFactory.GARBAGE_COLLECTOR_MXBEAN_DOMAIN_TYPE + ",name=" + gcBean.getName()), LAST_GC_INFO);
+		} catch (final Exception e) {
+			// Attribute not supported by this JVM
+			return null;
+		}
+	}
+
+	/**
+	 * @param memoryUsages memory usage of each pool, as provided by the last
+	 *            GC information
+	 * @return the sum of the used memory of all pools
+	 */
+	private static long sumUsed(final TabularData memoryUsages) {
+		long sum = 0;
+		for (final Object row : memoryUsages.values()) {
+			final CompositeData usage = (CompositeData) ((CompositeData) row).get("value");
+			sum += ((Long) usage.get("used")).longValue();
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,212 @@
+/*******************************************************************************
+ * Copyright (c) 2011 Laurent CARON
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Laurent CARON (laurent.caron at gmail dot com) - Initial implementation and API
+ *******************************************************************************/
+package org.mihalis.opal.heapManager;
+
+/**
+ * Instances of this class are immutable snapshots of the values displayed by
+ * a {@link HeapManager}. Sizes are expressed in MB, so two snapshots are equal
+ * when they are displayed the same way.<br/>
+ * The bar only shows a part of these values (see
+ * <code>hasSameBar()</code>): the other ones are only displayed in the
+ * tooltip, and change at almost every poll.
+ */
+class HeapSnapshot {
+	private final int heapSize;
+	private final int heapMaxSize;
+	private final boolean critical;
+	private final int edenSize;
+	private final int survivorSize;
+	private final int oldGenSize;
+	private final int metaspaceSize;
+	private final int allocationRate;
+	private final String lastGcName;
+	private final long lastGcDuration;
+	private final int lastGcFreed;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param heapSize size of the heap
+	 * @param heapMaxSize max size of the heap
+	 * @param critical if <code>true</code>, one of the heap pools exceeds its
+	 *            critical threshold
+	 * @param edenSize used size of the eden space
+	 * @param survivorSize used size of the survivor spaces
+	 * @param oldGenSize used size of the old generation
+	 * @param metaspaceSize used size of the metaspace (or permanent
+	 *            generation)
+	 * @param allocationRate allocation rate in MB/s, or a negative value if
+	 *            unknown
+	 * @param lastGcName name of the collector of the last GC, or
+	 *            <code>null</code> if unknown
+	 * @param lastGcDuration duration of the last GC, in ms
+	 * @param lastGcFreed memory freed by the last GC
+	 */
+	HeapSnapshot(final int heapSize, final int heapMaxSize, final boolean critical, final int edenSize, final int survivorSize, final int oldGenSize, final int metaspaceSize, final double allocationRate, final String lastGcName, final long lastGcDuration, final int lastGcFreed) {
+		this.heapSize = heapSize;
+		this.heapMaxSize = heapMaxSize;
+		this.critical = critical;
+		this.edenSize = edenSize;
+		this.survivorSize = survivorSize;
+		this.oldGenSize = oldGenSize;
+		this.metaspaceSize = metaspaceSize;
+		// The rate is displayed with one decimal
+		this.allocationRate = allocationRate < 0 ? -1 : (int) Math.round(allocationRate * 10);
+		this.lastGcName = lastGcName;
+		this.lastGcDuration = lastGcDuration;
+		this.lastGcFreed = lastGcFreed;
+	}
+
+	/**
+	 * @return the size of the heap
+	 */
+	int getHeapSize() {
+		return this.heapSize;
+	}
+
+	/**
+	 * @return the max size of the heap
+	 */
+	int getHeapMaxSize() {
+		return this.heapMaxSize;
+	}
+
+	/**
+	 * @return <code>true</code> if one of the heap pools exceeds its critical
+	 *         threshold
+	 */
+	boolean isCritical() {
+		return this.critical;
+	}
+
+	/**
+	 * @return the used size of the eden space
+	 */
+	int getEdenSize() {
+		return this.edenSize;
+	}
+
+	/**
+	 * @return the used size of the survivor spaces
+	 */
+	int getSurvivorSize() {
+		return this.survivorSize;
+	}
+
+	/**
+	 * @return the used size of the old generation
+	 */
+	int getOldGenSize() {
+		return this.oldGenSize;
+	}
+
+	/**
+	 * @return the used size of the metaspace
+	 */
+	int getMetaspaceSize() {
+		return this.metaspaceSize;
+	}
+
+	/**
+	 * @return <code>true</code> if the allocation rate is known
+	 */
+	boolean hasAllocationRate() {
+		return this.allocationRate >= 0;
+	}
+
+	/**
+	 * @return the allocation rate, in MB/s
+	 */
+	double getAllocationRate() {
+		return this.allocationRate / 10d;
+	}
+
+	/**
+	 * @return the allocation rate rounded to the MB/s, as displayed on the bar
+	 */
+	int getRoundedAllocationRate() {
+		return this.allocationRate < 0 ? -1 : (this.allocationRate + 5) / 10;
+	}
+
+	/**
+	 * @return the name of the collector of the last GC, or <code>null</code>
+	 *         if unknown
+	 */
+	String getLastGcName() {
+		return this.lastGcName;
+	}
+
+	/**
+	 * @return the duration of the last GC, in ms
+	 */
+	long getLastGcDuration() {
+		return this.lastGcDuration;
+	}
+
+	/**
+	 * @return the memory freed by the last GC
+	 */
+	int getLastGcFreed() {
+		return this.lastGcFreed;
+	}
+
+	/**
+	 * @param other another snapshot, may be <code>null</code>
+	 * @return <code>true</code> if both snapshots are drawn the same way on
+	 *         the bar, so that the bar does not need to be painted again
+	 */
+	boolean hasSameBar(final HeapSnapshot other) {
+		return other != null && this.heapSize == other.heapSize && this.heapMaxSize == other.heapMaxSize && this.critical == other.critical && //
+				this.edenSize == other.edenSize && this.survivorSize == other.survivorSize && this.oldGenSize == other.oldGenSize && //
+				this.metaspaceSize == other.metaspaceSize && getRoundedAllocationRate() == other.getRoundedAllocationRate();
+	}
+
+	/**
+	 * @see java.lang.Object#hashCode()
+	 */
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + this.heapSize;
+		result = prime * result + this.heapMaxSize;
+		result = prime * result + (this.critical ? 1231 : 1237);
+		result = prime * result + this.edenSize;
+		result = prime * result + this.survivorSize;
+		result = prime * result + this.oldGenSize;
+		result = prime * result + this.metaspaceSize;
+		result = prime * result + this.allocationRate;
+		result = prime * result + (this.lastGcName == null ? 0 : this.lastGcName.hashCode());
+		result = prime * result + (int) (this.lastGcDuration ^ this.lastGcDuration >>> 32);
+		result = prime * result + this.lastGcFreed;
+		return result;
+	}
+
+	/**
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof HeapSnapshot)) {
+			return false;
+		}
+		final HeapSnapshot other = (HeapSnapshot) obj;
+		return this.heapSize == other.heapSize && this.heapMaxSize == other.heapMaxSize && this.critical == other.critical && //
+				this.edenSize == other.edenSize && this.survivorSize == other.survivorSize && this.oldGenSize == other.oldGenSize && //
+				this.metaspaceSize == other.metaspaceSize && this.allocationRate == other.allocationRate && //
+				(this.lastGcName == null ? other.lastGcName == null : this.lastGcName.equals(other.lastGcName)) && //
+				this.lastGcDuration == other.lastGcDuration && this.lastGcFreed == other.lastGcFreed;
+	}
+
+}
@@ -0,0 +1,54 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Laurent CARON
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Laurent CARON (laurent.caron at gmail dot com) - initial API and implementation
+ *******************************************************************************/
+package org.mihalis.opal.itemSelector;
+
+import java.util.List;
+
+/**
+ * Classes which implement this interface provide the items displayed by a
+ * DualList page by page, so that the whole list of items never has to be
+ * loaded in memory.
+ * <p>
+ * The methods <code>getItemCount()</code> and <code>getItems()</code> are
+ * called from a background thread, so they must not access widgets. The
+ * content of the source is supposed not to change while it is used by the
+ * DualList.
+ * </p>
+ *
+ * @see DualList#setDataSource(DLDataSource)
+ */
+public interface DLDataSource {
+
+	/**
+	 * @return the total number of items provided by this source
+	 */
+	int getItemCount();
+
+	/**
+	 * Returns a page of items
+	 *
+	 * @param start index of the first item of the page
+	 * @param count number of items of the page
+	 * @return the items between start (inclusive) and start+count (exclusive).
+	 *         The list may be shorter if the end of the source is reached.
+	 */
+	List<DLItem> getItems(int start, int count);
+
+	/**
+	 * Returns the key of an item. Items that have the same key represent the
+	 * same entry of the source, even if they have been loaded several times.
+	 *
+	 * @param item an item provided by this source
+	 * @return the key of the item
+	 */
+	Object getKey(DLItem item);
+
+}
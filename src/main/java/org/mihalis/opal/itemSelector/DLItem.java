@@ -10,10 +10,14 @@
  *******************************************************************************/
 package org.mihalis.opal.itemSelector;
 
+import java.text.CollationKey;
+import java.text.Collator;
+
 import org.eclipse.swt.graphics.Color;
 import org.eclipse.swt.graphics.Font;
 import org.eclipse.swt.graphics.Image;
 import org.mihalis.opal.OpalItem;
+import org.mihalis.opal.utils.SortUtil;
 
 /**
  * Instances of this class represents items manipulated by this DualList widget
@@ -25,6 +29,9 @@ public class DLItem extends OpalItem {
 	};
 
 	private LAST_ACTION lastAction;
+	private CollationKey collationKey;
+	private Collator collationKeyCollator;
+	private DualList owner;
 
 	/**
 	 * Constructor
@@ -91,6 +98,18 @@ public class DLItem extends OpalItem {
 		this(text, image, font, null);
 	}
 
+	/**
+	 * @see org.mihalis.opal.OpalItem#setText(java.lang.String)
+	 */
+	@Override
+	public void setText(final String text) {
+		super.setText(text);
+		this.collationKey = null;
+		if (this.owner != null) {
+			this.owner.textChanged(this);
+		}
+	}
+
 	/**
 	 * @see org.mihalis.opal.OpalItem#getHeight()
 	 */
@@ -121,4 +140,34 @@ public class DLItem extends OpalItem {
 		this.lastAction = lastAction;
 	}
 
+	/**
+	 * @return the DualList that contains this item, or null
+	 */
+	DualList getOwner() {
+		return this.owner;
+	}
+
+	/**
+	 * @param owner the DualList that contains this item, notified when the
+	 *            text changes (null if the item is removed)
+	 */
+	void setOwner(final DualList owner) {
+		this.owner = owner;
+	}
+
+	/**
+	 * Returns the collation key of the text of this item. The key is computed
+	 * once and kept until the text or the collator changes.
+	 *
+	 * @param collator collator used to compute the key
+	 * @return the collation key of the text
+	 */
+	CollationKey getCollationKey(final Collator collator) {
+		if (this.collationKey == null || this.collationKeyCollator != collator) {
+			this.collationKey = SortUtil.getCollationKey(collator, getText());
+			this.collationKeyCollator = collator;
+		}
+		return this.collationKey;
+	}
+
 }
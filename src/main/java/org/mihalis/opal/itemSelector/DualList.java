@@ -10,38 +10,61 @@
  *******************************************************************************/
 package org.mihalis.opal.itemSelector;
 
+import java.text.Collator;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.SWTException;
+import org.eclipse.swt.events.DisposeEvent;
+import org.eclipse.swt.events.DisposeListener;
+import org.eclipse.swt.events.ModifyEvent;
+import org.eclipse.swt.events.ModifyListener;
 import org.eclipse.swt.events.MouseAdapter;
 import org.eclipse.swt.events.MouseEvent;
 import org.eclipse.swt.events.SelectionEvent;
 import org.eclipse.swt.events.SelectionListener;
+import org.eclipse.swt.graphics.GC;
 import org.eclipse.swt.graphics.Image;
-import org.eclipse.swt.graphics.Point;
 import org.eclipse.swt.layout.GridData;
 import org.eclipse.swt.layout.GridLayout;
 import org.eclipse.swt.widgets.Button;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Listener;
 import org.eclipse.swt.widgets.Table;
 import org.eclipse.swt.widgets.TableColumn;
 import org.eclipse.swt.widgets.TableItem;
+import org.eclipse.swt.widgets.Text;
 import org.mihalis.opal.itemSelector.DLItem.LAST_ACTION;
+import org.mihalis.opal.utils.IndexedList;
+import org.mihalis.opal.utils.ModelUpdateQueue;
+import org.mihalis.opal.utils.ResourceManager;
 import org.mihalis.opal.utils.SWTGraphicUtil;
 import org.mihalis.opal.utils.SimpleSelectionAdapter;
+import org.mihalis.opal.utils.SortUtil;
+import org.mihalis.opal.utils.TextIndex;
 
 /**
  * Instances of this class are controls that allow the user to select multiple
  * elements.
  * <dl>
  * <dt><b>Styles:</b></dt>
- * <dd>(none)</dd>
+ * <dd>VIRTUAL, SEARCH</dd>
  * <dt><b>Events:</b></dt>
  * <dd>Selection</dd>
  * </dl>
+ * <p>
+ * Note: With the VIRTUAL style, the rows of both tables are only created when
+ * they become visible, so the widget can handle a very large number of items.
+ * With the SEARCH style, a filter field is displayed above each table.
+ * </p>
  */
 
 public class DualList extends Composite {
@@ -54,12 +77,48 @@ public class DualList extends Composite {
 	private static final String ARROW_LEFT_IMAGE = "arrow_left.png";
 	private static final String ARROW_UP_IMAGE = "arrow_up.png";
 	private static final String ARROW_RIGHT_IMAGE = "arrow_right.png";
+	private static final int SORTED_INSERTION_THRESHOLD = 64;
+	private static final int COLUMN_MARGIN = 8;
+	private static final int PAGE_RETRY_DELAY = 1000;
 
 	private final List<DLItem> items;
 	private final List<DLItem> selection;
 
 	private Table itemsTable;
 	private Table selectionTable;
+	private final boolean virtual;
+
+	private int numberOfItemsWithImage;
+	private int maxImageWidth;
+	private int itemsTextWidth;
+	private int selectionTextWidth;
+	private GC measureGC;
+	private boolean imageColumnDisplayed;
+	private int changesDepth;
+	private boolean fullRefreshNeeded;
+	private boolean columnsNeedUpdate;
+
+	private Text itemsFilterText;
+	private Text selectionFilterText;
+	private String itemsFilter;
+	private String selectionFilter;
+	private TextIndex<DLItem> textIndex;
+	private List<DLItem> itemsView;
+	private List<DLItem> selectionView;
+	private boolean viewsDirty;
+	private boolean selectionViewReordered;
+
+	private int updateDepth;
+	private ModelUpdateQueue<DualList> updateQueue;
+	private final List<DLItem> pendingChangedItems;
+	private final Map<DLItem, Boolean> pendingInitialStates;
+
+	private int sortDirection;
+	private Collator collator;
+
+	private DualListPager pager;
+	private int pageSize;
+	private int maximumCachedPages;
 
 	private List<SelectionListener> selectionListeners;
 	private List<SelectionChangeListener> selectionChangeListeners;
@@ -90,13 +149,26 @@ public class DualList extends Composite {
 	 *                thread that created the parent</li>
 	 *                </ul>
 	 *
+	 * @see SWT#VIRTUAL
+	 * @see SWT#SEARCH
 	 */
 	public DualList(final Composite parent, final int style) {
-		super(parent, style);
-		items = new ArrayList<DLItem>();
-		selection = new ArrayList<DLItem>();
+		super(parent, style & ~(SWT.VIRTUAL | SWT.SEARCH));
+		virtual = (style & SWT.VIRTUAL) != 0;
+		items = new IndexedList<DLItem>();
+		selection = new IndexedList<DLItem>();
+		itemsFilter = "";
+		selectionFilter = "";
+		pendingChangedItems = new ArrayList<DLItem>();
+		pendingInitialStates = new IdentityHashMap<DLItem, Boolean>();
+		sortDirection = SWT.NONE;
+		pageSize = 100;
+		maximumCachedPages = 20;
 
 		setLayout(new GridLayout(4, false));
+		if ((style & SWT.SEARCH) != 0) {
+			createFilterTexts();
+		}
 		createItemsTable();
 		createButtonSelectAll();
 		createSelectionTable();
@@ -107,6 +179,46 @@ public class DualList extends Composite {
 		createButtonMoveDown();
 		createButtonDeselectAll();
 		createButtonMoveLast();
+
+		addDisposeListener(new DisposeListener() {
+			@Override
+			public void widgetDisposed(final DisposeEvent e) {
+				if (pager != null) {
+					pager.dispose();
+				}
+				disposeMeasureGC();
+			}
+		});
+	}
+
+	private void createFilterTexts() {
+		itemsFilterText = createFilterText();
+		itemsFilterText.addModifyListener(new ModifyListener() {
+			@Override
+			public void modifyText(final ModifyEvent e) {
+				DualList.this.setItemsFilter(itemsFilterText.getText());
+			}
+		});
+		new Label(this, SWT.NONE);
+
+		selectionFilterText = createFilterText();
+		selectionFilterText.addModifyListener(new ModifyListener() {
+			@Override
+			public void modifyText(final ModifyEvent e) {
+				DualList.this.setSelectionFilter(selectionFilterText.getText());
+			}
+		});
+		new Label(this, SWT.NONE);
+	}
+
+	/**
+	 * @return a text field used to filter the content of a table
+	 */
+	private Text createFilterText() {
+		final Text text = new Text(this, SWT.SEARCH | SWT.ICON_SEARCH | SWT.ICON_CANCEL);
+		text.setMessage(ResourceManager.getLabel(ResourceManager.DUAL_LIST_FILTER));
+		text.setLayoutData(new GridData(GridData.FILL, GridData.CENTER, true, false));
+		return text;
 	}
 
 	private void createItemsTable() {
@@ -126,7 +238,7 @@ public class DualList extends Composite {
 	 * @return a table that will contain data
 	 */
 	private Table createTable() {
-		final Table table = new Table(this, SWT.V_SCROLL | SWT.H_SCROLL | SWT.MULTI | SWT.FULL_SELECTION);
+		final Table table = new Table(this, SWT.V_SCROLL | SWT.H_SCROLL | SWT.MULTI | SWT.FULL_SELECTION | (virtual ? SWT.VIRTUAL : SWT.NONE));
 		table.setLinesVisible(false);
 		table.setHeaderVisible(false);
 		final GridData gd = new GridData(GridData.FILL, GridData.FILL, true, true, 1, 4);
@@ -135,6 +247,23 @@ public class DualList extends Composite {
 		new TableColumn(table, SWT.CENTER);
 		new TableColumn(table, SWT.LEFT);
 		table.setData(-1);
+		if (virtual) {
+			table.addListener(SWT.SetData, new Listener() {
+				@Override
+				public void handleEvent(final Event event) {
+					final TableItem tableItem = (TableItem) event.item;
+					if (pager != null && table == itemsTable) {
+						fillPagedTableItem(tableItem, table.indexOf(tableItem));
+						return;
+					}
+					final List<DLItem> listOfData = getDisplayedItems(table == selectionTable);
+					final int index = table.indexOf(tableItem);
+					if (index < listOfData.size()) {
+						fillTableItem(tableItem, listOfData.get(index), imageColumnDisplayed);
+					}
+				}
+			});
+		}
 		return table;
 	}
 
@@ -295,11 +424,14 @@ public class DualList extends Composite {
 	 */
 	public void add(final DLItem item) {
 		checkWidget();
+		checkNoDataSource();
 		if (item == null) {
 			SWT.error(SWT.ERROR_NULL_ARGUMENT);
 		}
-		items.add(item);
-		redrawTables();
+		startChanges();
+		insertItem(false, getInsertionIndex(item, items.size()), item);
+		addToIndex(item);
+		endChanges();
 	}
 
 	/**
@@ -331,14 +463,17 @@ public class DualList extends Composite {
 	 */
 	public void add(final DLItem item, final int index) {
 		checkWidget();
+		checkNoDataSource();
 		if (item == null) {
 			SWT.error(SWT.ERROR_NULL_ARGUMENT);
 		}
 		if (index < 0 || index >= items.size()) {
 			SWT.error(SWT.ERROR_INVALID_ARGUMENT);
 		}
-		items.add(index, item);
-		redrawTables();
+		startChanges();
+		insertItem(false, getInsertionIndex(item, index), item);
+		addToIndex(item);
+		endChanges();
 	}
 
 	/**
@@ -528,21 +663,10 @@ public class DualList extends Composite {
 	 */
 	private void deselect(final int index, final boolean shouldFireEvents) {
 		checkWidget();
-		if (index < 0 || index >= items.size()) {
+		if (index < 0 || index >= selection.size()) {
 			return;
 		}
-		final DLItem item = selection.remove(index);
-		if (shouldFireEvents) {
-			fireSelectionEvent(item);
-		}
-
-		final List<DLItem> deselectedItems = new ArrayList<DLItem>();
-		item.setLastAction(LAST_ACTION.DESELECTION);
-		deselectedItems.add(item);
-		if (shouldFireEvents) {
-			fireSelectionChangeEvent(deselectedItems);
-		}
-		redrawTables();
+		deselectIndices(new int[] { index }, shouldFireEvents);
 	}
 
 	/**
@@ -624,28 +748,7 @@ public class DualList extends Composite {
 		if (indices == null) {
 			SWT.error(SWT.ERROR_NULL_ARGUMENT);
 		}
-
-		final List<DLItem> toBeRemoved = new ArrayList<DLItem>();
-
-		for (final int index : indices) {
-			if (index < 0 || index >= items.size()) {
-				continue;
-			}
-			toBeRemoved.add(selection.get(index));
-		}
-
-		for (final DLItem item : toBeRemoved) {
-			selection.remove(item);
-			if (shouldFireEvents) {
-				fireSelectionEvent(item);
-			}
-		}
-		if (shouldFireEvents) {
-			fireSelectionChangeEvent(toBeRemoved);
-		}
-
-		toBeRemoved.clear();
-		redrawTables();
+		deselectIndices(indices, shouldFireEvents);
 	}
 
 	/**
@@ -707,26 +810,7 @@ public class DualList extends Composite {
 		if (start > end) {
 			SWT.error(SWT.ERROR_INVALID_RANGE);
 		}
-		final List<DLItem> toBeRemoved = new ArrayList<DLItem>();
-
-		for (int index = start; index <= end; index++) {
-			if (index < 0 || index >= items.size()) {
-				continue;
-			}
-			toBeRemoved.add(selection.get(index));
-		}
-
-		for (final DLItem item : toBeRemoved) {
-			selection.remove(item);
-			if (shouldFireEvents) {
-				fireSelectionEvent(item);
-			}
-		}
-		if (shouldFireEvents) {
-			fireSelectionChangeEvent(toBeRemoved);
-		}
-		toBeRemoved.clear();
-		redrawTables();
+		deselectIndices(range(start, end), shouldFireEvents);
 	}
 
 	/**
@@ -772,28 +856,41 @@ public class DualList extends Composite {
 	 */
 	public void deselectAll(final boolean shouldFireEvents) {
 		checkWidget();
-		items.addAll(selection);
-
+		if (selectionView != null) {
+			deselectIndices(getIndices(selectionView, selection), shouldFireEvents);
+			return;
+		}
+		if (pager != null) {
+			deselectIndices(range(0, selection.size() - 1), shouldFireEvents);
+			return;
+		}
 		final List<DLItem> deselectedItems = new ArrayList<DLItem>();
 		for (final DLItem item : selection) {
 			item.setLastAction(LAST_ACTION.DESELECTION);
 			deselectedItems.add(item);
-			if (shouldFireEvents) {
-				fireSelectionEvent(item);
-			}
 		}
-		fireSelectionChangeEvent(deselectedItems);
 
+		startChanges();
+		items.addAll(selection);
+		if (sortDirection != SWT.NONE) {
+			sortItems();
+		}
 		selection.clear();
-		redrawTables();
+		fullRefreshNeeded = true;
+		endChanges();
+		if (shouldFireEvents) {
+			fireSelectionEvents(deselectedItems);
+		}
 	}
 
 	/**
 	 * Returns the item at the given, zero-relative index in the receiver.
-	 * Throws an exception if the index is out of range.
+	 * Throws an exception if the index is out of range. If the items are
+	 * provided by a data source and the page of the item has not been loaded
+	 * yet, the page is loaded in background and null is returned.
 	 *
 	 * @param index the index of the item to return
-	 * @return the item at the given index
+	 * @return the item at the given index (or null if its page is loading)
 	 *
 	 * @exception IllegalArgumentException
 	 *                <ul>
@@ -812,9 +909,12 @@ public class DualList extends Composite {
 
 	public DLItem getItem(final int index) {
 		checkWidget();
-		if (index < 0 || index >= items.size()) {
+		if (index < 0 || index >= getItemCount()) {
 			SWT.error(SWT.ERROR_INVALID_ARGUMENT);
 		}
+		if (pager != null) {
+			return pager.getItem(pager.toSourceIndex(index));
+		}
 		return items.get(index);
 	}
 
@@ -833,6 +933,9 @@ public class DualList extends Composite {
 	 */
 	public int getItemCount() {
 		checkWidget();
+		if (pager != null) {
+			return pager.getRowCount();
+		}
 		return items.size();
 	}
 
@@ -842,10 +945,18 @@ public class DualList extends Composite {
 	 * <p>
 	 * Note: This is not the actual structure used by the receiver to maintain
 	 * its list of items, so modifying the array will not affect the receiver.
+	 * This method is not available when the items are provided by a data
+	 * source (the items would have to be loaded on the UI thread): the items
+	 * must then be read from the data source.
 	 * </p>
 	 *
 	 * @return the items in the receiver's list
 	 *
+	 * @exception IllegalArgumentException
+	 *                <ul>
+	 *                <li>ERROR_INVALID_ARGUMENT - if the items are provided by
+	 *                a data source</li>
+	 *                </ul>
 	 * @exception SWTException
 	 *                <ul>
 	 *                <li>ERROR_WIDGET_DISPOSED - if the receiver has been
@@ -856,7 +967,8 @@ public class DualList extends Composite {
 	 */
 	public DLItem[] getItems() {
 		checkWidget();
-		return items.toArray(new DLItem[items.size()]);
+		final List<DLItem> list = getItemsAsList();
+		return list.toArray(new DLItem[list.size()]);
 	}
 
 	/**
@@ -865,10 +977,18 @@ public class DualList extends Composite {
 	 * <p>
 	 * Note: This is not the actual structure used by the receiver to maintain
 	 * its list of items, so modifying the array will not affect the receiver.
+	 * This method is not available when the items are provided by a data
+	 * source (the items would have to be loaded on the UI thread): the items
+	 * must then be read from the data source.
 	 * </p>
 	 *
 	 * @return the items in the receiver's list
 	 *
+	 * @exception IllegalArgumentException
+	 *                <ul>
+	 *                <li>ERROR_INVALID_ARGUMENT - if the items are provided by
+	 *                a data source</li>
+	 *                </ul>
 	 * @exception SWTException
 	 *                <ul>
 	 *                <li>ERROR_WIDGET_DISPOSED - if the receiver has been
@@ -879,6 +999,7 @@ public class DualList extends Composite {
 	 */
 	public List<DLItem> getItemsAsList() {
 		checkWidget();
+		checkNoDataSource();
 		return new ArrayList<DLItem>(items);
 	}
 
@@ -902,7 +1023,7 @@ public class DualList extends Composite {
 	 */
 	public DLItem[] getSelection() {
 		checkWidget();
-		return selection.toArray(new DLItem[items.size()]);
+		return selection.toArray(new DLItem[selection.size()]);
 	}
 
 	/**
@@ -967,11 +1088,13 @@ public class DualList extends Composite {
 	 */
 	public void remove(final int index) {
 		checkWidget();
+		checkNoDataSource();
 		if (index < 0 || index >= items.size()) {
 			SWT.error(SWT.ERROR_INVALID_ARGUMENT);
 		}
-		items.remove(index);
-		redrawTables();
+		startChanges();
+		removeFromIndex(removeItem(false, index));
+		endChanges();
 	}
 
 	/**
@@ -997,13 +1120,19 @@ public class DualList extends Composite {
 	 */
 	public void remove(final int[] indices) {
 		checkWidget();
+		checkNoDataSource();
 		for (final int index : indices) {
 			if (index < 0 || index >= items.size()) {
 				SWT.error(SWT.ERROR_INVALID_ARGUMENT);
 			}
-			items.remove(index);
 		}
-		redrawTables();
+		final int[] sortedIndices = sortIndices(indices, items.size());
+		startChanges();
+		for (final int index : sortedIndices) {
+			removeFromIndex(items.get(index));
+		}
+		removeItems(false, sortedIndices);
+		endChanges();
 	}
 
 	/**
@@ -1029,16 +1158,17 @@ public class DualList extends Composite {
 	 */
 	public void remove(final int start, final int end) {
 		checkWidget();
-		if (start > end) {
+		checkNoDataSource();
+		if (start > end || start < 0 || end >= items.size()) {
 			SWT.error(SWT.ERROR_INVALID_ARGUMENT);
 		}
-		for (int index = start; index < end; index++) {
-			if (index < 0 || index >= items.size()) {
-				SWT.error(SWT.ERROR_INVALID_ARGUMENT);
-			}
-			items.remove(index);
+		final int[] indices = range(start, end);
+		startChanges();
+		for (final int index : indices) {
+			removeFromIndex(items.get(index));
 		}
-		redrawTables();
+		removeItems(false, indices);
+		endChanges();
 	}
 
 	/**
@@ -1063,14 +1193,17 @@ public class DualList extends Composite {
 	 */
 	public void remove(final DLItem item) {
 		checkWidget();
+		checkNoDataSource();
 		if (item == null) {
 			SWT.error(SWT.ERROR_NULL_ARGUMENT);
 		}
-		if (!items.contains(item)) {
+		final int index = items.indexOf(item);
+		if (index == -1) {
 			SWT.error(SWT.ERROR_INVALID_ARGUMENT);
 		}
-		items.remove(item);
-		redrawTables();
+		startChanges();
+		removeFromIndex(removeItem(false, index));
+		endChanges();
 	}
 
 	/**
@@ -1087,8 +1220,14 @@ public class DualList extends Composite {
 	 */
 	public void removeAll() {
 		checkWidget();
+		closeDataSource();
+		startChanges();
+		for (final DLItem item : items) {
+			removeFromIndex(item);
+		}
 		items.clear();
-		redrawTables();
+		fullRefreshNeeded = true;
+		endChanges();
 	}
 
 	/**
@@ -1131,21 +1270,10 @@ public class DualList extends Composite {
 
 	private void select(final int index, final boolean shouldFireEvents) {
 		checkWidget();
-		if (index < 0 || index >= items.size()) {
+		if (index < 0 || index >= getItemCount()) {
 			return;
 		}
-		final List<DLItem> selectedItems = new ArrayList<DLItem>();
-		final DLItem item = items.get(index);
-		item.setLastAction(LAST_ACTION.SELECTION);
-		selectedItems.add(item);
-		selection.add(item);
-
-		if (shouldFireEvents) {
-			fireSelectionEvent(item);
-			fireSelectionChangeEvent(selectedItems);
-		}
-
-		redrawTables();
+		selectIndices(new int[] { index }, shouldFireEvents);
 	}
 
 	/**
@@ -1211,25 +1339,7 @@ public class DualList extends Composite {
 		if (indices == null) {
 			SWT.error(SWT.ERROR_NULL_ARGUMENT);
 		}
-
-		final List<DLItem> selectedItems = new ArrayList<DLItem>();
-		for (final int index : indices) {
-			if (index < 0 || index >= items.size()) {
-				continue;
-			}
-			final DLItem item = items.get(index);
-			item.setLastAction(LAST_ACTION.SELECTION);
-			selectedItems.add(item);
-
-			selection.add(item);
-			if (shouldFireEvents) {
-				fireSelectionEvent(item);
-			}
-		}
-		if (shouldFireEvents) {
-			fireSelectionChangeEvent(selectedItems);
-		}
-		redrawTables();
+		selectIndices(indices, shouldFireEvents);
 	}
 
 	/**
@@ -1293,23 +1403,7 @@ public class DualList extends Composite {
 		if (start > end) {
 			SWT.error(SWT.ERROR_INVALID_RANGE);
 		}
-		final List<DLItem> selectedItems = new ArrayList<DLItem>();
-		for (int index = start; index <= end; index++) {
-			if (index < 0 || index >= items.size()) {
-				continue;
-			}
-			final DLItem item = items.get(index);
-			item.setLastAction(LAST_ACTION.SELECTION);
-			selectedItems.add(item);
-			selection.add(item);
-			if (shouldFireEvents) {
-				fireSelectionEvent(item);
-			}
-		}
-		if (shouldFireEvents) {
-			fireSelectionChangeEvent(selectedItems);
-		}
-		redrawTables();
+		selectIndices(range(start, end), shouldFireEvents);
 	}
 
 	/**
@@ -1348,23 +1442,28 @@ public class DualList extends Composite {
 
 	private void selectAll(final boolean shouldFireEvents) {
 		checkWidget();
-		selection.addAll(items);
-		if (shouldFireEvents) {
-			for (final DLItem item : items) {
-				fireSelectionEvent(item);
-			}
+		if (itemsView != null) {
+			selectIndices(getIndices(itemsView, items), shouldFireEvents);
+			return;
+		}
+		if (pager != null) {
+			selectIndices(range(0, pager.getRowCount() - 1), shouldFireEvents);
+			return;
+		}
+		final List<DLItem> selectedItems = new ArrayList<DLItem>();
+		for (final DLItem item : items) {
+			item.setLastAction(LAST_ACTION.SELECTION);
+			selectedItems.add(item);
 		}
 
+		startChanges();
+		selection.addAll(items);
+		items.clear();
+		fullRefreshNeeded = true;
+		endChanges();
 		if (shouldFireEvents) {
-			final List<DLItem> selectedItems = new ArrayList<DLItem>();
-			for (final DLItem item : items) {
-				item.setLastAction(LAST_ACTION.SELECTION);
-				selectedItems.add(item);
-			}
-			fireSelectionChangeEvent(selectedItems);
+			fireSelectionEvents(selectedItems);
 		}
-		items.clear();
-		redrawTables();
 	}
 
 	/**
@@ -1373,21 +1472,16 @@ public class DualList extends Composite {
 	@Override
 	public void setBounds(final int x, final int y, final int width, final int height) {
 		super.setBounds(x, y, width, height);
-		final boolean itemsContainImage = itemsContainImage();
-		final Point itemsTableDefaultSize = itemsTable.computeSize(SWT.DEFAULT, SWT.DEFAULT);
-		final Point selectionTableDefaultSize = selectionTable.computeSize(SWT.DEFAULT, SWT.DEFAULT);
+		final int itemsTableSize = getAvailableWidth(itemsTable, itemsTable.computeSize(SWT.DEFAULT, SWT.DEFAULT).y);
+		final int selectionTableSize = getAvailableWidth(selectionTable, selectionTable.computeSize(SWT.DEFAULT, SWT.DEFAULT).y);
 
-		int itemsTableSize = itemsTable.getSize().x;
-		if (itemsTableDefaultSize.y > itemsTable.getSize().y) {
-			itemsTableSize -= itemsTable.getVerticalBar().getSize().x;
-		}
-
-		int selectionTableSize = selectionTable.getSize().x;
-		if (selectionTableDefaultSize.y > selectionTable.getSize().y) {
-			selectionTableSize -= selectionTable.getVerticalBar().getSize().x;
+		if (virtual) {
+			// Packing a column of a virtual table would create all its rows
+			setColumnWidths(itemsTableSize, selectionTableSize);
+			return;
 		}
 
-		if (itemsContainImage) {
+		if (imageColumnDisplayed) {
 			itemsTable.getColumn(0).pack();
 			itemsTable.getColumn(1).setWidth(itemsTableSize - itemsTable.getColumn(0).getWidth());
 
@@ -1403,23 +1497,136 @@ public class DualList extends Composite {
 		selectionTable.getColumn(0).pack();
 	}
 
+	/**
+	 * Resizes the columns after rows were added or removed. Unlike
+	 * <code>setBounds()</code>, the rows are not measured again: the widths
+	 * of the images and of the texts are tracked when the rows are filled.
+	 */
+	private void updateColumnWidths() {
+		final int itemsContentHeight = itemsTable.getItemCount() * itemsTable.getItemHeight() + itemsTable.getHeaderHeight();
+		final int selectionContentHeight = selectionTable.getItemCount() * selectionTable.getItemHeight() + selectionTable.getHeaderHeight();
+		setColumnWidths(getAvailableWidth(itemsTable, itemsContentHeight), getAvailableWidth(selectionTable, selectionContentHeight));
+	}
+
+	/**
+	 * @param table table
+	 * @param contentHeight height of the rows of the table
+	 * @return the width of the table, without the vertical scroll bar if the
+	 *         rows do not fit in the table
+	 */
+	private static int getAvailableWidth(final Table table, final int contentHeight) {
+		int tableSize = table.getSize().x;
+		if (contentHeight > table.getSize().y) {
+			tableSize -= table.getVerticalBar().getSize().x;
+		}
+		return tableSize;
+	}
+
+	/**
+	 * Sets the widths of the columns from the tracked widths of the images and
+	 * texts
+	 *
+	 * @param itemsTableSize available width of the table of items
+	 * @param selectionTableSize available width of the selection table
+	 */
+	private void setColumnWidths(final int itemsTableSize, final int selectionTableSize) {
+		if (imageColumnDisplayed) {
+			final int imageColumnWidth = maxImageWidth + COLUMN_MARGIN;
+			itemsTable.getColumn(0).setWidth(imageColumnWidth);
+			itemsTable.getColumn(1).setWidth(itemsTableSize - imageColumnWidth);
+			selectionTable.getColumn(0).setWidth(imageColumnWidth);
+			selectionTable.getColumn(1).setWidth(selectionTableSize - imageColumnWidth);
+		} else if (virtual) {
+			itemsTable.getColumn(0).setWidth(itemsTableSize);
+			itemsTable.getColumn(1).setWidth(0);
+			selectionTable.getColumn(0).setWidth(selectionTableSize);
+			selectionTable.getColumn(1).setWidth(0);
+		} else {
+			// Same widths as packed columns
+			itemsTable.getColumn(0).setWidth(itemsTextWidth + COLUMN_MARGIN);
+			selectionTable.getColumn(0).setWidth(selectionTextWidth + COLUMN_MARGIN);
+		}
+	}
+
+	/**
+	 * Widens the tracked width of the texts of a table if the text of an item
+	 * is larger than the texts already displayed. Like the width of the
+	 * images, this width does not decrease when rows are removed, until the
+	 * table is refilled.
+	 *
+	 * @param table table that displays the item
+	 * @param item item
+	 */
+	private void measureText(final Table table, final DLItem item) {
+		if (measureGC == null) {
+			measureGC = new GC(this);
+		}
+		measureGC.setFont(item.getFont() == null ? table.getFont() : item.getFont());
+		final int width = measureGC.textExtent(item.getText() == null ? "" : item.getText()).x;
+		if (table == selectionTable) {
+			selectionTextWidth = Math.max(selectionTextWidth, width);
+		} else {
+			itemsTextWidth = Math.max(itemsTextWidth, width);
+		}
+	}
+
+	/**
+	 * Disposes the graphic context used to measure the texts
+	 */
+	private void disposeMeasureGC() {
+		if (measureGC != null) {
+			measureGC.dispose();
+			measureGC = null;
+		}
+	}
+
+	/**
+	 * @return the width of the largest image of the items
+	 */
+	private int getMaxImageWidth() {
+		int width = 0;
+		for (final DLItem item : items) {
+			width = Math.max(width, getImageWidth(item));
+		}
+		for (final DLItem item : selection) {
+			width = Math.max(width, getImageWidth(item));
+		}
+		return width;
+	}
+
+	/**
+	 * @param item item
+	 * @return the width of the image of the item, 0 if the item has no image
+	 */
+	private static int getImageWidth(final DLItem item) {
+		return item.getImage() == null ? 0 : item.getImage().getBounds().width;
+	}
+
 	/**
 	 * @return <code>true</code> if any item contains an image
 	 */
 	private boolean itemsContainImage() {
+		return numberOfItemsWithImage > 0;
+	}
+
+	/**
+	 * @return the number of items (selected or not) that contain an image
+	 */
+	private int countItemsWithImage() {
+		int count = 0;
 		for (final DLItem item : items) {
 			if (item.getImage() != null) {
-				return true;
+				count++;
 			}
 		}
 
 		for (final DLItem item : selection) {
 			if (item.getImage() != null) {
-				return true;
+				count++;
 			}
 		}
 
-		return false;
+		return count;
 	}
 
 	/**
@@ -1446,14 +1653,18 @@ public class DualList extends Composite {
 	 */
 	public void setItem(final int index, final DLItem item) {
 		checkWidget();
+		checkNoDataSource();
 		if (item == null) {
 			SWT.error(SWT.ERROR_NULL_ARGUMENT);
 		}
 		if (index < 0 || index >= items.size()) {
 			SWT.error(SWT.ERROR_INVALID_RANGE);
 		}
-		items.set(index, item);
-		redrawTables();
+		startChanges();
+		removeFromIndex(removeItem(false, index));
+		insertItem(false, getInsertionIndex(item, index), item);
+		addToIndex(item);
+		endChanges();
 	}
 
 	/**
@@ -1488,9 +1699,21 @@ public class DualList extends Composite {
 			}
 			temp.add(item);
 		}
+		closeDataSource();
+		startChanges();
+		for (final DLItem item : this.items) {
+			removeFromIndex(item);
+		}
 		this.items.clear();
 		this.items.addAll(temp);
-		redrawTables();
+		if (sortDirection != SWT.NONE) {
+			sortItems();
+		}
+		for (final DLItem item : temp) {
+			addToIndex(item);
+		}
+		fullRefreshNeeded = true;
+		endChanges();
 	}
 
 	/**
@@ -1513,7 +1736,6 @@ public class DualList extends Composite {
 	 *                </ul>
 	 */
 	public void setItems(final List<DLItem> items) {
-		checkWidget();
 		checkWidget();
 		if (items == null) {
 			SWT.error(SWT.ERROR_NULL_ARGUMENT);
@@ -1526,230 +1748,1457 @@ public class DualList extends Composite {
 			}
 			temp.add(item);
 		}
+		closeDataSource();
+		startChanges();
+		for (final DLItem item : this.items) {
+			removeFromIndex(item);
+		}
 		this.items.clear();
 		this.items.addAll(temp);
-		redrawTables();
+		if (sortDirection != SWT.NONE) {
+			sortItems();
+		}
+		for (final DLItem item : temp) {
+			addToIndex(item);
+		}
+		fullRefreshNeeded = true;
+		endChanges();
 	}
 
 	/**
 	 * Redraws all tables that compose this widget
 	 */
 	private void redrawTables() {
-		setRedraw(false);
+		numberOfItemsWithImage = countItemsWithImage();
+		maxImageWidth = getMaxImageWidth();
+		imageColumnDisplayed = itemsContainImage();
+		updateViews();
 		redrawTable(itemsTable, false);
 		redrawTable(selectionTable, true);
-		setRedraw(true);
-		this.setBounds(getBounds());
 	}
 
 	/**
-	 * Redraw a given table
-	 *
-	 * @param table table to be redrawned
-	 * @param isSelected if <code>true</code>, fill the table with the
-	 *            selection. Otherwise, fill the table with the unselected
-	 *            items.
+	 * Starts a set of changes. Until the matching call to
+	 * <code>endChanges()</code>, the tables are not redrawn and the changes
+	 * made to the lists are only reported to the tables row by row.
 	 */
-	private void redrawTable(final Table table, final boolean isSelected) {
-		clean(table);
-		fillData(table, isSelected ? selection : items);
+	private void startChanges() {
+		if (changesDepth++ == 0) {
+			setRedraw(false);
+		}
 	}
 
 	/**
-	 * Cleans the content of a table
-	 *
-	 * @param table table to be emptied
+	 * Ends a set of changes. The tables are rebuilt only if a full refresh was
+	 * requested or if the image column appears or disappears, and the columns
+	 * are resized only if rows were added or removed (from the tracked widths
+	 * of the images and texts, without measuring the rows again).
 	 */
-	private void clean(final Table table) {
-		if (table == null) {
+	private void endChanges() {
+		if (--changesDepth > 0) {
 			return;
 		}
-
-		for (final TableItem item : table.getItems()) {
-			item.dispose();
+		if (selectionViewReordered) {
+			applySelectionViewOrder();
+		}
+		if (fullRefreshNeeded || imageColumnDisplayed != itemsContainImage()) {
+			redrawTables();
+			columnsNeedUpdate = true;
+		} else if (viewsDirty) {
+			updateViews();
+			if (itemsView != null) {
+				redrawTable(itemsTable, false);
+			}
+			if (selectionView != null) {
+				redrawTable(selectionTable, true);
+			}
+			columnsNeedUpdate = true;
+		}
+		fullRefreshNeeded = false;
+		viewsDirty = false;
+		setRedraw(true);
+		if (columnsNeedUpdate) {
+			columnsNeedUpdate = false;
+			updateColumnWidths();
 		}
+		disposeMeasureGC();
 	}
 
 	/**
-	 * Fill a table with data
+	 * Inserts an item in a list and the matching row in its table
 	 *
-	 * @param table table to be filled
-	 * @param listOfData list of data
+	 * @param isSelected if <code>true</code>, the item is inserted in the
+	 *            selection
+	 * @param index index of the new item
+	 * @param item item to insert
 	 */
-	private void fillData(final Table table, final List<DLItem> listOfData) {
-		final boolean itemsContainImage = itemsContainImage();
-		for (final DLItem item : listOfData) {
-			final TableItem tableItem = new TableItem(table, SWT.NONE);
-			tableItem.setData(item);
-
-			if (item.getBackground() != null) {
-				tableItem.setBackground(item.getBackground());
-			}
-
-			if (item.getForeground() != null) {
-				tableItem.setForeground(item.getForeground());
-			}
-
-			if (item.getImage() != null) {
-				tableItem.setImage(0, item.getImage());
-			}
-
-			if (item.getFont() != null) {
-				tableItem.setFont(item.getFont());
-			}
-			final int textColumn = itemsContainImage ? 1 : 0;
-			tableItem.setText(textColumn, item.getText());
+	private void insertItem(final boolean isSelected, final int index, final DLItem item) {
+		(isSelected ? selection : items).add(index, item);
+		if (item.getImage() != null) {
+			numberOfItemsWithImage++;
+			maxImageWidth = Math.max(maxImageWidth, getImageWidth(item));
+		}
+		if (shouldUpdateRows(isSelected)) {
+			fillTableItem(new TableItem(isSelected ? selectionTable : itemsTable, SWT.NONE, index), item, imageColumnDisplayed);
+			columnsNeedUpdate = true;
 		}
 	}
 
 	/**
-	 * Move the selected item to the first position
+	 * Removes an item from a list and the matching row from its table
+	 *
+	 * @param isSelected if <code>true</code>, the item is removed from the
+	 *            selection
+	 * @param index index of the item to remove
+	 * @return the removed item
 	 */
-	protected void moveSelectionToFirstPosition() {
-		if (selectionTable.getSelectionCount() == 0) {
-			return;
+	private DLItem removeItem(final boolean isSelected, final int index) {
+		final DLItem item = (isSelected ? selection : items).remove(index);
+		if (item.getImage() != null) {
+			numberOfItemsWithImage--;
 		}
-
-		int index = 0;
-		for (final TableItem tableItem : selectionTable.getSelection()) {
-			final DLItem item = (DLItem) tableItem.getData();
-			selection.remove(item);
-			selection.add(index++, item);
+		if (shouldUpdateRows(isSelected)) {
+			(isSelected ? selectionTable : itemsTable).remove(index);
+			columnsNeedUpdate = true;
 		}
-
-		redrawTables();
-		selectionTable.select(0, index - 1);
-		selectionTable.forceFocus();
+		return item;
 	}
 
 	/**
-	 * Select a given item
+	 * @param isSelected if <code>true</code>, check the selection table.
+	 *            Otherwise, check the table of items.
+	 * @return <code>true</code> if the changes made to a list can be applied
+	 *         row by row to its table. This is not the case during a full
+	 *         refresh or an update (see <code>beginUpdate()</code>), or if
+	 *         the table is filtered (its rows are then rebuilt from the
+	 *         filtered view at the end of the changes)
 	 */
-	protected void selectItem() {
-		if (itemsTable.getSelectionCount() == 0) {
-			return;
+	private boolean shouldUpdateRows(final boolean isSelected) {
+		if (updateDepth > 0) {
+			// The tables are rebuilt once at the end of the update
+			fullRefreshNeeded = true;
 		}
-		final List<DLItem> selectedItems = new ArrayList<DLItem>();
-		for (final TableItem tableItem : itemsTable.getSelection()) {
-			final DLItem item = (DLItem) tableItem.getData();
-			item.setLastAction(LAST_ACTION.SELECTION);
-			selectedItems.add(item);
-			selection.add(item);
-			items.remove(item);
-			fireSelectionEvent(item);
+		if (fullRefreshNeeded) {
+			return false;
 		}
-		fireSelectionChangeEvent(selectedItems);
-
-		redrawTables();
+		if (getView(isSelected) != null) {
+			viewsDirty = true;
+			return false;
+		}
+		return true;
 	}
 
 	/**
-	 * Move the selected item up
+	 * Moves a row of the selection table. If the table is filtered, only the
+	 * filtered view is reordered, the selection is updated at the end of the
+	 * changes.
+	 *
+	 * @param from current index of the row
+	 * @param to new index of the row
 	 */
-	protected void moveUpItem() {
-		if (selectionTable.getSelectionCount() == 0) {
+	private void moveSelectedRow(final int from, final int to) {
+		if (selectionView == null) {
+			moveSelectedItem(from, to);
 			return;
 		}
+		selectionView.add(to, selectionView.remove(from));
+		selectionViewReordered = true;
+	}
 
-		for (final int index : selectionTable.getSelectionIndices()) {
-			if (index == 0) {
-				selectionTable.forceFocus();
-				return;
-			}
-		}
-
-		final int[] newSelection = new int[selectionTable.getSelectionCount()];
-		int newSelectionIndex = 0;
-		for (final TableItem tableItem : selectionTable.getSelection()) {
-			final int position = selection.indexOf(tableItem.getData());
-			swap(position, position - 1);
-			newSelection[newSelectionIndex++] = position - 1;
+	/**
+	 * Reports the new order of the filtered view of the selection to the
+	 * selection. The items hidden by the filter keep their position, the items
+	 * of the view are placed at the positions occupied by the view, in the new
+	 * order.
+	 */
+	private void applySelectionViewOrder() {
+		selectionViewReordered = false;
+		final int[] positions = getIndices(selectionView, selection);
+		Arrays.sort(positions);
+		for (int i = 0; i < positions.length; i++) {
+			selection.set(positions[i], selectionView.get(i));
 		}
-
-		redrawTables();
-		selectionTable.select(newSelection);
-		selectionTable.forceFocus();
+		viewsDirty = true;
 	}
 
 	/**
-	 * Deselect a given item
+	 * Removes several items from a list and the matching rows from its table
+	 *
+	 * @param isSelected if <code>true</code>, the items are removed from the
+	 *            selection
+	 * @param sortedIndices indices of the items to remove, sorted and without
+	 *            duplicates
+	 */
+	private void removeItems(final boolean isSelected, final int[] sortedIndices) {
+		final List<DLItem> listOfData = isSelected ? selection : items;
+		for (int i = sortedIndices.length - 1; i >= 0; i--) {
+			if (listOfData.remove(sortedIndices[i]).getImage() != null) {
+				numberOfItemsWithImage--;
+			}
+		}
+		if (sortedIndices.length > 0 && shouldUpdateRows(isSelected)) {
+			(isSelected ? selectionTable : itemsTable).remove(sortedIndices);
+			columnsNeedUpdate = true;
+		}
+	}
+
+	/**
+	 * Adds several items at the end of a list and the matching rows at the end
+	 * of its table
+	 *
+	 * @param isSelected if <code>true</code>, the items are added to the
+	 *            selection
+	 * @param newItems items to add
+	 */
+	private void appendItems(final boolean isSelected, final List<DLItem> newItems) {
+		final List<DLItem> listOfData = isSelected ? selection : items;
+		listOfData.addAll(newItems);
+		for (final DLItem item : newItems) {
+			if (item.getImage() != null) {
+				numberOfItemsWithImage++;
+				maxImageWidth = Math.max(maxImageWidth, getImageWidth(item));
+			}
+		}
+		if (newItems.isEmpty() || !shouldUpdateRows(isSelected)) {
+			return;
+		}
+		final Table table = isSelected ? selectionTable : itemsTable;
+		if (virtual) {
+			// The new rows are filled on demand by the SetData listener
+			table.setItemCount(listOfData.size());
+		} else {
+			for (final DLItem item : newItems) {
+				fillTableItem(new TableItem(table, SWT.NONE), item, imageColumnDisplayed);
+			}
+		}
+		columnsNeedUpdate = true;
+	}
+
+	/**
+	 * Moves an item of the selection and the matching row of the selection
+	 * table. The columns are not resized, because the content of the table
+	 * does not change.
+	 *
+	 * @param from current index of the item
+	 * @param to new index of the item
+	 */
+	private void moveSelectedItem(final int from, final int to) {
+		if (from == to) {
+			return;
+		}
+		final DLItem item = selection.remove(from);
+		selection.add(to, item);
+		if (shouldUpdateRows(true)) {
+			selectionTable.remove(from);
+			fillTableItem(new TableItem(selectionTable, SWT.NONE, to), item, imageColumnDisplayed);
+		}
+	}
+
+	/**
+	 * Moves the items of the given indices from the list of items to the end
+	 * of the selection
+	 *
+	 * @param indices indices of the items to select
+	 * @param shouldFireEvents if <code>true</code>, the selection listeners
+	 *            are notified
+	 */
+	private void selectIndices(final int[] indices, final boolean shouldFireEvents) {
+		if (pager != null) {
+			selectPagedRows(indices, shouldFireEvents);
+			return;
+		}
+		final int[] sortedIndices = sortIndices(indices, items.size());
+		final List<DLItem> selectedItems = new ArrayList<DLItem>(sortedIndices.length);
+		for (final int index : sortedIndices) {
+			final DLItem item = items.get(index);
+			item.setLastAction(LAST_ACTION.SELECTION);
+			selectedItems.add(item);
+		}
+
+		startChanges();
+		removeItems(false, sortedIndices);
+		appendItems(true, selectedItems);
+		endChanges();
+		if (shouldFireEvents) {
+			fireSelectionEvents(selectedItems);
+		}
+	}
+
+	/**
+	 * Moves the items of the given indices from the selection to the end of
+	 * the list of items
+	 *
+	 * @param indices indices of the items to deselect
+	 * @param shouldFireEvents if <code>true</code>, the selection listeners
+	 *            are notified
+	 */
+	private void deselectIndices(final int[] indices, final boolean shouldFireEvents) {
+		final int[] sortedIndices = sortIndices(indices, selection.size());
+		final List<DLItem> deselectedItems = new ArrayList<DLItem>(sortedIndices.length);
+		for (final int index : sortedIndices) {
+			final DLItem item = selection.get(index);
+			item.setLastAction(LAST_ACTION.DESELECTION);
+			deselectedItems.add(item);
+		}
+
+		startChanges();
+		removeItems(true, sortedIndices);
+		if (pager == null) {
+			addDeselectedItems(deselectedItems);
+		} else {
+			pager.deselect(deselectedItems);
+			redrawTable(itemsTable, false);
+			columnsNeedUpdate = true;
+		}
+		endChanges();
+		if (shouldFireEvents) {
+			fireSelectionEvents(deselectedItems);
+		}
+	}
+
+	/**
+	 * @param indices indices
+	 * @param size size of the list the indices refer to
+	 * @return the indices between 0 and size-1, sorted and without duplicates
+	 */
+	private static int[] sortIndices(final int[] indices, final int size) {
+		final int[] sorted = indices.clone();
+		Arrays.sort(sorted);
+		int count = 0;
+		for (final int index : sorted) {
+			if (index >= 0 && index < size && (count == 0 || sorted[count - 1] != index)) {
+				sorted[count++] = index;
+			}
+		}
+		return Arrays.copyOf(sorted, count);
+	}
+
+	/**
+	 * @param start first index
+	 * @param end last index (inclusive)
+	 * @return all indices between start and end
+	 */
+	private static int[] range(final int start, final int end) {
+		final int[] indices = new int[end - start + 1];
+		for (int i = 0; i < indices.length; i++) {
+			indices[i] = start + i;
+		}
+		return indices;
+	}
+
+	/**
+	 * Redraw a given table
+	 *
+	 * @param table table to be redrawned
+	 * @param isSelected if <code>true</code>, fill the table with the
+	 *            selection. Otherwise, fill the table with the unselected
+	 *            items.
+	 */
+	private void redrawTable(final Table table, final boolean isSelected) {
+		final List<DLItem> listOfData = getDisplayedItems(isSelected);
+		if (virtual) {
+			// Rows are filled on demand by the SetData listener
+			table.setItemCount(pager != null && !isSelected ? pager.getRowCount() : listOfData.size());
+			table.clearAll();
+			return;
+		}
+		if (table == selectionTable) {
+			selectionTextWidth = 0;
+		} else {
+			itemsTextWidth = 0;
+		}
+		clean(table);
+		fillData(table, listOfData);
+	}
+
+	/**
+	 * Cleans the content of a table
+	 *
+	 * @param table table to be emptied
+	 */
+	private void clean(final Table table) {
+		if (table == null) {
+			return;
+		}
+
+		for (final TableItem item : table.getItems()) {
+			item.dispose();
+		}
+	}
+
+	/**
+	 * Fill a table with data
+	 *
+	 * @param table table to be filled
+	 * @param listOfData list of data
+	 */
+	private void fillData(final Table table, final List<DLItem> listOfData) {
+		final boolean itemsContainImage = itemsContainImage();
+		for (final DLItem item : listOfData) {
+			fillTableItem(new TableItem(table, SWT.NONE), item, itemsContainImage);
+		}
+	}
+
+	/**
+	 * Fill a table item with the content of an item
+	 *
+	 * @param tableItem table item to fill
+	 * @param item item displayed by the table item
+	 * @param itemsContainImage if <code>true</code>, the text is displayed in
+	 *            the second column
+	 */
+	private void fillTableItem(final TableItem tableItem, final DLItem item, final boolean itemsContainImage) {
+		tableItem.setData(item);
+		tableItem.setBackground(item.getBackground());
+		tableItem.setForeground(item.getForeground());
+		tableItem.setImage(0, item.getImage());
+		tableItem.setFont(item.getFont());
+		final int textColumn = itemsContainImage ? 1 : 0;
+		tableItem.setText(textColumn, item.getText());
+		if (!virtual) {
+			measureText(tableItem.getParent(), item);
+		}
+	}
+
+
+
+	/**
+	 * Move the selected item to the first position
+	 */
+	protected void moveSelectionToFirstPosition() {
+		if (selectionTable.getSelectionCount() == 0) {
+			return;
+		}
+
+		final int[] indices = sortIndices(selectionTable.getSelectionIndices(), selectionTable.getItemCount());
+		startChanges();
+		for (int i = 0; i < indices.length; i++) {
+			moveSelectedRow(indices[i], i);
+		}
+		endChanges();
+
+		selectionTable.deselectAll();
+		selectionTable.select(0, indices.length - 1);
+		selectionTable.forceFocus();
+	}
+
+	/**
+	 * Select a given item
+	 */
+	protected void selectItem() {
+		if (itemsTable.getSelectionCount() == 0) {
+			return;
+		}
+		selectIndices(getSelectedIndices(false), true);
+	}
+
+	/**
+	 * Move the selected item up
+	 */
+	protected void moveUpItem() {
+		if (selectionTable.getSelectionCount() == 0) {
+			return;
+		}
+
+		final int[] newSelection = sortIndices(selectionTable.getSelectionIndices(), selectionTable.getItemCount());
+		if (newSelection[0] == 0) {
+			selectionTable.forceFocus();
+			return;
+		}
+
+		startChanges();
+		for (int i = 0; i < newSelection.length; i++) {
+			moveSelectedRow(newSelection[i], newSelection[i] - 1);
+			newSelection[i]--;
+		}
+		endChanges();
+
+		selectionTable.deselectAll();
+		selectionTable.select(newSelection);
+		selectionTable.forceFocus();
+	}
+
+	/**
+	 * Deselect a given item
 	 */
 	protected void deselectItem() {
 		if (selectionTable.getSelectionCount() == 0) {
 			return;
 		}
-		final List<DLItem> deselectedItems = new ArrayList<DLItem>();
-		for (final TableItem tableItem : selectionTable.getSelection()) {
-			final DLItem item = (DLItem) tableItem.getData();
-			item.setLastAction(LAST_ACTION.DESELECTION);
-			deselectedItems.add(item);
-			items.add(item);
-			selection.remove(item);
-			fireSelectionEvent(item);
+		deselectIndices(getSelectedIndices(true), true);
+	}
+
+	/**
+	 * Move the selected item down
+	 */
+	protected void moveDownItem() {
+		if (selectionTable.getSelectionCount() == 0) {
+			return;
+		}
+
+		final int[] newSelection = sortIndices(selectionTable.getSelectionIndices(), selectionTable.getItemCount());
+		if (newSelection[newSelection.length - 1] == selectionTable.getItemCount() - 1) {
+			selectionTable.forceFocus();
+			return;
+		}
+
+		startChanges();
+		for (int i = newSelection.length - 1; i >= 0; i--) {
+			moveSelectedRow(newSelection[i], newSelection[i] + 1);
+			newSelection[i]++;
+		}
+		endChanges();
+
+		selectionTable.deselectAll();
+		selectionTable.select(newSelection);
+		selectionTable.forceFocus();
+	}
+
+	/**
+	 * Move the selected item to the last position
+	 */
+	protected void moveSelectionToLastPosition() {
+		if (selectionTable.getSelectionCount() == 0) {
+			return;
+		}
+
+		final int[] indices = sortIndices(selectionTable.getSelectionIndices(), selectionTable.getItemCount());
+		final int numberOfElements = selectionTable.getItemCount();
+		startChanges();
+		for (int i = indices.length - 1; i >= 0; i--) {
+			moveSelectedRow(indices[i], numberOfElements - indices.length + i);
+		}
+		endChanges();
+
+		selectionTable.deselectAll();
+		selectionTable.select(numberOfElements - indices.length, numberOfElements - 1);
+		selectionTable.forceFocus();
+	}
+
+	/**
+	 * Sets the source of the items of the receiver. The number of items and
+	 * the pages of items are loaded in background, and only the pages that are
+	 * displayed are kept in memory: a placeholder is displayed until the page
+	 * of an item is loaded. The selected items are tracked by their key (see
+	 * <code>DLDataSource.getKey()</code>).
+	 * <p>
+	 * The current items and selection are removed. While a data source is set,
+	 * the items cannot be added, removed, replaced, filtered or listed: these
+	 * methods fail with ERROR_INVALID_ARGUMENT. <code>setItems()</code> and
+	 * <code>removeAll()</code> remove the data source. When rows that have not
+	 * been loaded yet are selected, they are moved to the selection once their
+	 * pages have been loaded in background.
+	 * </p>
+	 *
+	 * @param dataSource the new data source, or null to remove the current one
+	 *
+	 * @exception IllegalArgumentException
+	 *                <ul>
+	 *                <li>ERROR_INVALID_ARGUMENT - if the receiver has not been
+	 *                created with the VIRTUAL style</li>
+	 *                </ul>
+	 * @exception SWTException
+	 *                <ul>
+	 *                <li>ERROR_WIDGET_DISPOSED - if the receiver has been
+	 *                disposed</li>
+	 *                <li>ERROR_THREAD_INVALID_ACCESS - if not called from the
+	 *                thread that created the receiver</li>
+	 *                </ul>
+	 *
+	 * @see DLDataSource
+	 */
+	public void setDataSource(final DLDataSource dataSource) {
+		checkWidget();
+		if (!virtual) {
+			SWT.error(SWT.ERROR_INVALID_ARGUMENT);
+		}
+		closeDataSource();
+		startChanges();
+		for (final DLItem item : items) {
+			removeFromIndex(item);
+		}
+		for (final DLItem item : selection) {
+			removeFromIndex(item);
+		}
+		items.clear();
+		selection.clear();
+		itemsFilter = "";
+		itemsView = null;
+		if (itemsFilterText != null) {
+			itemsFilterText.setText("");
+		}
+		if (dataSource != null) {
+			pager = new DualListPager(dataSource, getDisplay(), pageSize, maximumCachedPages, new DualListPager.PagerListener() {
+				@Override
+				public void countLoaded() {
+					if (isDisposed()) {
+						return;
+					}
+					startChanges();
+					redrawTable(itemsTable, false);
+					columnsNeedUpdate = true;
+					endChanges();
+				}
+
+				@Override
+				public void pageLoaded(final int start, final int end) {
+					if (isDisposed()) {
+						return;
+					}
+					final int lastRow = Math.min(pager.toRow(end) - 1, itemsTable.getItemCount() - 1);
+					final int firstRow = pager.toRow(start);
+					if (firstRow <= lastRow) {
+						itemsTable.clear(firstRow, lastRow);
+					}
+				}
+
+				@Override
+				public void pageFailed(final int start, final int end) {
+					// The rows are requested again after a delay, so that a
+					// failing source is not called in a loop
+					final DualListPager failedPager = pager;
+					getDisplay().timerExec(PAGE_RETRY_DELAY, new Runnable() {
+						@Override
+						public void run() {
+							if (!isDisposed() && pager == failedPager) {
+								pageLoaded(start, end);
+							}
+						}
+					});
+				}
+			});
+			if (itemsFilterText != null) {
+				itemsFilterText.setEnabled(false);
+			}
+		}
+		fullRefreshNeeded = true;
+		endChanges();
+	}
+
+	/**
+	 * Returns the source of the items of the receiver.
+	 *
+	 * @return the data source, or null if the items are not provided by a data
+	 *         source
+	 *
+	 * @exception SWTException
+	 *                <ul>
+	 *                <li>ERROR_WIDGET_DISPOSED - if the receiver has been
+	 *                disposed</li>
+	 *                <li>ERROR_THREAD_INVALID_ACCESS - if not called from the
+	 *                thread that created the receiver</li>
+	 *                </ul>
+	 */
+	public DLDataSource getDataSource() {
+		checkWidget();
+		return pager == null ? null : pager.getDataSource();
+	}
+
+	/**
+	 * Sets the number of items loaded at once from the data source. The
+	 * default value is 100.
+	 *
+	 * @param pageSize the number of items of a page
+	 *
+	 * @exception IllegalArgumentException
+	 *                <ul>
+	 *                <li>ERROR_INVALID_ARGUMENT - if the page size is not
+	 *                positive</li>
+	 *                </ul>
+	 * @exception SWTException
+	 *                <ul>
+	 *                <li>ERROR_WIDGET_DISPOSED - if the receiver has been
+	 *                disposed</li>
+	 *                <li>ERROR_THREAD_INVALID_ACCESS - if not called from the
+	 *                thread that created the receiver</li>
+	 *                </ul>
+	 */
+	public void setPageSize(final int pageSize) {
+		checkWidget();
+		if (pageSize <= 0) {
+			SWT.error(SWT.ERROR_INVALID_ARGUMENT);
+		}
+		this.pageSize = pageSize;
+		if (pager != null) {
+			pager.setPageSize(pageSize);
+			itemsTable.clearAll();
+		}
+	}
+
+	/**
+	 * Returns the number of items loaded at once from the data source.
+	 *
+	 * @return the number of items of a page
+	 *
+	 * @exception SWTException
+	 *                <ul>
+	 *                <li>ERROR_WIDGET_DISPOSED - if the receiver has been
+	 *                disposed</li>
+	 *                <li>ERROR_THREAD_INVALID_ACCESS - if not called from the
+	 *                thread that created the receiver</li>
+	 *                </ul>
+	 */
+	public int getPageSize() {
+		checkWidget();
+		return pageSize;
+	}
+
+	/**
+	 * Sets the maximum number of pages of the data source kept in memory. When
+	 * this number is reached, the least recently used page is evicted. The
+	 * default value is 20.
+	 *
+	 * @param maximumCachedPages the maximum number of pages kept in memory
+	 *
+	 * @exception IllegalArgumentException
+	 *                <ul>
+	 *                <li>ERROR_INVALID_ARGUMENT - if the value is not
+	 *                positive</li>
+	 *                </ul>
+	 * @exception SWTException
+	 *                <ul>
+	 *                <li>ERROR_WIDGET_DISPOSED - if the receiver has been
+	 *                disposed</li>
+	 *                <li>ERROR_THREAD_INVALID_ACCESS - if not called from the
+	 *                thread that created the receiver</li>
+	 *                </ul>
+	 */
+	public void setMaximumCachedPages(final int maximumCachedPages) {
+		checkWidget();
+		if (maximumCachedPages <= 0) {
+			SWT.error(SWT.ERROR_INVALID_ARGUMENT);
+		}
+		this.maximumCachedPages = maximumCachedPages;
+		if (pager != null) {
+			pager.setMaximumCachedPages(maximumCachedPages);
+		}
+	}
+
+	/**
+	 * Returns the maximum number of pages of the data source kept in memory.
+	 *
+	 * @return the maximum number of pages kept in memory
+	 *
+	 * @exception SWTException
+	 *                <ul>
+	 *                <li>ERROR_WIDGET_DISPOSED - if the receiver has been
+	 *                disposed</li>
+	 *                <li>ERROR_THREAD_INVALID_ACCESS - if not called from the
+	 *                thread that created the receiver</li>
+	 *                </ul>
+	 */
+	public int getMaximumCachedPages() {
+		checkWidget();
+		return maximumCachedPages;
+	}
+
+	/**
+	 * Stops using the current data source, if any
+	 */
+	private void closeDataSource() {
+		if (pager == null) {
+			return;
+		}
+		pager.dispose();
+		pager = null;
+		if (itemsFilterText != null) {
+			itemsFilterText.setEnabled(true);
+		}
+	}
+
+	/**
+	 * @exception IllegalArgumentException ERROR_INVALID_ARGUMENT if the items
+	 *                are provided by a data source
+	 */
+	private void checkNoDataSource() {
+		if (pager != null) {
+			SWT.error(SWT.ERROR_INVALID_ARGUMENT);
+		}
+	}
+
+	/**
+	 * Fill a row of the table of items with an item of the data source, or
+	 * with a placeholder if its page has not been loaded yet
+	 *
+	 * @param tableItem table item to fill
+	 * @param row index of the row
+	 */
+	private void fillPagedTableItem(final TableItem tableItem, final int row) {
+		final DLItem item = pager.getItem(pager.toSourceIndex(row));
+		if (item != null) {
+			fillTableItem(tableItem, item, imageColumnDisplayed);
+			return;
+		}
+		tableItem.setData(null);
+		tableItem.setImage(0, null);
+		tableItem.setText(imageColumnDisplayed ? 1 : 0, ResourceManager.getLabel(ResourceManager.DUAL_LIST_LOADING));
+	}
+
+	/**
+	 * Moves rows of the table of items to the end of the selection when the
+	 * items are provided by a data source. If some rows have not been loaded
+	 * yet, their pages are loaded in background and the rows are selected
+	 * when the pages arrive.
+	 *
+	 * @param rows rows of the table of items
+	 * @param shouldFireEvents if <code>true</code>, the selection listeners
+	 *            are notified
+	 */
+	private void selectPagedRows(final int[] rows, final boolean shouldFireEvents) {
+		final int[] sortedRows = sortIndices(rows, pager.getRowCount());
+		final int[] sourceIndices = new int[sortedRows.length];
+		for (int i = 0; i < sortedRows.length; i++) {
+			sourceIndices[i] = pager.toSourceIndex(sortedRows[i]);
+		}
+		final DualListPager currentPager = pager;
+		pager.loadItems(sourceIndices, new DualListPager.ItemsListener() {
+			@Override
+			public void itemsLoaded(final List<DLItem> loadedItems, final int[] loadedIndices) {
+				if (!isDisposed() && pager == currentPager) {
+					selectPagedItems(loadedItems, loadedIndices, shouldFireEvents);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Moves items of the data source to the end of the selection. The items
+	 * that have been selected in the meantime are ignored.
+	 *
+	 * @param loadedItems items to select
+	 * @param loadedIndices index in the source of each item
+	 * @param shouldFireEvents if <code>true</code>, the selection listeners
+	 *            are notified
+	 */
+	private void selectPagedItems(final List<DLItem> loadedItems, final int[] loadedIndices, final boolean shouldFireEvents) {
+		final List<DLItem> selectedItems = new ArrayList<DLItem>(loadedItems.size());
+		final int[] sourceIndices = new int[loadedIndices.length];
+		for (int i = 0; i < loadedIndices.length; i++) {
+			final DLItem item = loadedItems.get(i);
+			if (pager.isSelected(item)) {
+				continue;
+			}
+			item.setLastAction(LAST_ACTION.SELECTION);
+			sourceIndices[selectedItems.size()] = loadedIndices[i];
+			selectedItems.add(item);
+		}
+		if (selectedItems.isEmpty()) {
+			return;
+		}
+
+		startChanges();
+		pager.select(selectedItems, Arrays.copyOf(sourceIndices, selectedItems.size()));
+		appendItems(true, selectedItems);
+		redrawTable(itemsTable, false);
+		columnsNeedUpdate = true;
+		endChanges();
+		if (shouldFireEvents) {
+			fireSelectionEvents(selectedItems);
+		}
+	}
+
+	/**
+	 * Sorts the list of items. The selected items are not sorted, they keep
+	 * the order chosen by the user. Once the items are sorted, the new items
+	 * are inserted at their position (the index given to
+	 * <code>add(DLItem, int)</code> is ignored) and the list stays ordered.
+	 * <p>
+	 * The texts are compared with the collator of the receiver, using
+	 * collation keys computed once per item. Sorting is not available when the
+	 * items are provided by a data source.
+	 * </p>
+	 *
+	 * @param direction SWT.UP for an ascending order, SWT.DOWN for a
+	 *            descending order, SWT.NONE to stop sorting the items (they
+	 *            keep their current order)
+	 *
+	 * @exception IllegalArgumentException
+	 *                <ul>
+	 *                <li>ERROR_INVALID_ARGUMENT - if the direction is not
+	 *                SWT.UP, SWT.DOWN or SWT.NONE</li>
+	 *                </ul>
+	 * @exception SWTException
+	 *                <ul>
+	 *                <li>ERROR_WIDGET_DISPOSED - if the receiver has been
+	 *                disposed</li>
+	 *                <li>ERROR_THREAD_INVALID_ACCESS - if not called from the
+	 *                thread that created the receiver</li>
+	 *                </ul>
+	 *
+	 * @see #setCollator(Collator)
+	 */
+	public void setSortDirection(final int direction) {
+		checkWidget();
+		if (direction != SWT.UP && direction != SWT.DOWN && direction != SWT.NONE) {
+			SWT.error(SWT.ERROR_INVALID_ARGUMENT);
+		}
+		if (direction == sortDirection) {
+			return;
+		}
+		sortDirection = direction;
+		if (direction != SWT.NONE) {
+			startChanges();
+			sortItems();
+			fullRefreshNeeded = true;
+			endChanges();
+		}
+	}
+
+	/**
+	 * Returns the direction used to sort the list of items.
+	 *
+	 * @return SWT.UP, SWT.DOWN or SWT.NONE if the items are not sorted
+	 *
+	 * @exception SWTException
+	 *                <ul>
+	 *                <li>ERROR_WIDGET_DISPOSED - if the receiver has been
+	 *                disposed</li>
+	 *                <li>ERROR_THREAD_INVALID_ACCESS - if not called from the
+	 *                thread that created the receiver</li>
+	 *                </ul>
+	 */
+	public int getSortDirection() {
+		checkWidget();
+		return sortDirection;
+	}
+
+	/**
+	 * Sets the collator used to sort the items. By default, the collator of
+	 * the default locale is used.
+	 *
+	 * @param collator the new collator
+	 *
+	 * @exception IllegalArgumentException
+	 *                <ul>
+	 *                <li>ERROR_NULL_ARGUMENT - if the collator is null</li>
+	 *                </ul>
+	 * @exception SWTException
+	 *                <ul>
+	 *                <li>ERROR_WIDGET_DISPOSED - if the receiver has been
+	 *                disposed</li>
+	 *                <li>ERROR_THREAD_INVALID_ACCESS - if not called from the
+	 *                thread that created the receiver</li>
+	 *                </ul>
+	 */
+	public void setCollator(final Collator collator) {
+		checkWidget();
+		if (collator == null) {
+			SWT.error(SWT.ERROR_NULL_ARGUMENT);
+		}
+		this.collator = collator;
+		if (sortDirection != SWT.NONE) {
+			startChanges();
+			sortItems();
+			fullRefreshNeeded = true;
+			endChanges();
+		}
+	}
+
+	/**
+	 * Returns the collator used to sort the items.
+	 *
+	 * @return the collator
+	 *
+	 * @exception SWTException
+	 *                <ul>
+	 *                <li>ERROR_WIDGET_DISPOSED - if the receiver has been
+	 *                disposed</li>
+	 *                <li>ERROR_THREAD_INVALID_ACCESS - if not called from the
+	 *                thread that created the receiver</li>
+	 *                </ul>
+	 */
+	public Collator getCollator() {
+		checkWidget();
+		if (collator == null) {
+			collator = Collator.getInstance();
+		}
+		return collator;
+	}
+
+	/**
+	 * Sorts the list of items with the collation keys of the items
+	 */
+	private void sortItems() {
+		final Collator currentCollator = getCollator();
+		@SuppressWarnings("unchecked")
+		final SortUtil.Keyed<DLItem>[] keyedItems = SortUtil.newKeyedArray(items.size());
+		int i = 0;
+		for (final DLItem item : items) {
+			keyedItems[i++] = new SortUtil.Keyed<DLItem>(item, item.getCollationKey(currentCollator));
+		}
+		SortUtil.stableSort(keyedItems, SortUtil.<DLItem> createComparator(sortDirection));
+
+		final List<DLItem> sortedItems = new ArrayList<DLItem>(keyedItems.length);
+		for (final SortUtil.Keyed<DLItem> keyedItem : keyedItems) {
+			sortedItems.add(keyedItem.getElement());
+		}
+		items.clear();
+		items.addAll(sortedItems);
+	}
+
+	/**
+	 * @param item an item to add to the list of items
+	 * @param defaultIndex index used if the items are not sorted
+	 * @return the index where the item should be inserted
+	 */
+	private int getInsertionIndex(final DLItem item, final int defaultIndex) {
+		if (sortDirection == SWT.NONE) {
+			return defaultIndex;
+		}
+		final Collator currentCollator = getCollator();
+		final int sign = sortDirection == SWT.DOWN ? -1 : 1;
+		return SortUtil.insertionPoint(items, item, new Comparator<DLItem>() {
+			@Override
+			public int compare(final DLItem first, final DLItem second) {
+				return sign * first.getCollationKey(currentCollator).compareTo(second.getCollationKey(currentCollator));
+			}
+		});
+	}
+
+	/**
+	 * Puts deselected items back in the list of items: at the end of the list,
+	 * or at their position if the list is sorted. When many items are
+	 * deselected, the whole list is sorted again.
+	 *
+	 * @param deselectedItems items to add to the list of items
+	 */
+	private void addDeselectedItems(final List<DLItem> deselectedItems) {
+		if (sortDirection == SWT.NONE) {
+			appendItems(false, deselectedItems);
+			return;
+		}
+		if (deselectedItems.size() > SORTED_INSERTION_THRESHOLD) {
+			appendItems(false, deselectedItems);
+			sortItems();
+			fullRefreshNeeded = true;
+			return;
+		}
+		for (final DLItem item : deselectedItems) {
+			insertItem(false, getInsertionIndex(item, items.size()), item);
 		}
-		fireSelectionChangeEvent(deselectedItems);
-		redrawTables();
 	}
 
 	/**
-	 * Move the selected item down
+	 * Starts an update of the receiver. Until the matching call to
+	 * <code>endUpdate()</code>, the tables are neither refreshed nor laid out,
+	 * and the selection listeners are not notified. When the update ends, the
+	 * tables are rebuilt once and the selection change listeners receive a
+	 * single event containing all the items whose selection state changed
+	 * during the update.
+	 * <p>
+	 * Calls to <code>beginUpdate()</code> can be nested, the update ends with
+	 * the last call to <code>endUpdate()</code>.
+	 * </p>
+	 *
+	 * @exception SWTException
+	 *                <ul>
+	 *                <li>ERROR_WIDGET_DISPOSED - if the receiver has been
+	 *                disposed</li>
+	 *                <li>ERROR_THREAD_INVALID_ACCESS - if not called from the
+	 *                thread that created the receiver</li>
+	 *                </ul>
+	 *
+	 * @see #endUpdate()
+	 * @see #batch(Runnable)
 	 */
-	protected void moveDownItem() {
-		if (selectionTable.getSelectionCount() == 0) {
+	public void beginUpdate() {
+		checkWidget();
+		if (updateDepth++ == 0) {
+			startChanges();
+		}
+	}
+
+	/**
+	 * Ends an update of the receiver started by <code>beginUpdate()</code>.
+	 *
+	 * @exception SWTException
+	 *                <ul>
+	 *                <li>ERROR_WIDGET_DISPOSED - if the receiver has been
+	 *                disposed</li>
+	 *                <li>ERROR_THREAD_INVALID_ACCESS - if not called from the
+	 *                thread that created the receiver</li>
+	 *                </ul>
+	 *
+	 * @see #beginUpdate()
+	 */
+	public void endUpdate() {
+		checkWidget();
+		if (updateDepth == 0 || --updateDepth > 0) {
 			return;
 		}
+		endChanges();
 
-		for (final int index : selectionTable.getSelectionIndices()) {
-			if (index == selectionTable.getItemCount() - 1) {
-				selectionTable.forceFocus();
-				return;
+		final List<DLItem> changedItems = new ArrayList<DLItem>();
+		for (final DLItem item : pendingChangedItems) {
+			final boolean selected = selection.contains(item);
+			if (selected != pendingInitialStates.get(item).booleanValue() && (selected || items.contains(item) || pager != null)) {
+				item.setLastAction(selected ? LAST_ACTION.SELECTION : LAST_ACTION.DESELECTION);
+				changedItems.add(item);
 			}
 		}
+		pendingChangedItems.clear();
+		pendingInitialStates.clear();
+		if (!changedItems.isEmpty()) {
+			fireSelectionChangeEvent(changedItems);
+		}
+	}
+
+	/**
+	 * Runs a set of changes as a single update of the receiver.
+	 *
+	 * @param runnable code that changes the receiver
+	 *
+	 * @exception IllegalArgumentException
+	 *                <ul>
+	 *                <li>ERROR_NULL_ARGUMENT - if the runnable is null</li>
+	 *                </ul>
+	 * @exception SWTException
+	 *                <ul>
+	 *                <li>ERROR_WIDGET_DISPOSED - if the receiver has been
+	 *                disposed</li>
+	 *                <li>ERROR_THREAD_INVALID_ACCESS - if not called from the
+	 *                thread that created the receiver</li>
+	 *                </ul>
+	 *
+	 * @see #beginUpdate()
+	 */
+	public void batch(final Runnable runnable) {
+		checkWidget();
+		if (runnable == null) {
+			SWT.error(SWT.ERROR_NULL_ARGUMENT);
+		}
+		beginUpdate();
+		try {
+			runnable.run();
+		} finally {
+			endUpdate();
+		}
+	}
 
-		final int[] newSelection = new int[selectionTable.getSelectionCount()];
-		int newSelectionIndex = 0;
-		for (final TableItem tableItem : selectionTable.getSelection()) {
-			final int position = selection.indexOf(tableItem.getData());
-			swap(position, position + 1);
-			newSelection[newSelectionIndex++] = position + 1;
+	/**
+	 * Returns a queue that accepts changes of the receiver from any thread.
+	 * The changes are applied on the UI thread, all the changes posted
+	 * between two UI events being applied in a single batch.
+	 *
+	 * @return the update queue of the receiver
+	 *
+	 * @exception SWTException
+	 *                <ul>
+	 *                <li>ERROR_WIDGET_DISPOSED - if the receiver has been
+	 *                disposed</li>
+	 *                <li>ERROR_THREAD_INVALID_ACCESS - if not called from the
+	 *                thread that created the receiver</li>
+	 *                </ul>
+	 *
+	 * @see #batch(Runnable)
+	 */
+	public ModelUpdateQueue<DualList> getUpdateQueue() {
+		checkWidget();
+		if (updateQueue == null) {
+			updateQueue = new ModelUpdateQueue<DualList>(this) {
+				@Override
+				protected void applyBatch(final DualList widget, final Runnable changes) {
+					widget.batch(changes);
+				}
+			};
 		}
+		return updateQueue;
+	}
 
-		redrawTables();
-		selectionTable.select(newSelection);
-		selectionTable.forceFocus();
+	/**
+	 * Filters the list of items: only the items whose text contains the given
+	 * string (case is ignored) are displayed. The methods
+	 * <code>selectAll()</code> and <code>deselectAll()</code> only apply to
+	 * the displayed items.
+	 *
+	 * @param filter the filter. An empty string displays all items
+	 *
+	 * @exception IllegalArgumentException
+	 *                <ul>
+	 *                <li>ERROR_NULL_ARGUMENT - if the filter is null</li>
+	 *                </ul>
+	 * @exception SWTException
+	 *                <ul>
+	 *                <li>ERROR_WIDGET_DISPOSED - if the receiver has been
+	 *                disposed</li>
+	 *                <li>ERROR_THREAD_INVALID_ACCESS - if not called from the
+	 *                thread that created the receiver</li>
+	 *                </ul>
+	 */
+	public void setItemsFilter(final String filter) {
+		checkWidget();
+		checkNoDataSource();
+		if (filter == null) {
+			SWT.error(SWT.ERROR_NULL_ARGUMENT);
+		}
+		if (filter.equals(itemsFilter)) {
+			return;
+		}
+		itemsView = filter(items, itemsView, itemsFilter, filter);
+		itemsFilter = filter;
+		if (itemsFilterText != null && !filter.equals(itemsFilterText.getText())) {
+			itemsFilterText.setText(filter);
+		}
+		startChanges();
+		redrawTable(itemsTable, false);
+		columnsNeedUpdate = true;
+		endChanges();
 	}
 
 	/**
-	 * Swap 2 items
+	 * Returns the filter of the list of items.
+	 *
+	 * @return the filter (an empty string if the items are not filtered)
 	 *
-	 * @param first position of the first item to swap
-	 * @param second position of the second item to swap
+	 * @exception SWTException
+	 *                <ul>
+	 *                <li>ERROR_WIDGET_DISPOSED - if the receiver has been
+	 *                disposed</li>
+	 *                <li>ERROR_THREAD_INVALID_ACCESS - if not called from the
+	 *                thread that created the receiver</li>
+	 *                </ul>
 	 */
-	private void swap(final int first, final int second) {
-		final DLItem temp = selection.get(first);
-		selection.set(first, selection.get(second));
-		selection.set(second, temp);
+	public String getItemsFilter() {
+		checkWidget();
+		return itemsFilter;
 	}
 
 	/**
-	 * Move the selected item to the last position
+	 * Filters the selection: only the selected items whose text contains the
+	 * given string (case is ignored) are displayed. Moving items up or down
+	 * only reorders the displayed items.
+	 *
+	 * @param filter the filter. An empty string displays all selected items
+	 *
+	 * @exception IllegalArgumentException
+	 *                <ul>
+	 *                <li>ERROR_NULL_ARGUMENT - if the filter is null</li>
+	 *                </ul>
+	 * @exception SWTException
+	 *                <ul>
+	 *                <li>ERROR_WIDGET_DISPOSED - if the receiver has been
+	 *                disposed</li>
+	 *                <li>ERROR_THREAD_INVALID_ACCESS - if not called from the
+	 *                thread that created the receiver</li>
+	 *                </ul>
 	 */
-	protected void moveSelectionToLastPosition() {
-		if (selectionTable.getSelectionCount() == 0) {
+	public void setSelectionFilter(final String filter) {
+		checkWidget();
+		if (filter == null) {
+			SWT.error(SWT.ERROR_NULL_ARGUMENT);
+		}
+		if (filter.equals(selectionFilter)) {
 			return;
 		}
+		selectionView = filter(selection, selectionView, selectionFilter, filter);
+		selectionFilter = filter;
+		if (selectionFilterText != null && !filter.equals(selectionFilterText.getText())) {
+			selectionFilterText.setText(filter);
+		}
+		startChanges();
+		redrawTable(selectionTable, true);
+		columnsNeedUpdate = true;
+		endChanges();
+	}
+
+	/**
+	 * Returns the filter of the selection.
+	 *
+	 * @return the filter (an empty string if the selection is not filtered)
+	 *
+	 * @exception SWTException
+	 *                <ul>
+	 *                <li>ERROR_WIDGET_DISPOSED - if the receiver has been
+	 *                disposed</li>
+	 *                <li>ERROR_THREAD_INVALID_ACCESS - if not called from the
+	 *                thread that created the receiver</li>
+	 *                </ul>
+	 */
+	public String getSelectionFilter() {
+		checkWidget();
+		return selectionFilter;
+	}
 
-		final int numberOfSelectedElements = selectionTable.getSelectionCount();
-		for (final TableItem tableItem : selectionTable.getSelection()) {
-			final DLItem item = (DLItem) tableItem.getData();
-			selection.remove(item);
-			selection.add(item);
+	/**
+	 * Computes the filtered view of a list
+	 *
+	 * @param listOfData list to filter
+	 * @param previousView the current view of the list (null if the list is not
+	 *            filtered)
+	 * @param previousFilter the filter of the current view
+	 * @param filter the new filter
+	 * @return the items of the list that match the filter, in the order of the
+	 *         list, or null if the filter is empty
+	 */
+	private List<DLItem> filter(final List<DLItem> listOfData, final List<DLItem> previousView, final String previousFilter, final String filter) {
+		if (filter.length() == 0) {
+			return null;
+		}
+		if (textIndex == null) {
+			textIndex = new TextIndex<DLItem>();
+			for (final DLItem item : items) {
+				addToIndex(item);
+			}
+			for (final DLItem item : selection) {
+				addToIndex(item);
+			}
 		}
 
-		redrawTables();
-		final int numberOfElements = selectionTable.getItemCount();
-		selectionTable.select(numberOfElements - numberOfSelectedElements, numberOfElements - 1);
-		selectionTable.forceFocus();
+		if (previousView != null && filter.toLowerCase().contains(previousFilter.toLowerCase())) {
+			// The new filter narrows the current view
+			final List<DLItem> view = new ArrayList<DLItem>();
+			for (final DLItem item : previousView) {
+				if (textIndex.matches(item, filter)) {
+					view.add(item);
+				}
+			}
+			return new IndexedList<DLItem>(view);
+		}
+
+		final Set<DLItem> matches = textIndex.search(filter);
+		final int[] positions = new int[matches.size()];
+		int count = 0;
+		for (final DLItem item : matches) {
+			final int position = listOfData.indexOf(item);
+			if (position != -1) {
+				positions[count++] = position;
+			}
+		}
+		Arrays.sort(positions, 0, count);
+		final List<DLItem> view = new ArrayList<DLItem>(count);
+		for (int i = 0; i < count; i++) {
+			view.add(listOfData.get(positions[i]));
+		}
+		return new IndexedList<DLItem>(view);
+	}
+
+	/**
+	 * Recomputes the views of the filtered tables
+	 */
+	private void updateViews() {
+		itemsView = filter(items, null, itemsFilter, itemsFilter);
+		selectionView = filter(selection, null, selectionFilter, selectionFilter);
+	}
+
+	/**
+	 * @param isSelected if <code>true</code>, returns the view of the selection
+	 * @return the filtered view of the items or of the selection, or null if it
+	 *         is not filtered
+	 */
+	private List<DLItem> getView(final boolean isSelected) {
+		return isSelected ? selectionView : itemsView;
+	}
+
+	/**
+	 * @param isSelected if <code>true</code>, returns the displayed selection
+	 * @return the items displayed in the table of items or in the selection
+	 *         table
+	 */
+	private List<DLItem> getDisplayedItems(final boolean isSelected) {
+		final List<DLItem> view = getView(isSelected);
+		if (view != null) {
+			return view;
+		}
+		return isSelected ? selection : items;
+	}
+
+	/**
+	 * @param isSelected if <code>true</code>, use the selection table
+	 * @return the indices in the list of items (or in the selection) of the
+	 *         selected rows of a table
+	 */
+	private int[] getSelectedIndices(final boolean isSelected) {
+		final int[] rows = (isSelected ? selectionTable : itemsTable).getSelectionIndices();
+		final List<DLItem> view = getView(isSelected);
+		if (view == null) {
+			return rows;
+		}
+		final List<DLItem> listOfData = isSelected ? selection : items;
+		final int[] indices = new int[rows.length];
+		for (int i = 0; i < rows.length; i++) {
+			indices[i] = listOfData.indexOf(view.get(rows[i]));
+		}
+		return indices;
+	}
+
+	/**
+	 * @param view a view of a list
+	 * @param listOfData the list
+	 * @return the indices in the list of the items of the view
+	 */
+	private static int[] getIndices(final List<DLItem> view, final List<DLItem> listOfData) {
+		final int[] indices = new int[view.size()];
+		int i = 0;
+		for (final DLItem item : view) {
+			indices[i++] = listOfData.indexOf(item);
+		}
+		return indices;
+	}
+
+	/**
+	 * Adds an item to the index used by the filters, if it has been created.
+	 * The receiver becomes the owner of the item, so that the index follows
+	 * the changes of its text.
+	 *
+	 * @param item item to add
+	 */
+	private void addToIndex(final DLItem item) {
+		item.setOwner(this);
+		if (textIndex != null) {
+			textIndex.add(item, item.getText());
+		}
+	}
+
+	/**
+	 * Removes an item from the index used by the filters
+	 *
+	 * @param item item to remove
+	 */
+	private void removeFromIndex(final DLItem item) {
+		if (item.getOwner() == this) {
+			item.setOwner(null);
+		}
+		if (textIndex != null) {
+			textIndex.remove(item);
+		}
+	}
+
+	/**
+	 * Called when the text of an item of the receiver changes: the item is
+	 * indexed again, so that the filters match its new text, and if the list
+	 * is sorted it is moved to its new position
+	 *
+	 * @param item item whose text has changed
+	 */
+	void textChanged(final DLItem item) {
+		if (textIndex != null && textIndex.contains(item)) {
+			textIndex.add(item, item.getText());
+		}
+		if (sortDirection == SWT.NONE) {
+			return;
+		}
+		final int index = items.indexOf(item);
+		if (index == -1) {
+			return;
+		}
+		startChanges();
+		removeItem(false, index);
+		insertItem(false, getInsertionIndex(item, items.size()), item);
+		endChanges();
+	}
+
+	/**
+	 * Notify the listeners that items have been selected or deselected. Called
+	 * once the lists and the tables have been updated, so that the listeners
+	 * see the new state of the receiver.
+	 *
+	 * @param changedItems selected or deselected items
+	 */
+	private void fireSelectionEvents(final List<DLItem> changedItems) {
+		for (final DLItem item : changedItems) {
+			fireSelectionEvent(item);
+		}
+		fireSelectionChangeEvent(changedItems);
 	}
 
 	/**
@@ -1758,7 +3207,7 @@ public class DualList extends Composite {
 	 * @param item selected item
 	 */
 	private void fireSelectionEvent(final DLItem item) {
-		if (selectionListeners == null) {
+		if (selectionListeners == null || updateDepth > 0) {
 			return;
 		}
 
@@ -1776,6 +3225,16 @@ public class DualList extends Composite {
 	}
 
 	private void fireSelectionChangeEvent(final List<DLItem> items) {
+		if (updateDepth > 0) {
+			// Only the state of the items before the update is kept
+			for (final DLItem item : items) {
+				if (!pendingInitialStates.containsKey(item)) {
+					pendingInitialStates.put(item, item.getLastAction() != LAST_ACTION.SELECTION);
+					pendingChangedItems.add(item);
+				}
+			}
+			return;
+		}
 		if (selectionChangeListeners == null) {
 			return;
 		}
@@ -0,0 +1,475 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Laurent CARON
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Laurent CARON (laurent.caron at gmail dot com) - initial API and implementation
+ *******************************************************************************/
+package org.mihalis.opal.itemSelector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.eclipse.swt.SWTException;
+import org.eclipse.swt.widgets.Display;
+
+/**
+ * Instances of this class load the items of a <code>DLDataSource</code> page by
+ * page on a background thread, keep the last used pages in a bounded cache and
+ * track the selected items by key. The data source is never called from the
+ * UI thread.<br/>
+ * The rows of the table of items are the entries of the source that are not
+ * selected: this class converts row indices to source indices and back.<br/>
+ * All methods must be called from the UI thread.
+ */
+class DualListPager {
+
+	/**
+	 * Callbacks called on the UI thread when data arrives
+	 */
+	interface PagerListener {
+		/**
+		 * Called when the number of items of the source is known
+		 */
+		void countLoaded();
+
+		/**
+		 * Called when a page has been loaded
+		 *
+		 * @param start source index of the first item of the page
+		 * @param end source index following the last item of the page
+		 */
+		void pageLoaded(int start, int end);
+
+		/**
+		 * Called when the data source failed to provide a page. The page is
+		 * not in the cache, it is requested again the next time one of its
+		 * items is needed.
+		 *
+		 * @param start source index of the first item of the page
+		 * @param end source index following the last item of the page
+		 */
+		void pageFailed(int start, int end);
+	}
+
+	/**
+	 * Callback called on the UI thread when items requested by
+	 * <code>loadItems()</code> are available
+	 */
+	interface ItemsListener {
+		/**
+		 * @param items the items that exist in the source
+		 * @param sourceIndices the index in the source of each item
+		 */
+		void itemsLoaded(List<DLItem> items, int[] sourceIndices);
+	}
+
+	private final DLDataSource dataSource;
+	private final Display display;
+	private final PagerListener listener;
+	private final ExecutorService executor;
+
+	private int pageSize;
+	private int maximumCachedPages;
+	private final LinkedHashMap<Integer, List<DLItem>> pages;
+	private final Set<Integer> pendingPages;
+	private int generation;
+	private int itemCount;
+	private boolean disposed;
+
+	private final Map<Object, Integer> selectedKeys;
+	private int[] selectedIndices;
+
+	/**
+	 * Constructor
+	 *
+	 * @param dataSource source of the items
+	 * @param display display used to report the loaded data
+	 * @param pageSize number of items of a page
+	 * @param maximumCachedPages maximum number of pages kept in memory
+	 * @param listener listener notified when data arrives
+	 */
+	DualListPager(final DLDataSource dataSource, final Display display, final int pageSize, final int maximumCachedPages, final PagerListener listener) {
+		this.dataSource = dataSource;
+		this.display = display;
+		this.listener = listener;
+		this.pageSize = pageSize;
+		this.maximumCachedPages = maximumCachedPages;
+		this.pages = new LinkedHashMap<Integer, List<DLItem>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<Integer, List<DLItem>> eldest) {
+				return size() > DualListPager.this.maximumCachedPages;
+			}
+		};
+		this.pendingPages = new HashSet<Integer>();
+		this.selectedKeys = new HashMap<Object, Integer>();
+		this.selectedIndices = new int[0];
+		this.itemCount = -1;
+		this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(final Runnable runnable) {
+				final Thread thread = new Thread(runnable, "Opal DualList loader");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		loadCount();
+	}
+
+	/**
+	 * @return the data source
+	 */
+	DLDataSource getDataSource() {
+		return this.dataSource;
+	}
+
+	/**
+	 * @return the number of rows of the table of items (the number of items of
+	 *         the source that are not selected, 0 until the number of items is
+	 *         known)
+	 */
+	int getRowCount() {
+		return this.itemCount < 0 ? 0 : Math.max(0, this.itemCount - this.selectedKeys.size());
+	}
+
+	/**
+	 * @param row a row of the table of items
+	 * @return the index in the source of the item displayed by this row
+	 */
+	int toSourceIndex(final int row) {
+		// selectedIndices[j] - j is the number of unselected items before the
+		// j-th selected item, and increases with j
+		int low = 0;
+		int high = this.selectedIndices.length;
+		while (low < high) {
+			final int middle = (low + high) >>> 1;
+			if (this.selectedIndices[middle] - middle <= row) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return row + low;
+	}
+
+	/**
+	 * @param sourceIndex index of an item in the source
+	 * @return the row of the table of items that displays this item (or that
+	 *         would display it if it were not selected)
+	 */
+	int toRow(final int sourceIndex) {
+		int position = Arrays.binarySearch(this.selectedIndices, sourceIndex);
+		if (position < 0) {
+			position = -position - 1;
+		}
+		return sourceIndex - position;
+	}
+
+	/**
+	 * Returns an item if its page is in the cache. Otherwise, the page is
+	 * loaded in background and null is returned.
+	 *
+	 * @param sourceIndex index of the item in the source
+	 * @return the item, or null if it has not been loaded yet
+	 */
+	DLItem getItem(final int sourceIndex) {
+		final int page = sourceIndex / this.pageSize;
+		final List<DLItem> items = this.pages.get(page);
+		if (items == null) {
+			loadPage(page);
+			return null;
+		}
+		final int offset = sourceIndex - page * this.pageSize;
+		return offset < items.size() ? items.get(offset) : null;
+	}
+
+	/**
+	 * Gets items of the source. The pages that are not in the cache are
+	 * fetched on the background thread, and the listener is called on the UI
+	 * thread once they have arrived. If all the pages are in the cache, the
+	 * listener is called immediately. If the source fails to provide a page,
+	 * the listener is not called.
+	 *
+	 * @param sourceIndices indices of the items in the source
+	 * @param itemsListener listener that receives the items
+	 */
+	void loadItems(final int[] sourceIndices, final ItemsListener itemsListener) {
+		final int currentPageSize = this.pageSize;
+		final Map<Integer, List<DLItem>> knownPages = new HashMap<Integer, List<DLItem>>();
+		final Set<Integer> missingPages = new TreeSet<Integer>();
+		for (final int sourceIndex : sourceIndices) {
+			final Integer page = sourceIndex / currentPageSize;
+			if (knownPages.containsKey(page) || missingPages.contains(page)) {
+				continue;
+			}
+			final List<DLItem> items = this.pages.get(page);
+			if (items == null) {
+				missingPages.add(page);
+			} else {
+				knownPages.put(page, items);
+			}
+		}
+		if (missingPages.isEmpty()) {
+			notifyItemsLoaded(sourceIndices, currentPageSize, knownPages, itemsListener);
+			return;
+		}
+
+		final int currentGeneration = this.generation;
+		this.executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				final Map<Integer, List<DLItem>> loadedPages = new HashMap<Integer, List<DLItem>>();
+				for (final Integer page : missingPages) {
+					loadedPages.put(page, DualListPager.this.dataSource.getItems(page * currentPageSize, currentPageSize));
+				}
+				asyncExec(new Runnable() {
+					@Override
+					public void run() {
+						if (currentGeneration == DualListPager.this.generation) {
+							DualListPager.this.pages.putAll(loadedPages);
+						}
+						knownPages.putAll(loadedPages);
+						notifyItemsLoaded(sourceIndices, currentPageSize, knownPages, itemsListener);
+					}
+				});
+			}
+		});
+	}
+
+	private static void notifyItemsLoaded(final int[] sourceIndices, final int pageSize, final Map<Integer, List<DLItem>> pages, final ItemsListener itemsListener) {
+		final List<DLItem> items = new ArrayList<DLItem>(sourceIndices.length);
+		final int[] indices = new int[sourceIndices.length];
+		for (final int sourceIndex : sourceIndices) {
+			final List<DLItem> page = pages.get(sourceIndex / pageSize);
+			final int offset = sourceIndex % pageSize;
+			if (page != null && offset < page.size()) {
+				indices[items.size()] = sourceIndex;
+				items.add(page.get(offset));
+			}
+		}
+		itemsListener.itemsLoaded(items, Arrays.copyOf(indices, items.size()));
+	}
+
+	/**
+	 * @param item an item of the source
+	 * @return <code>true</code> if the item is selected
+	 */
+	boolean isSelected(final DLItem item) {
+		return this.selectedKeys.containsKey(this.dataSource.getKey(item));
+	}
+
+	/**
+	 * Mark items as selected
+	 *
+	 * @param items items
+	 * @param sourceIndices index in the source of each item
+	 */
+	void select(final List<DLItem> items, final int[] sourceIndices) {
+		final int[] added = new int[sourceIndices.length];
+		int count = 0;
+		boolean replaced = false;
+		for (int i = 0; i < sourceIndices.length; i++) {
+			final Integer previous = this.selectedKeys.put(this.dataSource.getKey(items.get(i)), sourceIndices[i]);
+			if (previous == null) {
+				added[count++] = sourceIndices[i];
+			} else if (previous.intValue() != sourceIndices[i]) {
+				replaced = true;
+			}
+		}
+		if (replaced) {
+			updateSelectedIndices();
+			return;
+		}
+		if (count == 0) {
+			return;
+		}
+
+		// Merge the new indices into the sorted indices
+		Arrays.sort(added, 0, count);
+		final int[] indices = new int[this.selectedIndices.length + count];
+		int left = 0;
+		int right = 0;
+		for (int i = 0; i < indices.length; i++) {
+			if (right >= count || left < this.selectedIndices.length && this.selectedIndices[left] <= added[right]) {
+				indices[i] = this.selectedIndices[left++];
+			} else {
+				indices[i] = added[right++];
+			}
+		}
+		this.selectedIndices = indices;
+	}
+
+	/**
+	 * Mark items as not selected
+	 *
+	 * @param items items
+	 */
+	void deselect(final List<DLItem> items) {
+		final int[] removed = new int[items.size()];
+		int count = 0;
+		for (final DLItem item : items) {
+			final Integer index = this.selectedKeys.remove(this.dataSource.getKey(item));
+			if (index != null) {
+				removed[count++] = index;
+			}
+		}
+		if (count == 0) {
+			return;
+		}
+
+		// Remove the indices from the sorted indices
+		Arrays.sort(removed, 0, count);
+		final int[] indices = new int[this.selectedIndices.length];
+		int size = 0;
+		int next = 0;
+		for (final int index : this.selectedIndices) {
+			while (next < count && removed[next] < index) {
+				next++;
+			}
+			if (next < count && removed[next] == index) {
+				next++;
+			} else {
+				indices[size++] = index;
+			}
+		}
+		this.selectedIndices = Arrays.copyOf(indices, size);
+	}
+
+	/**
+	 * Forget all selected items
+	 */
+	void deselectAll() {
+		this.selectedKeys.clear();
+		updateSelectedIndices();
+	}
+
+	/**
+	 * @return the number of items of a page
+	 */
+	int getPageSize() {
+		return this.pageSize;
+	}
+
+	/**
+	 * @param pageSize the new number of items of a page. The cache is cleared.
+	 */
+	void setPageSize(final int pageSize) {
+		this.pageSize = pageSize;
+		this.pages.clear();
+		this.pendingPages.clear();
+		this.generation++;
+	}
+
+	/**
+	 * @param maximumCachedPages the maximum number of pages kept in memory
+	 */
+	void setMaximumCachedPages(final int maximumCachedPages) {
+		this.maximumCachedPages = maximumCachedPages;
+		while (this.pages.size() > maximumCachedPages) {
+			this.pages.remove(this.pages.keySet().iterator().next());
+		}
+	}
+
+	/**
+	 * Stop loading data
+	 */
+	void dispose() {
+		this.disposed = true;
+		this.executor.shutdownNow();
+	}
+
+	private void updateSelectedIndices() {
+		final int[] indices = new int[this.selectedKeys.size()];
+		int i = 0;
+		for (final Integer index : this.selectedKeys.values()) {
+			indices[i++] = index;
+		}
+		Arrays.sort(indices);
+		this.selectedIndices = indices;
+	}
+
+	private void loadCount() {
+		this.executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				final int count = DualListPager.this.dataSource.getItemCount();
+				asyncExec(new Runnable() {
+					@Override
+					public void run() {
+						DualListPager.this.itemCount = count;
+						DualListPager.this.listener.countLoaded();
+					}
+				});
+			}
+		});
+	}
+
+	private void loadPage(final int page) {
+		if (!this.pendingPages.add(page)) {
+			return;
+		}
+		final int currentGeneration = this.generation;
+		final int start = page * this.pageSize;
+		final int count = this.pageSize;
+		this.executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				List<DLItem> items = null;
+				try {
+					items = DualListPager.this.dataSource.getItems(start, count);
+				} finally {
+					final List<DLItem> loadedItems = items;
+					asyncExec(new Runnable() {
+						@Override
+						public void run() {
+							if (currentGeneration != DualListPager.this.generation) {
+								return;
+							}
+							DualListPager.this.pendingPages.remove(page);
+							if (loadedItems == null) {
+								DualListPager.this.listener.pageFailed(start, start + count);
+							} else {
+								DualListPager.this.pages.put(page, loadedItems);
+								DualListPager.this.listener.pageLoaded(start, start + loadedItems.size());
+							}
+						}
+					});
+				}
+			}
+		});
+	}
+
+	private void asyncExec(final Runnable runnable) {
+		if (this.display.isDisposed()) {
+			return;
+		}
+		try {
+			this.display.asyncExec(new Runnable() {
+				@Override
+				public void run() {
+					if (!DualListPager.this.disposed) {
+						runnable.run();
+					}
+				}
+			});
+		} catch (final SWTException e) {
+			// The display has been disposed in the meantime
+		}
+	}
+
+}
@@ -0,0 +1,371 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Laurent CARON
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Laurent CARON (laurent.caron at gmail dot com) - initial API and implementation
+ *******************************************************************************/
+package org.mihalis.opal.multiChoice;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.graphics.Point;
+import org.eclipse.swt.graphics.Rectangle;
+import org.eclipse.swt.widgets.Canvas;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Listener;
+import org.eclipse.swt.widgets.ScrollBar;
+
+/**
+ * Instances of this class display a grid of check boxes drawn on a canvas.
+ * Only the visible cells are painted, so the number of elements does not
+ * change the number of native widgets.<br/>
+ * Elements are laid out row by row, on a given number of columns. The user
+ * can toggle an element with the mouse or with the space bar, and move the
+ * focus with the arrow keys, Page Up, Page Down, Home and End.
+ */
+class CheckList extends Canvas {
+
+	/**
+	 * Provides the elements displayed by a CheckList
+	 */
+	interface Model {
+		/**
+		 * @return the number of elements
+		 */
+		int getSize();
+
+		/**
+		 * @param index index of an element
+		 * @return the label of the element
+		 */
+		String getText(int index);
+
+		/**
+		 * @param index index of an element
+		 * @return <code>true</code> if the element is checked
+		 */
+		boolean isChecked(int index);
+
+		/**
+		 * Called when the user toggles an element
+		 *
+		 * @param index index of the element
+		 */
+		void toggle(int index);
+	}
+
+	private static final int MARGIN = 3;
+	private static final int SPACING = 5;
+
+	private final Model model;
+	private int numberOfColumns;
+	private int numberOfRows;
+	private int cellWidth;
+	private int rowHeight;
+	private int boxSize;
+	private int topRow;
+	private int focusIndex;
+
+	/**
+	 * Constructor
+	 *
+	 * @param parent parent composite
+	 * @param model provider of the elements
+	 * @param numberOfColumns number of columns
+	 */
+	CheckList(final Composite parent, final Model model, final int numberOfColumns) {
+		super(parent, SWT.BORDER | SWT.V_SCROLL | SWT.DOUBLE_BUFFERED);
+		this.model = model;
+		this.numberOfColumns = Math.max(1, numberOfColumns);
+		refresh();
+		addListeners();
+	}
+
+	private void addListeners() {
+		final Listener listener = new Listener() {
+			@Override
+			public void handleEvent(final Event event) {
+				switch (event.type) {
+					case SWT.Paint:
+						paint(event.gc, event.x, event.y, event.width, event.height);
+						break;
+					case SWT.MouseDown:
+						if (event.button == 1) {
+							handleClick(event.x, event.y);
+						}
+						break;
+					case SWT.KeyDown:
+						handleKey(event);
+						break;
+					case SWT.Traverse:
+						// Arrows, Page Up and Page Down move the focus inside the list
+						if (event.detail == SWT.TRAVERSE_ARROW_NEXT || event.detail == SWT.TRAVERSE_ARROW_PREVIOUS || event.detail == SWT.TRAVERSE_PAGE_NEXT || event.detail == SWT.TRAVERSE_PAGE_PREVIOUS) {
+							event.doit = false;
+						} else {
+							event.doit = true;
+						}
+						break;
+					case SWT.FocusIn:
+					case SWT.FocusOut:
+						redrawElement(CheckList.this.focusIndex);
+						break;
+					case SWT.Resize:
+						updateScrollBar();
+						redraw();
+						break;
+				}
+			}
+		};
+		final int[] events = { SWT.Paint, SWT.MouseDown, SWT.KeyDown, SWT.Traverse, SWT.FocusIn, SWT.FocusOut, SWT.Resize };
+		for (final int event : events) {
+			addListener(event, listener);
+		}
+
+		getVerticalBar().addListener(SWT.Selection, new Listener() {
+			@Override
+			public void handleEvent(final Event event) {
+				CheckList.this.topRow = getVerticalBar().getSelection();
+				redraw();
+			}
+		});
+	}
+
+	/**
+	 * Recomputes the size of the cells and redraws the list. Called when the
+	 * elements, their labels or the font have changed.
+	 */
+	void refresh() {
+		final int size = this.model.getSize();
+		final GC gc = new GC(this);
+		gc.setFont(getFont());
+		final int fontHeight = gc.getFontMetrics().getHeight();
+		int maxTextWidth = 0;
+		for (int i = 0; i < size; i++) {
+			final String text = this.model.getText(i);
+			if (text != null) {
+				maxTextWidth = Math.max(maxTextWidth, gc.textExtent(text).x);
+			}
+		}
+		gc.dispose();
+
+		this.boxSize = Math.max(11, fontHeight - 3);
+		this.rowHeight = Math.max(fontHeight, this.boxSize) + 2 * MARGIN;
+		this.cellWidth = MARGIN + this.boxSize + SPACING + maxTextWidth + 2 * MARGIN;
+		updateRows();
+	}
+
+	/**
+	 * Recomputes the number of rows and redraws the list, keeping the size of
+	 * the cells. Called when the displayed elements have changed but the
+	 * cells should not be resized (when the elements are filtered for
+	 * example).
+	 */
+	void updateRows() {
+		final int size = this.model.getSize();
+		this.numberOfRows = (size + this.numberOfColumns - 1) / this.numberOfColumns;
+		this.focusIndex = Math.max(0, Math.min(this.focusIndex, size - 1));
+		updateScrollBar();
+		redraw();
+	}
+
+	/**
+	 * @param numberOfColumns the new number of columns
+	 */
+	void setNumberOfColumns(final int numberOfColumns) {
+		this.numberOfColumns = Math.max(1, numberOfColumns);
+		refresh();
+	}
+
+	/**
+	 * Redraws a cell
+	 *
+	 * @param index index of the element
+	 */
+	void redrawElement(final int index) {
+		if (index < 0 || index >= this.model.getSize()) {
+			return;
+		}
+		final Rectangle bounds = getCellBounds(index);
+		redraw(bounds.x, bounds.y, bounds.width, bounds.height, false);
+	}
+
+	/**
+	 * @see org.eclipse.swt.widgets.Composite#computeSize(int, int, boolean)
+	 */
+	@Override
+	public Point computeSize(final int wHint, final int hHint, final boolean changed) {
+		checkWidget();
+		final int border = getBorderWidth();
+		final int contentHeight = this.numberOfRows * this.rowHeight;
+		int width = this.numberOfColumns * this.cellWidth;
+		int height = contentHeight;
+		if (hHint != SWT.DEFAULT) {
+			height = Math.max(0, hHint - 2 * border);
+			if (contentHeight > height) {
+				width += getVerticalBar().getSize().x;
+			}
+		}
+		if (wHint != SWT.DEFAULT) {
+			width = Math.max(0, wHint - 2 * border);
+		}
+		return new Point(width + 2 * border, height + 2 * border);
+	}
+
+	private int getVisibleRows() {
+		return Math.max(1, getClientArea().height / this.rowHeight);
+	}
+
+	private void updateScrollBar() {
+		final ScrollBar bar = getVerticalBar();
+		final int visibleRows = getVisibleRows();
+		this.topRow = Math.max(0, Math.min(this.topRow, this.numberOfRows - visibleRows));
+		bar.setValues(this.topRow, 0, Math.max(this.numberOfRows, 1), Math.min(visibleRows, Math.max(this.numberOfRows, 1)), 1, visibleRows);
+		bar.setVisible(this.numberOfRows > visibleRows);
+	}
+
+	private Rectangle getCellBounds(final int index) {
+		final int row = index / this.numberOfColumns;
+		final int column = index % this.numberOfColumns;
+		return new Rectangle(column * this.cellWidth, (row - this.topRow) * this.rowHeight, this.cellWidth, this.rowHeight);
+	}
+
+	private void paint(final GC gc, final int x, final int y, final int width, final int height) {
+		final int size = this.model.getSize();
+		if (size == 0) {
+			return;
+		}
+		final int firstRow = this.topRow + y / this.rowHeight;
+		final int lastRow = Math.min(this.numberOfRows - 1, this.topRow + (y + height - 1) / this.rowHeight);
+		final int firstColumn = Math.max(0, x / this.cellWidth);
+		final int lastColumn = Math.min(this.numberOfColumns - 1, (x + width - 1) / this.cellWidth);
+		final int fontHeight = gc.getFontMetrics().getHeight();
+		final boolean hasFocus = isFocusControl();
+
+		for (int row = firstRow; row <= lastRow; row++) {
+			for (int column = firstColumn; column <= lastColumn; column++) {
+				final int index = row * this.numberOfColumns + column;
+				if (index >= size) {
+					break;
+				}
+				final Rectangle bounds = getCellBounds(index);
+				final int boxX = bounds.x + MARGIN;
+				final int boxY = bounds.y + (this.rowHeight - this.boxSize) / 2;
+				drawBox(gc, boxX, boxY, this.model.isChecked(index));
+
+				final String text = this.model.getText(index);
+				final int textX = boxX + this.boxSize + SPACING;
+				if (text != null) {
+					gc.setForeground(getForeground());
+					gc.drawText(text, textX, bounds.y + (this.rowHeight - fontHeight) / 2, true);
+				}
+				if (hasFocus && index == this.focusIndex) {
+					gc.drawFocus(textX - 2, bounds.y + 1, bounds.width - (textX - bounds.x) - MARGIN + 2, this.rowHeight - 2);
+				}
+			}
+		}
+	}
+
+	private void drawBox(final GC gc, final int x, final int y, final boolean checked) {
+		gc.setBackground(getDisplay().getSystemColor(SWT.COLOR_LIST_BACKGROUND));
+		gc.fillRectangle(x, y, this.boxSize, this.boxSize);
+		gc.setForeground(getDisplay().getSystemColor(SWT.COLOR_WIDGET_NORMAL_SHADOW));
+		gc.drawRectangle(x, y, this.boxSize - 1, this.boxSize - 1);
+		if (checked) {
+			final int lineWidth = gc.getLineWidth();
+			gc.setLineWidth(2);
+			gc.setForeground(getDisplay().getSystemColor(SWT.COLOR_LIST_FOREGROUND));
+			gc.drawPolyline(new int[] { x + 2, y + this.boxSize / 2, //
+					x + this.boxSize * 2 / 5, y + this.boxSize - 3, //
+					x + this.boxSize - 3, y + 2 });
+			gc.setLineWidth(lineWidth);
+		}
+	}
+
+	private void handleClick(final int x, final int y) {
+		final int column = x / this.cellWidth;
+		final int row = this.topRow + y / this.rowHeight;
+		if (column >= this.numberOfColumns || y < 0) {
+			return;
+		}
+		final int index = row * this.numberOfColumns + column;
+		if (index >= this.model.getSize()) {
+			return;
+		}
+		setFocus();
+		moveFocus(index);
+		toggle(index);
+	}
+
+	private void handleKey(final Event event) {
+		final int size = this.model.getSize();
+		if (size == 0) {
+			return;
+		}
+		final int pageSize = getVisibleRows() * this.numberOfColumns;
+		switch (event.keyCode) {
+			case SWT.ARROW_LEFT:
+				moveFocus(this.focusIndex - 1);
+				break;
+			case SWT.ARROW_RIGHT:
+				moveFocus(this.focusIndex + 1);
+				break;
+			case SWT.ARROW_UP:
+				moveFocus(this.focusIndex - this.numberOfColumns);
+				break;
+			case SWT.ARROW_DOWN:
+				moveFocus(this.focusIndex + this.numberOfColumns);
+				break;
+			case SWT.PAGE_UP:
+				moveFocus(this.focusIndex - pageSize);
+				break;
+			case SWT.PAGE_DOWN:
+				moveFocus(this.focusIndex + pageSize);
+				break;
+			case SWT.HOME:
+				moveFocus(0);
+				break;
+			case SWT.END:
+				moveFocus(size - 1);
+				break;
+			default:
+				if (event.character == ' ') {
+					toggle(this.focusIndex);
+				}
+		}
+	}
+
+	private void moveFocus(final int index) {
+		final int size = this.model.getSize();
+		final int newIndex = Math.max(0, Math.min(index, size - 1));
+		final int previousIndex = this.focusIndex;
+		this.focusIndex = newIndex;
+
+		// Scroll to show the focused element
+		final int row = newIndex / this.numberOfColumns;
+		final int visibleRows = getVisibleRows();
+		if (row < this.topRow || row >= this.topRow + visibleRows) {
+			this.topRow = row < this.topRow ? row : row - visibleRows + 1;
+			updateScrollBar();
+			redraw();
+			return;
+		}
+		redrawElement(previousIndex);
+		redrawElement(newIndex);
+	}
+
+	private void toggle(final int index) {
+		if (index < 0 || index >= this.model.getSize()) {
+			return;
+		}
+		this.model.toggle(index);
+		if (!isDisposed()) {
+			redrawElement(index);
+		}
+	}
+
+}
@@ -11,15 +11,22 @@
 
 package org.mihalis.opal.multiChoice;
 
+import java.text.CollationKey;
+import java.text.Collator;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.SWTException;
-import org.eclipse.swt.custom.ScrolledComposite;
 import org.eclipse.swt.events.SelectionEvent;
 import org.eclipse.swt.events.SelectionListener;
 import org.eclipse.swt.graphics.Color;
@@ -39,8 +46,10 @@ import org.eclipse.swt.widgets.Listener;
 import org.eclipse.swt.widgets.MessageBox;
 import org.eclipse.swt.widgets.Shell;
 import org.eclipse.swt.widgets.Text;
+import org.mihalis.opal.utils.ModelUpdateQueue;
 import org.mihalis.opal.utils.ResourceManager;
-import org.mihalis.opal.utils.SimpleSelectionAdapter;
+import org.mihalis.opal.utils.SortUtil;
+import org.mihalis.opal.utils.TextIndex;
 
 /**
  * The MultiChoice class represents a selectable user interface object that combines a read-only text-field and a set of checkboxes.
@@ -50,7 +59,7 @@ import org.mihalis.opal.utils.SimpleSelectionAdapter;
  * </p>
  * <dl>
  * <dt><b>Styles:</b>
- * <dd>NONE</dd>
+ * <dd>READ_ONLY, SEARCH</dd>
  * <dt><b>Events:</b>
  * <dd>Selection</dd>
  * </dl>
@@ -62,12 +71,11 @@ public class MultiChoice<T> extends Composite {
 	private Text text;
 	private Button arrow;
 	private Shell popup;
-	private ScrolledComposite scrolledComposite;
 	private Listener listener, filter;
 	private int numberOfColumns = 2;
 	private List<T> elements;
 	private Set<T> selection;
-	private List<Button> checkboxes;
+	private CheckList checkList;
 	private boolean hasFocus;
 	private MultiChoiceSelectionListener<T> selectionListener;
 	private T lastModified;
@@ -75,13 +83,27 @@ public class MultiChoice<T> extends Composite {
 	private Font font;
 	private String separator;
 	private MultiChoiceLabelProvider labelProvider;
-	private int preferredHeightOfPopup;
+	private int sortDirection = SWT.NONE;
+	private Collator collator;
+	private final Map<T, CollationKey> collationKeys = new IdentityHashMap<T, CollationKey>();
+	private int updateDepth;
+	private boolean refreshNeeded, selectionUpdateNeeded;
+	private ModelUpdateQueue<MultiChoice<T>> updateQueue;
+	private final boolean filterable;
+	private Text filterField;
+	private String elementFilter = "";
+	private List<T> filteredElements;
+	private Map<String, List<T>> labelIndex;
+	private TextIndex<T> textIndex;
+	private Map<T, Integer> positions;
+	private TreeMap<Integer, String> selectedLabels;
 
 	/**
 	 * Constructs a new instance of this class given its parent.
 	 * 
 	 * @param parent a widget which will be the parent of the new instance (cannot be null)
-	 * @param style not used
+	 * @param style the style of widget to construct (SWT.READ_ONLY for a non editable text field, SWT.SEARCH to display a field
+	 *            that filters the choices in the popup)
 	 * 
 	 * @exception IllegalArgumentException <ul>
 	 *                <li>ERROR_NULL_ARGUMENT - if the parent is null</li>
@@ -98,7 +120,8 @@ public class MultiChoice<T> extends Composite {
 	 * Constructs a new instance of this class given its parent.
 	 * 
 	 * @param parent a widget which will be the parent of the new instance (cannot be null)
-	 * @param style not used
+	 * @param style the style of widget to construct (SWT.READ_ONLY for a non editable text field, SWT.SEARCH to display a field
+	 *            that filters the choices in the popup)
 	 * @param elements list of elements displayed by this widget
 	 * 
 	 * @exception IllegalArgumentException <ul>
@@ -109,7 +132,8 @@ public class MultiChoice<T> extends Composite {
 	 *                </ul>
 	 */
 	public MultiChoice(final Composite parent, final int style, final List<T> elements) {
-		super(parent, style);
+		super(parent, style & ~SWT.SEARCH);
+		this.filterable = (style & SWT.SEARCH) != 0;
 
 		final GridLayout gridLayout = new GridLayout(2, false);
 		gridLayout.horizontalSpacing = gridLayout.verticalSpacing = gridLayout.marginWidth = gridLayout.marginHeight = 0;
@@ -147,7 +171,6 @@ public class MultiChoice<T> extends Composite {
 		this.separator = ",";
 		this.labelProvider = new MultiChoiceDefaultLabelProvider();
 
-		createPopup();
 		setLabel();
 	}
 
@@ -197,7 +220,7 @@ public class MultiChoice<T> extends Composite {
 
 				@Override
 				public void handleEvent(final Event event) {
-					if (!MultiChoice.this.popup.isDisposed() && !MultiChoice.this.popup.isVisible()) {
+					if (!isDropped()) {
 						validateEntry();
 					}
 				}
@@ -263,12 +286,11 @@ public class MultiChoice<T> extends Composite {
 	}
 
 	private T convertEntry(final String elementToValidate) {
-		for (final T elt : this.elements) {
-			if (this.labelProvider.getText(elt).trim().equals(elementToValidate)) {
-				return elt;
-			}
+		if (this.elements == null) {
+			return null;
 		}
-		return null;
+		final List<T> candidates = getLabelIndex().get(elementToValidate);
+		return candidates == null ? null : candidates.get(0);
 	}
 
 	/**
@@ -292,12 +314,16 @@ public class MultiChoice<T> extends Composite {
 		if (this.elements == null) {
 			this.elements = new ArrayList<T>();
 		}
-		this.elements.add(value);
-		refresh();
+		final int position = getInsertionIndex(value, this.elements.size());
+		this.elements.add(position, value);
+		indexElement(value);
+		elementInserted(position);
+		refreshContent();
 	}
 
 	/**
-	 * Adds the argument to the receiver's list at the given zero-relative index.
+	 * Adds the argument to the receiver's list at the given zero-relative index. If the list is sorted, the index is ignored and the
+	 * item is inserted at its position.
 	 * 
 	 * @param values new item
 	 * @param index the index for the item
@@ -319,8 +345,11 @@ public class MultiChoice<T> extends Composite {
 
 		checkRange(index);
 
-		this.elements.add(index, value);
-		refresh();
+		final int position = getInsertionIndex(value, index);
+		this.elements.add(position, value);
+		indexElement(value);
+		elementInserted(position);
+		refreshContent();
 	}
 
 	/**
@@ -345,6 +374,10 @@ public class MultiChoice<T> extends Composite {
 			this.elements = new ArrayList<T>();
 		}
 		this.elements.addAll(values);
+		for (final T value : values) {
+			indexElement(value);
+		}
+		sortElements();
 		refresh();
 	}
 
@@ -370,7 +403,9 @@ public class MultiChoice<T> extends Composite {
 		}
 		for (final T value : values) {
 			this.elements.add(value);
+			indexElement(value);
 		}
+		sortElements();
 		refresh();
 	}
 
@@ -455,9 +490,12 @@ public class MultiChoice<T> extends Composite {
 		checkWidget();
 		checkNullElement();
 		checkRange(index);
-		final Object removedElement = this.elements.remove(index);
+		final T removedElement = this.elements.remove(index);
 		this.selection.remove(removedElement);
-		refresh();
+		this.collationKeys.remove(removedElement);
+		unindexElement(removedElement);
+		elementRemoved(index, removedElement);
+		refreshContent();
 	}
 
 	/**
@@ -479,9 +517,15 @@ public class MultiChoice<T> extends Composite {
 		}
 		checkWidget();
 		checkNullElement();
-		this.elements.remove(object);
+		final int index = this.elements.indexOf(object);
+		if (index != -1) {
+			final T removedElement = this.elements.remove(index);
+			this.collationKeys.remove(removedElement);
+			unindexElement(removedElement);
+			elementRemoved(index, removedElement);
+		}
 		this.selection.remove(object);
-		refresh();
+		refreshContent();
 	}
 
 	/**
@@ -499,6 +543,9 @@ public class MultiChoice<T> extends Composite {
 			this.elements.clear();
 		}
 		this.selection.clear();
+		this.collationKeys.clear();
+		this.labelIndex = null;
+		this.textIndex = null;
 		refresh();
 	}
 
@@ -507,6 +554,85 @@ public class MultiChoice<T> extends Composite {
 	 */
 	public void setLabelProvider(final MultiChoiceLabelProvider labelProvider) {
 		this.labelProvider = labelProvider;
+		this.collationKeys.clear();
+		this.labelIndex = null;
+		this.textIndex = null;
+		sortElements();
+		refresh();
+	}
+
+	/**
+	 * Sorts the items of the receiver by their label. Once the items are sorted, the new items are inserted at their position and
+	 * the list stays ordered. The labels are compared with the collator of the receiver, using collation keys computed once per
+	 * item.
+	 * 
+	 * @param direction SWT.UP for an ascending order, SWT.DOWN for a descending order, SWT.NONE to stop sorting the items (they
+	 *            keep their current order)
+	 * @exception IllegalArgumentException <ul>
+	 *                <li>ERROR_INVALID_ARGUMENT - if the direction is not SWT.UP, SWT.DOWN or SWT.NONE</li>
+	 *                </ul>
+	 * @exception SWTException <ul>
+	 *                <li>ERROR_WIDGET_DISPOSED - if the receiver has been disposed</li>
+	 *                <li>ERROR_THREAD_INVALID_ACCESS - if not called from the thread that created the receiver</li>
+	 *                </ul>
+	 */
+	public void setSortDirection(final int direction) {
+		checkWidget();
+		if (direction != SWT.UP && direction != SWT.DOWN && direction != SWT.NONE) {
+			SWT.error(SWT.ERROR_INVALID_ARGUMENT);
+		}
+		if (direction == this.sortDirection) {
+			return;
+		}
+		this.sortDirection = direction;
+		if (direction != SWT.NONE && this.elements != null) {
+			sortElements();
+			refresh();
+		}
+	}
+
+	/**
+	 * @return the direction used to sort the items (SWT.UP, SWT.DOWN or SWT.NONE if the items are not sorted)
+	 */
+	public int getSortDirection() {
+		checkWidget();
+		return this.sortDirection;
+	}
+
+	/**
+	 * Sets the collator used to sort the items. By default, the collator of the default locale is used.
+	 * 
+	 * @param collator the new collator
+	 * @exception IllegalArgumentException <ul>
+	 *                <li>ERROR_NULL_ARGUMENT - if the collator is null</li>
+	 *                </ul>
+	 * @exception SWTException <ul>
+	 *                <li>ERROR_WIDGET_DISPOSED - if the receiver has been disposed</li>
+	 *                <li>ERROR_THREAD_INVALID_ACCESS - if not called from the thread that created the receiver</li>
+	 *                </ul>
+	 */
+	public void setCollator(final Collator collator) {
+		checkWidget();
+		if (collator == null) {
+			SWT.error(SWT.ERROR_NULL_ARGUMENT);
+		}
+		this.collator = collator;
+		this.collationKeys.clear();
+		if (this.sortDirection != SWT.NONE && this.elements != null) {
+			sortElements();
+			refresh();
+		}
+	}
+
+	/**
+	 * @return the collator used to sort the items
+	 */
+	public Collator getCollator() {
+		checkWidget();
+		if (this.collator == null) {
+			this.collator = Collator.getInstance();
+		}
+		return this.collator;
 	}
 
 	/**
@@ -565,8 +691,10 @@ public class MultiChoice<T> extends Composite {
 		checkWidget();
 		checkNullElement();
 		checkRange(index);
-		this.selection.add(this.elements.get(index));
-		updateSelection();
+		final T value = this.elements.get(index);
+		this.selection.add(value);
+		updateSelectedLabel(value);
+		redrawSelection();
 	}
 
 	/**
@@ -585,11 +713,12 @@ public class MultiChoice<T> extends Composite {
 	public void select(final T value) {
 		checkWidget();
 		checkNullElement();
-		if (!this.elements.contains(value)) {
+		if (!getPositions().containsKey(value)) {
 			throw new IllegalArgumentException("Value not present in the widget");
 		}
 		this.selection.add(value);
-		updateSelection();
+		updateSelectedLabel(value);
+		redrawSelection();
 	}
 
 	/**
@@ -611,9 +740,11 @@ public class MultiChoice<T> extends Composite {
 		checkNullElement();
 		for (final int i : index) {
 			checkRange(i);
-			this.selection.add(this.elements.get(i));
+			final T value = this.elements.get(i);
+			this.selection.add(value);
+			updateSelectedLabel(value);
 		}
-		updateSelection();
+		redrawSelection();
 	}
 
 	/**
@@ -687,8 +818,10 @@ public class MultiChoice<T> extends Composite {
 			SWT.error(SWT.ERROR_INVALID_RANGE);
 		}
 
-		this.selection.remove(index);
-		updateSelection();
+		final T value = this.elements.get(index);
+		this.selection.remove(value);
+		updateSelectedLabel(value);
+		redrawSelection();
 	}
 
 	/**
@@ -708,7 +841,8 @@ public class MultiChoice<T> extends Composite {
 		checkWidget();
 		checkNullElement();
 		this.selection.remove(value);
-		updateSelection();
+		updateSelectedLabel(value);
+		redrawSelection();
 	}
 
 	/**
@@ -743,9 +877,9 @@ public class MultiChoice<T> extends Composite {
 	public void setNumberOfColumns(final int numberOfColumns) {
 		checkWidget();
 		this.numberOfColumns = numberOfColumns;
-		this.popup.dispose();
-		this.popup = null;
-		createPopup();
+		if (this.checkList != null && !this.checkList.isDisposed()) {
+			this.checkList.setNumberOfColumns(numberOfColumns);
+		}
 	}
 
 	/**
@@ -815,10 +949,30 @@ public class MultiChoice<T> extends Composite {
 	 */
 	public void refresh() {
 		checkWidget();
-		this.popup.dispose();
-		this.popup = null;
-		createPopup();
-		updateSelection();
+		this.positions = null;
+		this.selectedLabels = null;
+		refreshContent();
+	}
+
+	/**
+	 * Refresh the popup and the label, without discarding the positions of the elements and the labels of the selected elements
+	 * (they must have been updated by the caller)
+	 */
+	private void refreshContent() {
+		if (this.updateDepth > 0) {
+			this.refreshNeeded = true;
+			return;
+		}
+		if (this.filteredElements != null) {
+			this.filteredElements = null;
+			applyFilter(this.elementFilter);
+		}
+		// The popup is created on first display, then only its content is updated
+		if (this.checkList != null && !this.checkList.isDisposed()) {
+			applyStyleToCheckList();
+			this.checkList.refresh();
+		}
+		redrawSelection();
 	}
 
 	/**
@@ -885,6 +1039,91 @@ public class MultiChoice<T> extends Composite {
 		refresh();
 	}
 
+	/**
+	 * Starts an update of the receiver: until <code>endUpdate()</code> is
+	 * called, the popup and the label are not refreshed after each change.
+	 * Calls can be nested.
+	 * 
+	 * @exception SWTException <ul>
+	 *                <li>ERROR_WIDGET_DISPOSED - if the receiver has been disposed</li>
+	 *                <li>ERROR_THREAD_INVALID_ACCESS - if not called from the thread that created the receiver</li>
+	 *                </ul>
+	 */
+	public void beginUpdate() {
+		checkWidget();
+		this.updateDepth++;
+	}
+
+	/**
+	 * Ends an update of the receiver. When the outermost update ends, the widget is refreshed once if it has been changed.
+	 * 
+	 * @exception SWTException <ul>
+	 *                <li>ERROR_WIDGET_DISPOSED - if the receiver has been disposed</li>
+	 *                <li>ERROR_THREAD_INVALID_ACCESS - if not called from the thread that created the receiver</li>
+	 *                </ul>
+	 */
+	public void endUpdate() {
+		checkWidget();
+		if (this.updateDepth == 0 || --this.updateDepth > 0) {
+			return;
+		}
+		if (this.refreshNeeded) {
+			this.refreshNeeded = this.selectionUpdateNeeded = false;
+			refreshContent();
+		} else if (this.selectionUpdateNeeded) {
+			this.selectionUpdateNeeded = false;
+			redrawSelection();
+		}
+	}
+
+	/**
+	 * Runs a set of changes as a single update of the receiver.
+	 * 
+	 * @param runnable code that changes the receiver
+	 * @exception IllegalArgumentException <ul>
+	 *                <li>ERROR_NULL_ARGUMENT - if the runnable is null</li>
+	 *                </ul>
+	 * @exception SWTException <ul>
+	 *                <li>ERROR_WIDGET_DISPOSED - if the receiver has been disposed</li>
+	 *                <li>ERROR_THREAD_INVALID_ACCESS - if not called from the thread that created the receiver</li>
+	 *                </ul>
+	 */
+	public void batch(final Runnable runnable) {
+		checkWidget();
+		if (runnable == null) {
+			SWT.error(SWT.ERROR_NULL_ARGUMENT);
+		}
+		beginUpdate();
+		try {
+			runnable.run();
+		} finally {
+			endUpdate();
+		}
+	}
+
+	/**
+	 * Returns a queue that accepts changes of the receiver from any thread. The changes are applied on the UI thread, all the
+	 * changes posted between two UI events being applied in a single batch.
+	 * 
+	 * @return the update queue of the receiver
+	 * @exception SWTException <ul>
+	 *                <li>ERROR_WIDGET_DISPOSED - if the receiver has been disposed</li>
+	 *                <li>ERROR_THREAD_INVALID_ACCESS - if not called from the thread that created the receiver</li>
+	 *                </ul>
+	 */
+	public ModelUpdateQueue<MultiChoice<T>> getUpdateQueue() {
+		checkWidget();
+		if (this.updateQueue == null) {
+			this.updateQueue = new ModelUpdateQueue<MultiChoice<T>>(this) {
+				@Override
+				protected void applyBatch(final MultiChoice<T> widget, final Runnable changes) {
+					widget.batch(changes);
+				}
+			};
+		}
+		return this.updateQueue;
+	}
+
 	/**
 	 * Update the selection
 	 */
@@ -893,17 +1132,22 @@ public class MultiChoice<T> extends Composite {
 		if (isDisposed()) {
 			return;
 		}
+		this.selectedLabels = null;
+		redrawSelection();
+	}
 
-		if (this.popup == null || this.popup.isDisposed() || this.checkboxes == null) {
+	/**
+	 * Redraw the popup and the label, without discarding the labels of the selected elements (they must have been updated by the
+	 * caller)
+	 */
+	private void redrawSelection() {
+		if (this.updateDepth > 0) {
+			this.selectionUpdateNeeded = true;
 			return;
 		}
 
-		for (int i = 0; i < this.checkboxes.size(); i++) {
-			final Button currentButton = this.checkboxes.get(i);
-			if (!currentButton.isDisposed()) {
-				final Object content = currentButton.getData();
-				currentButton.setSelection(this.selection.contains(content));
-			}
+		if (this.checkList != null && !this.checkList.isDisposed()) {
+			this.checkList.redraw();
 		}
 		setLabel();
 
@@ -917,100 +1161,369 @@ public class MultiChoice<T> extends Composite {
 	}
 
 	/**
-	 * @return the popup
+	 * @return the popup (null if it has never been displayed)
 	 */
 	Shell getPopup() {
 		return this.popup;
 	}
 
 	/**
-	 * Create the popup that contains all checkboxes
+	 * Create the popup that contains all checkboxes. The popup is created the first time it is displayed, and then hidden and
+	 * displayed again.
 	 */
 	private void createPopup() {
 		this.popup = new Shell(getShell(), SWT.NO_TRIM | SWT.ON_TOP);
-		this.popup.setLayout(new FillLayout());
+		final GridLayout popupLayout = new GridLayout(1, false);
+		popupLayout.horizontalSpacing = popupLayout.verticalSpacing = popupLayout.marginWidth = popupLayout.marginHeight = 0;
+		this.popup.setLayout(popupLayout);
 
 		final int[] popupEvents = { SWT.Close, SWT.Deactivate, SWT.Dispose };
 		for (final int popupEvent : popupEvents) {
 			this.popup.addListener(popupEvent, this.listener);
 		}
 
-		if (this.elements == null) {
+		if (this.filterable) {
+			createFilterField();
+		}
+
+		this.checkList = new CheckList(this.popup, new CheckList.Model() {
+
+			@Override
+			public int getSize() {
+				final List<T> displayedElements = getDisplayedElements();
+				return displayedElements == null ? 0 : displayedElements.size();
+			}
+
+			@Override
+			public String getText(final int index) {
+				return MultiChoice.this.labelProvider.getText(getDisplayedElements().get(index));
+			}
+
+			@Override
+			public boolean isChecked(final int index) {
+				return MultiChoice.this.selection.contains(getDisplayedElements().get(index));
+			}
+
+			@Override
+			public void toggle(final int index) {
+				toggleElement(getDisplayedElements().get(index));
+			}
+		}, this.numberOfColumns);
+		this.checkList.setLayoutData(new GridData(GridData.FILL, GridData.FILL, true, true));
+		applyStyleToCheckList();
+	}
+
+	/**
+	 * Create the field that filters the elements displayed in the popup
+	 */
+	private void createFilterField() {
+		this.filterField = new Text(this.popup, SWT.SEARCH | SWT.ICON_SEARCH | SWT.ICON_CANCEL);
+		this.filterField.setMessage(ResourceManager.getLabel(ResourceManager.MULTICHOICE_FILTER));
+		this.filterField.setLayoutData(new GridData(GridData.FILL, GridData.CENTER, true, false));
+		this.filterField.setText(this.elementFilter);
+		this.filterField.addListener(SWT.Modify, new Listener() {
+			@Override
+			public void handleEvent(final Event event) {
+				applyFilter(MultiChoice.this.filterField.getText());
+				if (MultiChoice.this.checkList != null && !MultiChoice.this.checkList.isDisposed()) {
+					MultiChoice.this.checkList.updateRows();
+				}
+			}
+		});
+		this.filterField.addListener(SWT.KeyDown, new Listener() {
+			@Override
+			public void handleEvent(final Event event) {
+				if (event.keyCode == SWT.ARROW_DOWN && MultiChoice.this.checkList != null) {
+					MultiChoice.this.checkList.setFocus();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Filter the elements displayed in the popup: only the elements whose label contains the filter (case is ignored) are
+	 * displayed. When the new filter contains the previous one, only the elements that are currently displayed are tested.
+	 * 
+	 * @param newFilter the new filter
+	 */
+	private void applyFilter(final String newFilter) {
+		final String previousFilter = this.elementFilter;
+		this.elementFilter = newFilter == null ? "" : newFilter;
+
+		if (this.elementFilter.length() == 0 || this.elements == null) {
+			this.filteredElements = null;
+			return;
+		}
+
+		final TextIndex<T> index = getTextIndex();
+		if (this.filteredElements != null && this.elementFilter.toLowerCase().contains(previousFilter.toLowerCase())) {
+			final List<T> narrowedElements = new ArrayList<T>();
+			for (final T element : this.filteredElements) {
+				if (index.matches(element, this.elementFilter)) {
+					narrowedElements.add(element);
+				}
+			}
+			this.filteredElements = narrowedElements;
 			return;
 		}
 
-		this.scrolledComposite = new ScrolledComposite(this.popup, SWT.BORDER | SWT.V_SCROLL);
-		final Composite content = new Composite(this.scrolledComposite, SWT.NONE);
-		content.setLayout(new GridLayout(this.numberOfColumns, true));
+		final Set<T> matches = index.search(this.elementFilter);
+		this.filteredElements = new ArrayList<T>(matches.size());
+		for (final T element : this.elements) {
+			if (matches.contains(element)) {
+				this.filteredElements.add(element);
+			}
+		}
+	}
 
-		this.checkboxes = new ArrayList<Button>(this.elements.size());
-		for (final T o : this.elements) {
-			final Button checkBoxButton = new Button(content, SWT.CHECK);
+	/**
+	 * @return the elements displayed in the popup (all elements, or the elements that match the filter)
+	 */
+	private List<T> getDisplayedElements() {
+		return this.filteredElements == null ? this.elements : this.filteredElements;
+	}
 
-			if (this.font != null) {
-				checkBoxButton.setFont(this.font);
+	/**
+	 * @return the index of the elements by label (built on first use)
+	 */
+	private Map<String, List<T>> getLabelIndex() {
+		if (this.labelIndex == null) {
+			this.labelIndex = new HashMap<String, List<T>>();
+			if (this.elements != null) {
+				for (final T element : this.elements) {
+					addToLabelIndex(element);
+				}
 			}
-			if (this.foreground != null) {
-				checkBoxButton.setForeground(this.foreground);
+		}
+		return this.labelIndex;
+	}
+
+	/**
+	 * @return the index used to filter the elements (built on first use)
+	 */
+	private TextIndex<T> getTextIndex() {
+		if (this.textIndex == null) {
+			this.textIndex = new TextIndex<T>();
+			if (this.elements != null) {
+				for (final T element : this.elements) {
+					this.textIndex.add(element, this.labelProvider.getText(element));
+				}
 			}
-			if (this.background != null) {
-				checkBoxButton.setBackground(this.background);
+		}
+		return this.textIndex;
+	}
+
+	private void addToLabelIndex(final T element) {
+		final String label = this.labelProvider.getText(element).trim();
+		List<T> sameLabel = this.labelIndex.get(label);
+		if (sameLabel == null) {
+			sameLabel = new ArrayList<T>(1);
+			this.labelIndex.put(label, sameLabel);
+		}
+		sameLabel.add(element);
+	}
+
+	/**
+	 * Add an element to the indexes that have already been built
+	 * 
+	 * @param element new element
+	 */
+	private void indexElement(final T element) {
+		if (this.labelIndex != null) {
+			addToLabelIndex(element);
+		}
+		if (this.textIndex != null) {
+			this.textIndex.add(element, this.labelProvider.getText(element));
+		}
+	}
+
+	/**
+	 * Remove an element from the indexes that have already been built
+	 * 
+	 * @param element removed element
+	 */
+	private void unindexElement(final T element) {
+		if (this.labelIndex != null) {
+			final String label = this.labelProvider.getText(element).trim();
+			final List<T> sameLabel = this.labelIndex.get(label);
+			if (sameLabel != null) {
+				sameLabel.remove(element);
+				if (sameLabel.isEmpty()) {
+					this.labelIndex.remove(label);
+				}
 			}
+		}
+		if (this.textIndex != null) {
+			this.textIndex.remove(element);
+		}
+	}
 
-			checkBoxButton.setData(o);
-			checkBoxButton.setLayoutData(new GridData(GridData.BEGINNING, GridData.CENTER, false, false));
-			checkBoxButton.setText(this.labelProvider.getText(o));
-			checkBoxButton.addSelectionListener(new SimpleSelectionAdapter() {
-				@Override
-				public void handle(final SelectionEvent e) {
-					if (checkBoxButton.getSelection()) {
-						MultiChoice.this.selection.add(o);
-					} else {
-						MultiChoice.this.selection.remove(o);
-					}
-					MultiChoice.this.lastModified = o;
-					setLabel();
+	/**
+	 * @return the position of each element in the list of elements (computed on first use, then shifted when an element is added or
+	 *         removed)
+	 */
+	private Map<T, Integer> getPositions() {
+		if (this.positions == null) {
+			this.positions = new HashMap<T, Integer>();
+			if (this.elements != null) {
+				for (int i = 0; i < this.elements.size(); i++) {
+					this.positions.put(this.elements.get(i), i);
 				}
-			});
+			}
+		}
+		return this.positions;
+	}
+
+	/**
+	 * Shift the positions of the elements that follow an inserted element, and add its label if it is selected
+	 * 
+	 * @param index position of the inserted element
+	 */
+	private void elementInserted(final int index) {
+		if (this.positions != null) {
+			for (int i = index; i < this.elements.size(); i++) {
+				this.positions.put(this.elements.get(i), i);
+			}
+		}
+		if (this.selectedLabels != null) {
+			shiftSelectedLabels(index, 1);
+			updateSelectedLabel(this.elements.get(index));
+		}
+	}
 
-			if (this.selectionListener != null) {
-				checkBoxButton.addSelectionListener(this.selectionListener);
+	/**
+	 * Shift the positions of the elements that followed a removed element, and remove its label
+	 * 
+	 * @param index former position of the removed element
+	 * @param element removed element
+	 */
+	private void elementRemoved(final int index, final T element) {
+		if (this.positions != null) {
+			this.positions.remove(element);
+			for (int i = index; i < this.elements.size(); i++) {
+				this.positions.put(this.elements.get(i), i);
 			}
+		}
+		if (this.selectedLabels != null) {
+			this.selectedLabels.remove(index);
+			shiftSelectedLabels(index + 1, -1);
+		}
+	}
+
+	/**
+	 * Move the labels of the selected elements located from a given position
+	 * 
+	 * @param from first position to move
+	 * @param offset number of positions to add to the moved positions
+	 */
+	private void shiftSelectedLabels(final int from, final int offset) {
+		final SortedMap<Integer, String> tail = this.selectedLabels.tailMap(from);
+		if (tail.isEmpty()) {
+			return;
+		}
+		final TreeMap<Integer, String> shifted = new TreeMap<Integer, String>();
+		for (final Map.Entry<Integer, String> entry : tail.entrySet()) {
+			shifted.put(entry.getKey() + offset, entry.getValue());
+		}
+		tail.clear();
+		this.selectedLabels.putAll(shifted);
+	}
+
+	/**
+	 * Add or remove the label of an element in the labels of the selected elements, if they have been computed
+	 * 
+	 * @param element an element whose selection may have changed
+	 */
+	private void updateSelectedLabel(final T element) {
+		if (this.selectedLabels == null) {
+			return;
+		}
+		final Integer position = getPositions().get(element);
+		if (position == null) {
+			return;
+		}
+		if (this.selection.contains(element)) {
+			this.selectedLabels.put(position, this.labelProvider.getText(element));
+		} else {
+			this.selectedLabels.remove(position);
+		}
+	}
+
+	/**
+	 * Apply the font and the colors of the receiver to the list of checkboxes
+	 */
+	private void applyStyleToCheckList() {
+		if (this.font != null) {
+			this.checkList.setFont(this.font);
+		}
+		if (this.foreground != null) {
+			this.checkList.setForeground(this.foreground);
+		}
+		if (this.background != null) {
+			this.checkList.setBackground(this.background);
+		}
+		if (this.font != null) {
+			this.checkList.refresh();
+		}
+	}
+
+	/**
+	 * Check or uncheck an element when the user clicks on its checkbox
+	 * 
+	 * @param element element
+	 */
+	private void toggleElement(final T element) {
+		final boolean selected = !this.selection.remove(element);
+		if (selected) {
+			this.selection.add(element);
+		}
+		this.lastModified = element;
+		updateSelectedLabel(element);
+		setLabel();
 
-			checkBoxButton.setSelection(this.selection.contains(o));
-			this.checkboxes.add(checkBoxButton);
+		if (this.selectionListener != null) {
+			final Event event = new Event();
+			event.widget = this.checkList;
+			event.display = getDisplay();
+			this.selectionListener.widgetSelected(new SelectionEvent(event));
 		}
+	}
 
-		this.scrolledComposite.setContent(content);
-		this.scrolledComposite.setExpandHorizontal(false);
-		this.scrolledComposite.setExpandVertical(true);
-		content.pack();
-		this.preferredHeightOfPopup = content.getSize().y;
+	/**
+	 * @param element an element
+	 * @return <code>true</code> if the element is selected
+	 */
+	boolean isSelected(final T element) {
+		return this.selection.contains(element);
 	}
 
 	/**
 	 * Set the value of the label, based on the selected items
 	 */
 	private void setLabel() {
-		if (this.checkboxes == null) {
+		if (this.elements == null) {
 			this.text.setText("");
 			return;
 		}
 
-		final List<String> values = new ArrayList<String>();
-		for (final Button current : this.checkboxes) {
-			if (current.getSelection()) {
-				values.add(current.getText());
+		if (this.selectedLabels == null) {
+			// Labels of the selected elements, sorted by position of the elements
+			final Map<T, Integer> currentPositions = getPositions();
+			this.selectedLabels = new TreeMap<Integer, String>();
+			for (final T element : this.selection) {
+				final Integer position = currentPositions.get(element);
+				if (position != null) {
+					this.selectedLabels.put(position, this.labelProvider.getText(element));
+				}
 			}
 		}
 
 		final StringBuilder sb = new StringBuilder();
-		final Iterator<String> it = values.iterator();
-		while (it.hasNext()) {
-			sb.append(it.next());
-			if (it.hasNext()) {
+		for (final String label : this.selectedLabels.values()) {
+			if (sb.length() > 0) {
 				sb.append(this.separator);
 			}
+			sb.append(label);
 		}
 
 		this.text.setText(sb.toString());
@@ -1113,7 +1626,7 @@ public class MultiChoice<T> extends Composite {
 	 * @return <code>true</code> if the popup is visible and not dropped, <code>false</code> otherwise
 	 */
 	private boolean isDropped() {
-		return !this.popup.isDisposed() && this.popup.getVisible();
+		return this.popup != null && !this.popup.isDisposed() && this.popup.getVisible();
 	}
 
 	/**
@@ -1131,10 +1644,8 @@ public class MultiChoice<T> extends Composite {
 				changeVisibilityOfPopupWindow(false);
 				break;
 			case SWT.Dispose:
-				if (this.checkboxes != null) {
-					this.checkboxes.clear();
-				}
-				this.checkboxes = null;
+				this.checkList = null;
+				this.filterField = null;
 				break;
 		}
 
@@ -1158,9 +1669,10 @@ public class MultiChoice<T> extends Composite {
 			return;
 		}
 
-		if (getShell() != this.popup.getParent()) {
-			this.popup.dispose();
-			this.popup = null;
+		if (this.popup == null || this.popup.isDisposed() || getShell() != this.popup.getParent()) {
+			if (this.popup != null && !this.popup.isDisposed()) {
+				this.popup.dispose();
+			}
 			createPopup();
 		}
 
@@ -1168,19 +1680,26 @@ public class MultiChoice<T> extends Composite {
 		int x = arrowRect.x;
 		int y = arrowRect.y;
 
+		if (this.filterField != null && this.elementFilter.length() > 0) {
+			this.filterField.setText("");
+		}
+
 		final Rectangle displayRect = getMonitor().getClientArea();
 		final Rectangle parentRect = getDisplay().map(getParent(), null, getBounds());
 		this.popup.pack();
 
-		final int width = this.popup.getBounds().width;
+		int width = this.popup.getBounds().width;
 
 		final int maxHeight = (2 * displayRect.height / 3);
 		int height = this.popup.getBounds().height;
 
+		final int scrollBarWidth = this.checkList.getVerticalBar().getSize().x;
+		boolean scrollBarDisplayed = false;
 		if (height > maxHeight) {
 			height = maxHeight;
+			width += scrollBarWidth;
+			scrollBarDisplayed = true;
 			this.popup.setSize(width, height);
-			this.scrolledComposite.setMinHeight(this.preferredHeightOfPopup);
 			this.popup.layout(true);
 		}
 
@@ -1189,8 +1708,10 @@ public class MultiChoice<T> extends Composite {
 			if (y < 0) {
 				height += y;
 				y = parentRect.y - height + 5;
+				if (!scrollBarDisplayed) {
+					width += scrollBarWidth;
+				}
 				this.popup.setSize(width, height);
-				this.scrolledComposite.setMinHeight(this.preferredHeightOfPopup);
 				this.popup.layout(true);
 			}
 		}
@@ -1200,7 +1721,61 @@ public class MultiChoice<T> extends Composite {
 
 		this.popup.setLocation(x, y);
 		this.popup.setVisible(true);
-		this.popup.setFocus();
+		if (this.filterField != null) {
+			this.filterField.setFocus();
+		} else {
+			this.popup.setFocus();
+		}
+	}
+
+	/**
+	 * Sorts the elements with the collation keys of their labels
+	 */
+	private void sortElements() {
+		if (this.sortDirection == SWT.NONE || this.elements == null) {
+			return;
+		}
+		@SuppressWarnings("unchecked")
+		final SortUtil.Keyed<T>[] keyedElements = SortUtil.newKeyedArray(this.elements.size());
+		int i = 0;
+		for (final T element : this.elements) {
+			keyedElements[i++] = new SortUtil.Keyed<T>(element, getCollationKey(element));
+		}
+		SortUtil.stableSort(keyedElements, SortUtil.<T> createComparator(this.sortDirection));
+		for (i = 0; i < keyedElements.length; i++) {
+			this.elements.set(i, keyedElements[i].getElement());
+		}
+	}
+
+	/**
+	 * @param value an element to add
+	 * @param defaultIndex index used if the elements are not sorted
+	 * @return the index where the element should be inserted
+	 */
+	private int getInsertionIndex(final T value, final int defaultIndex) {
+		if (this.sortDirection == SWT.NONE) {
+			return defaultIndex;
+		}
+		final int sign = this.sortDirection == SWT.DOWN ? -1 : 1;
+		return SortUtil.insertionPoint(this.elements, value, new Comparator<T>() {
+			@Override
+			public int compare(final T first, final T second) {
+				return sign * getCollationKey(first).compareTo(getCollationKey(second));
+			}
+		});
+	}
+
+	/**
+	 * @param element an element
+	 * @return the collation key of the label of the element (computed once)
+	 */
+	private CollationKey getCollationKey(final T element) {
+		CollationKey key = this.collationKeys.get(element);
+		if (key == null) {
+			key = SortUtil.getCollationKey(getCollator(), this.labelProvider.getText(element));
+			this.collationKeys.put(element, key);
+		}
+		return key;
 	}
 
 	/**
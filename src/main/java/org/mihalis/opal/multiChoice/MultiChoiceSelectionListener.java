@@ -13,7 +13,6 @@ package org.mihalis.opal.multiChoice;
 
 import org.eclipse.swt.events.SelectionEvent;
 import org.eclipse.swt.events.SelectionListener;
-import org.eclipse.swt.widgets.Button;
 import org.eclipse.swt.widgets.Shell;
 
 /**
@@ -32,8 +31,8 @@ public abstract class MultiChoiceSelectionListener<T> implements SelectionListen
 	 */
 	@Override
 	public final void widgetSelected(final SelectionEvent e) {
-		final Button button = (Button) e.widget;
-		handle(this.parent, this.parent.getLastModified(), button.getSelection(), this.parent.getPopup());
+		final T lastModified = this.parent.getLastModified();
+		handle(this.parent, lastModified, this.parent.isSelected(lastModified), this.parent.getPopup());
 	}
 
 	/**
@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Laurent CARON
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Laurent CARON (laurent.caron at gmail dot com) - initial API and implementation
+ *******************************************************************************/
+package org.mihalis.opal.systemMonitor;
+
+/**
+ * Instances of this class aggregate all the values collected for a sample
+ * during one display interval (min, max, average and number of values).
+ */
+public class SampleBucket {
+	private double min;
+	private double max;
+	private double sum;
+	private int count;
+
+	/**
+	 * Constructor
+	 */
+	SampleBucket() {
+		this.min = Double.MAX_VALUE;
+		this.max = -Double.MAX_VALUE;
+	}
+
+	/**
+	 * Add a value to this bucket
+	 *
+	 * @param value value to add
+	 */
+	void add(final double value) {
+		this.min = Math.min(this.min, value);
+		this.max = Math.max(this.max, value);
+		this.sum += value;
+		this.count++;
+	}
+
+	/**
+	 * @return <code>true</code> if no value has been added to this bucket
+	 */
+	public boolean isEmpty() {
+		return this.count == 0;
+	}
+
+	/**
+	 * @return the lowest value of this bucket
+	 */
+	public double getMin() {
+		return this.min;
+	}
+
+	/**
+	 * @return the highest value of this bucket
+	 */
+	public double getMax() {
+		return this.max;
+	}
+
+	/**
+	 * @return the average value of this bucket
+	 */
+	public double getAverage() {
+		return this.count == 0 ? 0d : this.sum / this.count;
+	}
+
+	/**
+	 * @return the number of values aggregated in this bucket
+	 */
+	public int getCount() {
+		return this.count;
+	}
+
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "SampleBucket [min=" + this.min + ", max=" + this.max + ", average=" + getAverage() + ", count=" + this.count + "]";
+	}
+
+}
@@ -0,0 +1,379 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Laurent CARON
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Laurent CARON (laurent.caron at gmail dot com) - initial API and implementation
+ *******************************************************************************/
+package org.mihalis.opal.systemMonitor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Instances of this class collect samples at a given interval on a background
+ * thread, and roll up the collected values at another interval. This class
+ * does not depend on SWT, so it can be used in a headless process. The
+ * {@link SystemMonitor} widget renders the data of a collector.
+ * <p>
+ * Usage:
+ * 
+ * <pre>
+ * final SampleCollector collector = new SampleCollector(20, 1000, 60);
+ * collector.addSample(SampleIdentifier.CPU_USAGE);
+ * collector.addListener(new SampleCollectorListener() {
+ * 	public void samplesRolledUp(Map&lt;String, SampleBucket&gt; buckets) {
+ * 		log(buckets);
+ * 	}
+ * });
+ * collector.start();
+ * </pre>
+ * </p>
+ */
+public class SampleCollector {
+
+	private final Map<String, SampleSeries> series;
+	private final List<SampleCollectorListener> listeners;
+	private int samplingTime;
+	private int rollupTime;
+	private int historySize;
+	private ScheduledExecutorService executor;
+
+	/**
+	 * Constructor. Samples are collected every 50 ms, rolled up every second,
+	 * and the last 1000 roll ups are kept
+	 */
+	public SampleCollector() {
+		this(50, 1000, 1000);
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param samplingTime interval (in ms) between two samples
+	 * @param rollupTime interval (in ms) between two roll ups
+	 * @param historySize number of roll ups kept for each sample
+	 * @exception IllegalArgumentException if one of the arguments is not
+	 *                positive
+	 */
+	public SampleCollector(final int samplingTime, final int rollupTime, final int historySize) {
+		checkPositive(samplingTime);
+		checkPositive(rollupTime);
+		checkPositive(historySize);
+		this.series = new LinkedHashMap<String, SampleSeries>();
+		this.listeners = new CopyOnWriteArrayList<SampleCollectorListener>();
+		this.samplingTime = samplingTime;
+		this.rollupTime = rollupTime;
+		this.historySize = historySize;
+	}
+
+	private static void checkPositive(final int value) {
+		if (value <= 0) {
+			throw new IllegalArgumentException("Value should be positive: " + value);
+		}
+	}
+
+	/**
+	 * Create a built-in sample
+	 * 
+	 * @param identifier identifier of the sample
+	 * @return the sample that corresponds to the identifier
+	 */
+	static Sample createSample(final SampleIdentifier identifier) {
+		switch (identifier) {
+			case CPU_USAGE:
+				return new CPUUsageSample();
+			case HEAP_MEMORY:
+				return new HeapMemorySample();
+			case PHYSICAL_MEMORY:
+				return new PhysicalMemorySample();
+			default:
+				return new ThreadsUsageSample();
+		}
+	}
+
+	/**
+	 * Add a built-in sample, identified by the name of its identifier
+	 * 
+	 * @param identifier identifier of the sample
+	 */
+	public void addSample(final SampleIdentifier identifier) {
+		addSample(identifier.name(), createSample(identifier));
+	}
+
+	/**
+	 * Add a sample
+	 * 
+	 * @param id identifier
+	 * @param sample sample to add
+	 */
+	public void addSample(final String id, final Sample sample) {
+		addSeries(id, new SampleSeries(sample, this.historySize));
+	}
+
+	/**
+	 * Add a series
+	 * 
+	 * @param id identifier
+	 * @param sampleSeries series to add
+	 */
+	void addSeries(final String id, final SampleSeries sampleSeries) {
+		synchronized (this.series) {
+			this.series.put(id, sampleSeries);
+		}
+	}
+
+	/**
+	 * Remove a sample
+	 * 
+	 * @param id identifier of the sample to remove
+	 */
+	public void removeSample(final String id) {
+		synchronized (this.series) {
+			this.series.remove(id);
+		}
+	}
+
+	/**
+	 * Remove all samples
+	 */
+	public void clear() {
+		synchronized (this.series) {
+			this.series.clear();
+		}
+	}
+
+	/**
+	 * @return the identifiers of the samples
+	 */
+	public Set<String> getSampleIds() {
+		synchronized (this.series) {
+			return Collections.unmodifiableSet(new LinkedHashSet<String>(this.series.keySet()));
+		}
+	}
+
+	/**
+	 * Add a listener, notified each time the collected values are rolled up
+	 * 
+	 * @param listener listener to add
+	 */
+	public void addListener(final SampleCollectorListener listener) {
+		this.listeners.add(listener);
+	}
+
+	/**
+	 * Remove a listener
+	 * 
+	 * @param listener listener to remove
+	 */
+	public void removeListener(final SampleCollectorListener listener) {
+		this.listeners.remove(listener);
+	}
+
+	/**
+	 * Start the collecting process. Does nothing if the collector is already
+	 * running
+	 */
+	public synchronized void start() {
+		if (this.executor != null) {
+			return;
+		}
+		this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(final Runnable runnable) {
+				final Thread thread = new Thread(runnable, "Opal SampleCollector");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		this.executor.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				collect();
+			}
+		}, 0, this.samplingTime, TimeUnit.MILLISECONDS);
+		this.executor.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				rollup();
+			}
+		}, this.rollupTime, this.rollupTime, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Stop the collecting process. The collected data are kept
+	 */
+	public synchronized void stop() {
+		if (this.executor == null) {
+			return;
+		}
+		this.executor.shutdownNow();
+		this.executor = null;
+	}
+
+	/**
+	 * @return <code>true</code> if the collecting process is running
+	 */
+	public synchronized boolean isRunning() {
+		return this.executor != null;
+	}
+
+	/**
+	 * Collect a value for each sample
+	 */
+	void collect() {
+		for (final SampleSeries sampleSeries : getSeries().values()) {
+			try {
+				sampleSeries.collect();
+			} catch (final RuntimeException e) {
+				// A failing sample must not stop the other ones, the value is
+				// simply missing for this tick
+			}
+		}
+	}
+
+	/**
+	 * Roll up the values collected since the last call and notify the
+	 * listeners
+	 */
+	void rollup() {
+		final Map<String, SampleBucket> buckets = new LinkedHashMap<String, SampleBucket>();
+		for (final Map.Entry<String, SampleSeries> entry : getSeries().entrySet()) {
+			final SampleBucket bucket = entry.getValue().closeBucket();
+			if (bucket != null) {
+				buckets.put(entry.getKey(), bucket);
+			}
+		}
+		if (buckets.isEmpty()) {
+			return;
+		}
+		final Map<String, SampleBucket> unmodifiableBuckets = Collections.unmodifiableMap(buckets);
+		for (final SampleCollectorListener listener : this.listeners) {
+			try {
+				listener.samplesRolledUp(unmodifiableBuckets);
+			} catch (final RuntimeException e) {
+				// A failing listener must not stop the other ones, nor cancel
+				// the next roll-ups
+			}
+		}
+	}
+
+	/**
+	 * @return a copy of the series map
+	 */
+	private Map<String, SampleSeries> getSeries() {
+		synchronized (this.series) {
+			return new LinkedHashMap<String, SampleSeries>(this.series);
+		}
+	}
+
+	/**
+	 * @param id identifier of the sample
+	 * @return the series associated to the identifier
+	 */
+	private SampleSeries getSeries(final String id) {
+		final SampleSeries sampleSeries;
+		synchronized (this.series) {
+			sampleSeries = this.series.get(id);
+		}
+		if (sampleSeries == null) {
+			throw new IllegalArgumentException("Unknown sample: " + id);
+		}
+		return sampleSeries;
+	}
+
+	/**
+	 * @param id identifier of the sample
+	 * @return the roll ups kept for this sample, from the oldest to the newest
+	 */
+	public List<SampleBucket> getBuckets(final String id) {
+		return new ArrayList<SampleBucket>(getSeries(id).getBuckets());
+	}
+
+	/**
+	 * @param id identifier of the sample
+	 * @return the last value collected for this sample
+	 */
+	public double getLastValue(final String id) {
+		return getSeries(id).getLastValue();
+	}
+
+	/**
+	 * @param id identifier of the sample
+	 * @return the last max value collected for this sample
+	 */
+	public double getLastMaxValue(final String id) {
+		return getSeries(id).getLastMaxValue();
+	}
+
+	/**
+	 * @return the interval (in ms) between two samples
+	 */
+	public synchronized int getSamplingTime() {
+		return this.samplingTime;
+	}
+
+	/**
+	 * @param samplingTime the interval (in ms) between two samples
+	 */
+	public synchronized void setSamplingTime(final int samplingTime) {
+		checkPositive(samplingTime);
+		this.samplingTime = samplingTime;
+		restartIfRunning();
+	}
+
+	/**
+	 * @return the interval (in ms) between two roll ups
+	 */
+	public synchronized int getRollupTime() {
+		return this.rollupTime;
+	}
+
+	/**
+	 * @param rollupTime the interval (in ms) between two roll ups
+	 */
+	public synchronized void setRollupTime(final int rollupTime) {
+		checkPositive(rollupTime);
+		this.rollupTime = rollupTime;
+		restartIfRunning();
+	}
+
+	private void restartIfRunning() {
+		if (this.executor != null) {
+			stop();
+			start();
+		}
+	}
+
+	/**
+	 * @return the number of roll ups kept for each sample
+	 */
+	public synchronized int getHistorySize() {
+		return this.historySize;
+	}
+
+	/**
+	 * @param historySize the number of roll ups kept for each sample
+	 */
+	public synchronized void setHistorySize(final int historySize) {
+		checkPositive(historySize);
+		this.historySize = historySize;
+		for (final SampleSeries sampleSeries : getSeries().values()) {
+			sampleSeries.resize(historySize);
+		}
+	}
+
+}
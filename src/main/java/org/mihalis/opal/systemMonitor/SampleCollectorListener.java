@@ -0,0 +1,28 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Laurent CARON
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Laurent CARON (laurent.caron at gmail dot com) - initial API and implementation
+ *******************************************************************************/
+package org.mihalis.opal.systemMonitor;
+
+import java.util.Map;
+
+/**
+ * Classes which implement this interface provide methods that deal with the
+ * data rolled up by a {@link SampleCollector}
+ */
+public interface SampleCollectorListener {
+	/**
+	 * Sent each time the values collected since the previous roll up have been
+	 * aggregated. This method is called by the thread of the collector.
+	 * 
+	 * @param buckets aggregated values, indexed by sample identifier. Samples
+	 *            that did not collect any value are not present in the map
+	 */
+	void samplesRolledUp(Map<String, SampleBucket> buckets);
+}
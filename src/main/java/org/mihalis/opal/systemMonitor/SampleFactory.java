@@ -48,28 +48,28 @@ public class SampleFactory {
 	public SampleWrapper getSample(final SampleIdentifier identifier) {
 		switch (identifier) {
 			case CPU_USAGE: {
-				final SampleWrapper sr = new SampleWrapper(new CPUUsageSample());
+				final SampleWrapper sr = new SampleWrapper(SampleCollector.createSample(identifier));
 				sr.setColor(new RGB(128, 25, 0));
 				sr.setCaption(ResourceManager.CPU_USAGE + ":");
 				sr.setFormatPattern("%{percentValue}.0f%%");
 				return sr;
 			}
 			case HEAP_MEMORY: {
-				final SampleWrapper sr = new SampleWrapper(new HeapMemorySample());
+				final SampleWrapper sr = new SampleWrapper(SampleCollector.createSample(identifier));
 				sr.setColor(new RGB(111, 83, 0));
 				sr.setCaption(ResourceManager.HEAP_MEMORY + ":");
 				sr.setFormatPattern("%{value},.2fMB / %{maxValue},.2fMB");
 				return sr;
 			}
 			case PHYSICAL_MEMORY: {
-				final SampleWrapper sr = new SampleWrapper(new PhysicalMemorySample());
+				final SampleWrapper sr = new SampleWrapper(SampleCollector.createSample(identifier));
 				sr.setColor(new RGB(15, 75, 0));
 				sr.setCaption(ResourceManager.PHYSICAL_MEMORY + ":");
 				sr.setFormatPattern("%{value},.0fMB / %{maxValue},.0fMB");
 				return sr;
 			}
 			default: {
-				final SampleWrapper sr = new SampleWrapper(new ThreadsUsageSample());
+				final SampleWrapper sr = new SampleWrapper(SampleCollector.createSample(identifier));
 				sr.setColor(new RGB(0, 77, 88));
 				sr.setCaption(ResourceManager.THREADS + ":");
 				sr.setFormatPattern("%{value},.0f / %{maxValue},.0f (Peak)");
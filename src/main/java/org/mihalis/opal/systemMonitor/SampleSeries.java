@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Laurent CARON
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Laurent CARON (laurent.caron at gmail dot com) - initial API and implementation
+ *******************************************************************************/
+package org.mihalis.opal.systemMonitor;
+
+import java.util.List;
+
+import org.mihalis.opal.utils.FixedSizeQueue;
+
+/**
+ * Instances of this class store the values collected for a sample. Values are
+ * aggregated in a bucket until the bucket is closed and stored in the history.
+ * <p>
+ * Values are collected by the thread of a {@link SampleCollector} and read by
+ * the rendering thread, so all methods are synchronized.
+ * </p>
+ */
+class SampleSeries {
+	private final Sample sample;
+	private final FixedSizeQueue<SampleBucket> data;
+	private SampleBucket currentBucket;
+	private double lastValue;
+	private double lastMaxValue;
+	private double maxValue;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param sample associated sample
+	 * @param historySize number of buckets kept in the history
+	 */
+	SampleSeries(final Sample sample, final int historySize) {
+		this.sample = sample;
+		this.data = new FixedSizeQueue<SampleBucket>(historySize);
+		this.currentBucket = new SampleBucket();
+	}
+
+	/**
+	 * Collect a value of the sample and aggregate it in the current bucket
+	 */
+	void collect() {
+		final double value = this.sample.getValue();
+		final double max = this.sample.getMaxValue();
+		synchronized (this) {
+			this.lastValue = value;
+			this.maxValue = Math.max(this.lastMaxValue, max);
+			this.lastMaxValue = max;
+			this.currentBucket.add(value);
+		}
+	}
+
+	/**
+	 * Store the current bucket in the history and open a new one
+	 * 
+	 * @return the closed bucket, or <code>null</code> if no value has been
+	 *         collected since the last call
+	 */
+	synchronized SampleBucket closeBucket() {
+		if (this.currentBucket.isEmpty()) {
+			return null;
+		}
+		final SampleBucket closed = this.currentBucket;
+		this.data.put(closed);
+		this.currentBucket = new SampleBucket();
+		return closed;
+	}
+
+	/**
+	 * @return the sample
+	 */
+	Sample getSample() {
+		return this.sample;
+	}
+
+	/**
+	 * @return a copy of the buckets stored in the history
+	 */
+	synchronized List<SampleBucket> getBuckets() {
+		return this.data.getValues();
+	}
+
+	/**
+	 * @return the last collected value
+	 */
+	synchronized double getLastValue() {
+		return this.lastValue;
+	}
+
+	/**
+	 * @return the last max value collected
+	 */
+	synchronized double getLastMaxValue() {
+		return this.lastMaxValue;
+	}
+
+	/**
+	 * @return the max value
+	 */
+	synchronized double getMaxValue() {
+		return this.maxValue;
+	}
+
+	/**
+	 * @return the number of buckets stored in the history
+	 */
+	synchronized int getSize() {
+		return this.data.getSize();
+	}
+
+	/**
+	 * @param newSize new size of the history
+	 */
+	synchronized void resize(final int newSize) {
+		this.data.resizeTo(newSize);
+	}
+}
@@ -10,10 +10,10 @@
  *******************************************************************************/
 package org.mihalis.opal.systemMonitor;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.eclipse.swt.graphics.RGB;
-import org.mihalis.opal.utils.FixedSizeQueue;
 
 /**
  * Instances of this class are wrapper that contains a sample, its data, color,
@@ -24,11 +24,7 @@ public class SampleWrapper {
 	private RGB borderColor;
 	private String caption;
 	private String formatPattern;
-	private final Sample sample;
-	private final FixedSizeQueue<Double> data;
-	private Double lastValue;
-	private Double lastMaxValue;
-	private Double maxValue;
+	private final SampleSeries series;
 
 	/**
 	 * Constructor
@@ -37,14 +33,10 @@ public class SampleWrapper {
 	 */
 	SampleWrapper(final Sample sample) {
 		super();
-		this.sample = sample;
+		this.series = new SampleSeries(sample, 1000);
 		this.color = new RGB(255, 255, 216);
 		this.caption = "";
 		this.formatPattern = "";
-		this.data = new FixedSizeQueue<Double>(1000);
-		this.lastValue = 0d;
-		this.lastMaxValue = 0d;
-		this.maxValue = 0d;
 		createBorderColor();
 	}
 
@@ -55,16 +47,6 @@ public class SampleWrapper {
 		this.borderColor = new RGB(Math.min(this.color.red * 2, 255), Math.min(this.color.green * 2, 255), Math.min(this.color.blue * 2, 255));
 	}
 
-	/**
-	 * Collect a sample
-	 */
-	void collect() {
-		this.lastValue = this.sample.getValue();
-		this.maxValue = Math.max(this.lastMaxValue, this.sample.getMaxValue());
-		this.lastMaxValue = this.sample.getMaxValue();
-		this.data.put(this.lastValue);
-	}
-
 	/**
 	 * @return the border color
 	 */
@@ -87,10 +69,22 @@ public class SampleWrapper {
 	}
 
 	/**
-	 * @return all data
+	 * @return all data (average value of each bucket)
 	 */
 	public List<Double> getData() {
-		return this.data.getValues();
+		final List<SampleBucket> buckets = this.series.getBuckets();
+		final List<Double> values = new ArrayList<Double>(buckets.size());
+		for (final SampleBucket bucket : buckets) {
+			values.add(bucket.getAverage());
+		}
+		return values;
+	}
+
+	/**
+	 * @return all buckets
+	 */
+	public List<SampleBucket> getBuckets() {
+		return this.series.getBuckets();
 	}
 
 	/**
@@ -104,42 +98,49 @@ public class SampleWrapper {
 	 * @return the last max value collected
 	 */
 	public Double getLastMaxValue() {
-		return this.lastMaxValue;
+		return this.series.getLastMaxValue();
 	}
 
 	/**
 	 * @return the last collected value
 	 */
 	public Double getLastValue() {
-		return this.lastValue;
+		return this.series.getLastValue();
 	}
 
 	/**
 	 * @return the max value
 	 */
 	public double getMaxValue() {
-		return this.maxValue;
+		return this.series.getMaxValue();
 	}
 
 	/**
 	 * @return the number of collected elements
 	 */
 	public int getNumberOfCollectedElements() {
-		return this.data.getSize();
+		return this.series.getSize();
 	}
 
 	/**
 	 * @return the sample
 	 */
 	Sample getSample() {
-		return this.sample;
+		return this.series.getSample();
+	}
+
+	/**
+	 * @return the series that stores the collected data
+	 */
+	SampleSeries getSeries() {
+		return this.series;
 	}
 
 	/**
 	 * @param newSize new size of the data collector array
 	 */
 	public void resize(final int newSize) {
-		this.data.resizeTo(newSize);
+		this.series.resize(newSize);
 	}
 
 	/**
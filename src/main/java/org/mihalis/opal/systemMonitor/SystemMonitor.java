@@ -31,6 +31,7 @@ import org.eclipse.swt.graphics.Rectangle;
 import org.eclipse.swt.graphics.Region;
 import org.eclipse.swt.widgets.Canvas;
 import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Display;
 
 /**
  * Instances of this class are system monitors.
@@ -50,8 +51,7 @@ public class SystemMonitor extends Canvas {
 	private final Color gridColorBackground;
 	private final Color gridColor;
 	private final int gridSize;
-	private final int refreshTime;
-	private boolean keepRunning;
+	private final SampleCollector collector;
 
 	/**
 	 * Constructs a new instance of this class given its parent and a style
@@ -87,8 +87,7 @@ public class SystemMonitor extends Canvas {
 		this.gridColor = new Color(getDisplay(), 89, 89, 89);
 		this.gridColorBackground = new Color(getDisplay(), 50, 50, 50);
 		this.gridSize = 12;
-		this.refreshTime = 300;
-		this.keepRunning = true;
+		this.collector = new SampleCollector(50, 300, 1000);
 
 		createListeners();
 		launchDataCollecting();
@@ -122,15 +121,54 @@ public class SystemMonitor extends Canvas {
 	 * 
 	 */
 	public SystemMonitor(final Composite parent, final int style, final int gridSize, final int refeshTime) {
+		this(parent, style, gridSize, refeshTime, Math.min(50, refeshTime));
+	}
+
+	/**
+	 * Constructs a new instance of this class given its parent, a style
+	 * value describing its behavior and appearance. Also for a given
+	 * grid size, refresh interval and sampling interval. All values collected
+	 * between two refreshes are aggregated in one column of the graph.
+	 * <p>
+	 * The style value is either one of the style constants defined in class
+	 * <code>SWT</code> which is applicable to instances of this class, or must
+	 * be built by <em>bitwise OR</em>'in together (that is, using the
+	 * <code>int</code> "|" operator) two or more of those <code>SWT</code>
+	 * style constants. The class description lists the style constants that are
+	 * applicable to the class. Style bits are also inherited from super
+	 * classes.
+	 * </p>
+	 * 
+	 * @param parent a composite control which will be the parent of the new
+	 *            instance (cannot be null)
+	 * @param style the style of control to construct
+	 * @param gridSize size of the grid
+	 * @param refreshTime interval (in ms) between two repaints
+	 * @param samplingTime interval (in ms) between two samples
+	 * 
+	 * @exception IllegalArgumentException <ul>
+	 *                <li>ERROR_NULL_ARGUMENT - if the parent is null</li>
+	 *                <li>ERROR_INVALID_ARGUMENT - if one of the interval is
+	 *                not positive</li>
+	 *                </ul>
+	 * @exception SWTException <ul>
+	 *                <li>ERROR_THREAD_INVALID_ACCESS - if not called from the
+	 *                thread that created the parent</li>
+	 *                </ul>
+	 * 
+	 */
+	public SystemMonitor(final Composite parent, final int style, final int gridSize, final int refreshTime, final int samplingTime) {
 		super(parent, style | SWT.DOUBLE_BUFFERED);
+		if (refreshTime <= 0 || samplingTime <= 0) {
+			SWT.error(SWT.ERROR_INVALID_ARGUMENT);
+		}
 		this.samples = new LinkedHashMap<String, SampleWrapper>();
 		this.captionVisible = true;
 		this.borderColor = new Color(getDisplay(), 96, 96, 96);
 		this.gridColor = new Color(getDisplay(), 89, 89, 89);
 		this.gridColorBackground = new Color(getDisplay(), 50, 50, 50);
 		this.gridSize = gridSize;
-		this.refreshTime = refeshTime;
-		this.keepRunning = true;
+		this.collector = new SampleCollector(samplingTime, refreshTime, 1000);
 
 		createListeners();
 		launchDataCollecting();
@@ -150,6 +188,7 @@ public class SystemMonitor extends Canvas {
 
 			@Override
 			public void widgetDisposed(final DisposeEvent e) {
+				SystemMonitor.this.collector.stop();
 				SystemMonitor.this.borderColor.dispose();
 				SystemMonitor.this.gridColor.dispose();
 				SystemMonitor.this.gridColorBackground.dispose();
@@ -227,12 +266,14 @@ public class SystemMonitor extends Canvas {
 	}
 
 	/**
-	 * Draw the data
+	 * Draw the data. The outline of the graph follows the highest value of
+	 * each bucket, so short peaks are never lost, and a line follows the
+	 * average values
 	 * 
 	 * @param sample sample that contains data
 	 */
 	private void drawData(final SampleWrapper sample) {
-		final List<Double> data = sample.getData();
+		final List<SampleBucket> data = sample.getBuckets();
 
 		if (data == null || data.size() < 2) {
 			return;
@@ -244,6 +285,7 @@ public class SystemMonitor extends Canvas {
 		final Color borderColor = new Color(getDisplay(), sample.getBorderColor());
 		final Color color = new Color(getDisplay(), sample.getColor());
 		final int[] pointArray = new int[2 * (data.size() + 2)];
+		final int[] averageArray = new int[2 * data.size()];
 
 		final int availableWidth = clientArea.width - this.gridSize;
 		final int availableHeight = (int) ((clientArea.height - this.gridSize) * 0.98f);
@@ -256,12 +298,15 @@ public class SystemMonitor extends Canvas {
 
 		// Following points
 		int index = 2;
+		int averageIndex = 0;
 		double maxDisplayedValue = -1d;
-		for (final Double datum : data) {
+		for (final SampleBucket bucket : data) {
 			pointArray[index++] = x;
-			pointArray[index++] = clientArea.height - (int) (this.gridSize / 2 + availableHeight * datum / maxValue);
+			pointArray[index++] = clientArea.height - (int) (this.gridSize / 2 + availableHeight * bucket.getMax() / maxValue);
+			averageArray[averageIndex++] = x;
+			averageArray[averageIndex++] = clientArea.height - (int) (this.gridSize / 2 + availableHeight * bucket.getAverage() / maxValue);
 			x += this.gridSize;
-			maxDisplayedValue = Math.max(maxDisplayedValue, datum);
+			maxDisplayedValue = Math.max(maxDisplayedValue, bucket.getMax());
 		}
 
 		// Last point
@@ -282,6 +327,10 @@ public class SystemMonitor extends Canvas {
 		this.gc.setForeground(borderColor);
 		this.gc.drawPolygon(pointArray);
 
+		// Draw the average values
+		this.gc.setForeground(color);
+		this.gc.drawPolyline(averageArray);
+
 		region.dispose();
 		borderColor.dispose();
 		color.dispose();
@@ -332,39 +381,35 @@ public class SystemMonitor extends Canvas {
 	}
 
 	/**
-	 * Launch the data collecting process
+	 * Launch the data collecting process. Data are collected by a
+	 * {@link SampleCollector} on a background thread, and the widget is
+	 * redrawn each time the collected data are rolled up
 	 */
 	private void launchDataCollecting() {
-		getDisplay().timerExec(this.refreshTime, new Runnable() {
+		final Display display = getDisplay();
+		this.collector.addListener(new SampleCollectorListener() {
 
 			@Override
-			public void run() {
-				collect();
-				if (!SystemMonitor.this.isDisposed() && SystemMonitor.this.keepRunning && !getDisplay().isDisposed()) {
-					getDisplay().timerExec(SystemMonitor.this.refreshTime, this);
+			public void samplesRolledUp(final Map<String, SampleBucket> buckets) {
+				if (display.isDisposed()) {
+					return;
+				}
+				try {
+					display.asyncExec(new Runnable() {
+
+						@Override
+						public void run() {
+							if (!SystemMonitor.this.isDisposed()) {
+								redraw();
+							}
+						}
+					});
+				} catch (final SWTException e) {
+					// The display has been disposed in the meantime
 				}
 			}
 		});
-	}
-
-	/**
-	 * Collect data
-	 */
-	private void collect() {
-		for (final SampleWrapper sample : this.samples.values()) {
-			sample.collect();
-		}
-		if (!this.isDisposed() && !getDisplay().isDisposed()) {
-			getDisplay().asyncExec(new Runnable() {
-
-				@Override
-				public void run() {
-					if (!SystemMonitor.this.isDisposed()) {
-						redraw();
-					}
-				}
-			});
-		}
+		this.collector.start();
 	}
 
 	/**
@@ -408,7 +453,7 @@ public class SystemMonitor extends Canvas {
 	 * @param sample sample to add
 	 */
 	public void addSample(final String id, final Sample sample) {
-		this.samples.put(id, new SampleWrapper(sample));
+		addSample(id, new SampleWrapper(sample));
 	}
 
 	/**
@@ -419,6 +464,7 @@ public class SystemMonitor extends Canvas {
 	 */
 	private void addSample(final String id, final SampleWrapper sampleWrapper) {
 		this.samples.put(id, sampleWrapper);
+		this.collector.addSeries(id, sampleWrapper.getSeries());
 	}
 
 	/**
@@ -426,6 +472,7 @@ public class SystemMonitor extends Canvas {
 	 */
 	public void displayAll() {
 		this.samples.clear();
+		this.collector.clear();
 		addSample(SampleIdentifier.CPU_USAGE.name(), SampleFactory.getInstance().getSample(SampleIdentifier.CPU_USAGE));
 		addSample(SampleIdentifier.HEAP_MEMORY.name(), SampleFactory.getInstance().getSample(SampleIdentifier.HEAP_MEMORY));
 		addSample(SampleIdentifier.PHYSICAL_MEMORY.name(), SampleFactory.getInstance().getSample(SampleIdentifier.PHYSICAL_MEMORY));
@@ -453,6 +500,52 @@ public class SystemMonitor extends Canvas {
 		this.samples.get(id).setCaption(caption);
 	}
 
+	/**
+	 * @return the collector that feeds this widget
+	 */
+	public SampleCollector getCollector() {
+		checkWidget();
+		return this.collector;
+	}
+
+	/**
+	 * @return the interval (in ms) between two repaints
+	 */
+	public int getRefreshTime() {
+		checkWidget();
+		return this.collector.getRollupTime();
+	}
+
+	/**
+	 * @param refreshTime the interval (in ms) between two repaints
+	 */
+	public void setRefreshTime(final int refreshTime) {
+		checkWidget();
+		if (refreshTime <= 0) {
+			SWT.error(SWT.ERROR_INVALID_ARGUMENT);
+		}
+		this.collector.setRollupTime(refreshTime);
+	}
+
+	/**
+	 * @return the interval (in ms) between two samples
+	 */
+	public int getSamplingTime() {
+		checkWidget();
+		return this.collector.getSamplingTime();
+	}
+
+	/**
+	 * @param samplingTime the interval (in ms) between two samples
+	 */
+	public void setSamplingTime(final int samplingTime) {
+		checkWidget();
+		if (samplingTime <= 0) {
+			SWT.error(SWT.ERROR_INVALID_ARGUMENT);
+		}
+		this.collector.setSamplingTime(samplingTime);
+	}
+
 	/**
 	 * @param captionVisible if true, the caption is visible
 	 */
@@ -490,7 +583,7 @@ public class SystemMonitor extends Canvas {
 	 * Stop the data collecting process
 	 */
 	public void stop() {
-		this.keepRunning = false;
+		this.collector.stop();
 	}
 
 }
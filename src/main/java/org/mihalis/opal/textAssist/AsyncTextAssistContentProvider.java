@@ -0,0 +1,50 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Laurent CARON
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Laurent CARON (laurent.caron at gmail dot com) - initial API and implementation
+ *******************************************************************************/
+package org.mihalis.opal.textAssist;
+
+import java.util.List;
+
+/**
+ * This class is a content provider for the TextAssist widget whose searches are
+ * too slow to be run on the UI thread (a database query for example).
+ * <p>
+ * The method <code>getContent(String, TextAssistQuery)</code> is called from a
+ * worker thread, so it must not access widgets. When the user types faster
+ * than the provider answers, the pending queries are cancelled and only the
+ * propositions of the last query are displayed.
+ * </p>
+ *
+ * @see TextAssist#setDelay(int)
+ */
+public abstract class AsyncTextAssistContentProvider extends TextAssistContentProvider {
+
+	/**
+	 * Provides the content. This method is called from a worker thread.
+	 *
+	 * @param entry text typed by the user
+	 * @param query the query, which tells if the result is still expected
+	 * @return a list of String that contains propositions for the entry typed
+	 *         by the user (the result is ignored if the query has been
+	 *         cancelled)
+	 */
+	public abstract List<String> getContent(final String entry, final TextAssistQuery query);
+
+	/**
+	 * Provides the content synchronously
+	 *
+	 * @see org.mihalis.opal.textAssist.TextAssistContentProvider#getContent(java.lang.String)
+	 */
+	@Override
+	public List<String> getContent(final String entry) {
+		return getContent(entry, new TextAssistQuery(entry));
+	}
+
+}
@@ -0,0 +1,489 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Laurent CARON
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Laurent CARON (laurent.caron at gmail dot com) - initial API and implementation
+ *******************************************************************************/
+package org.mihalis.opal.textAssist;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.eclipse.swt.SWT;
+
+/**
+ * This content provider proposes the values that contain the text typed by the
+ * user, anywhere in the value, and tolerates typos.
+ * <p>
+ * The values are indexed once by trigrams (sequences of 3 characters): for
+ * each trigram, the index stores the sorted positions of the values that
+ * contain it. A query only examines the values that share enough trigrams
+ * with the typed text, and ranks them:
+ * <ol>
+ * <li>values that contain the text (the earlier the better, so values that
+ * start with the text come first)</li>
+ * <li>values that contain the characters of the text in the same order (like
+ * "txtasst" in "TextAssist")</li>
+ * <li>values that contain the text with at most <code>maxErrors</code> typos
+ * (insertions, deletions or substitutions of a character)</li>
+ * </ol>
+ * The search stops as soon as <code>getMaxNumberOfLines()</code> values that
+ * start with the text have been found. Texts shorter than 3 characters have no
+ * trigram: for them, the values are scanned.
+ * </p>
+ * <p>
+ * Memory: the values are not copied. For each value, the index uses 2
+ * references and 4 bytes per distinct trigram of the value. A normalized copy
+ * of the value is created only when case or accents must be removed.
+ * </p>
+ */
+public class FuzzyTextAssistContentProvider extends TextAssistContentProvider {
+
+	private static final int SUBSEQUENCE = 1000;
+	private static final int TYPO = 2000;
+	private static final int NO_MATCH = Integer.MAX_VALUE;
+
+	private final boolean ignoreCase;
+	private final boolean ignoreAccents;
+	private final String[] keys;
+	private final String[] values;
+	private final TrigramTable trigrams;
+	private final int[][] postings;
+	private volatile int maxErrors;
+
+	/**
+	 * Constructor. Case and accents are ignored, one typo is tolerated.
+	 *
+	 * @param values values proposed by the provider
+	 */
+	public FuzzyTextAssistContentProvider(final Collection<String> values) {
+		this(values.toArray(new String[values.size()]), true, true);
+	}
+
+	/**
+	 * Constructor. One typo is tolerated.
+	 *
+	 * @param values values proposed by the provider (the array is not modified)
+	 * @param ignoreCase if <code>true</code>, the case is ignored
+	 * @param ignoreAccents if <code>true</code>, accents are ignored
+	 *
+	 * @exception IllegalArgumentException
+	 *                <ul>
+	 *                <li>ERROR_NULL_ARGUMENT - if the values are null</li>
+	 *                </ul>
+	 */
+	public FuzzyTextAssistContentProvider(final String[] values, final boolean ignoreCase, final boolean ignoreAccents) {
+		if (values == null) {
+			SWT.error(SWT.ERROR_NULL_ARGUMENT);
+		}
+		this.ignoreCase = ignoreCase;
+		this.ignoreAccents = ignoreAccents;
+		this.maxErrors = 1;
+
+		final int size = values.length;
+		this.values = Arrays.copyOf(values, size);
+		this.keys = new String[size];
+		for (int i = 0; i < size; i++) {
+			this.keys[i] = TextNormalizer.normalize(values[i], ignoreCase, ignoreAccents);
+		}
+
+		// First pass: count the values of each trigram
+		this.trigrams = new TrigramTable();
+		int[] counts = new int[16];
+		for (int i = 0; i < size; i++) {
+			for (final long trigram : getTrigrams(this.keys[i])) {
+				final int slot = this.trigrams.add(trigram);
+				if (slot >= counts.length) {
+					counts = Arrays.copyOf(counts, counts.length * 2);
+				}
+				counts[slot]++;
+			}
+		}
+
+		// Second pass: fill the postings, which are sorted by construction
+		this.postings = new int[this.trigrams.size()][];
+		for (int i = 0; i < this.postings.length; i++) {
+			this.postings[i] = new int[counts[i]];
+		}
+		final int[] filled = new int[this.postings.length];
+		for (int i = 0; i < size; i++) {
+			for (final long trigram : getTrigrams(this.keys[i])) {
+				final int slot = this.trigrams.get(trigram);
+				this.postings[slot][filled[slot]++] = i;
+			}
+		}
+	}
+
+	/**
+	 * @see org.mihalis.opal.textAssist.TextAssistContentProvider#getContent(java.lang.String)
+	 */
+	@Override
+	public List<String> getContent(final String entry) {
+		return getContent(entry, getMaxNumberOfLines());
+	}
+
+	/**
+	 * Returns the values that match a given text
+	 *
+	 * @param entry text typed by the user
+	 * @param maxNumberOfResults maximum number of values returned
+	 * @return the best matches, best first
+	 */
+	public List<String> getContent(final String entry, final int maxNumberOfResults) {
+		if (entry == null || entry.length() == 0 || maxNumberOfResults <= 0) {
+			return new ArrayList<String>();
+		}
+		final String query = TextNormalizer.normalize(entry, this.ignoreCase, this.ignoreAccents);
+		final Ranking ranking = new Ranking(maxNumberOfResults);
+		final long[] queryTrigrams = getTrigrams(query);
+		if (queryTrigrams.length == 0) {
+			for (int i = 0; i < this.keys.length && !ranking.isComplete(); i++) {
+				ranking.offer(i, score(this.keys[i], query, 0));
+			}
+			return ranking.getValues(this.values);
+		}
+
+		// Count, for each value, the number of trigrams shared with the query
+		int total = 0;
+		final int[][] lists = new int[queryTrigrams.length][];
+		for (int i = 0; i < queryTrigrams.length; i++) {
+			final int slot = this.trigrams.get(queryTrigrams[i]);
+			lists[i] = slot < 0 ? new int[0] : this.postings[slot];
+			total += lists[i].length;
+		}
+		final int[] candidates = new int[total];
+		int position = 0;
+		for (final int[] list : lists) {
+			System.arraycopy(list, 0, candidates, position, list.length);
+			position += list.length;
+		}
+		Arrays.sort(candidates);
+
+		// Each typo removes at most 3 trigrams
+		final int errors = this.maxErrors;
+		final int threshold = Math.max(1, queryTrigrams.length - 3 * errors);
+
+		// Group the candidates by number of shared trigrams: a value that
+		// contains the query shares all its trigrams, so it is examined first
+		final int[][] groups = new int[queryTrigrams.length + 1][];
+		final int[] groupSizes = new int[queryTrigrams.length + 1];
+		for (int i = 0; i < total;) {
+			int j = i + 1;
+			while (j < total && candidates[j] == candidates[i]) {
+				j++;
+			}
+			final int shared = j - i;
+			if (shared >= threshold) {
+				if (groups[shared] == null) {
+					groups[shared] = new int[16];
+				} else if (groupSizes[shared] == groups[shared].length) {
+					groups[shared] = Arrays.copyOf(groups[shared], groupSizes[shared] * 2);
+				}
+				groups[shared][groupSizes[shared]++] = candidates[i];
+			}
+			i = j;
+		}
+
+		for (int shared = queryTrigrams.length; shared >= threshold && !ranking.isComplete(); shared--) {
+			for (int i = 0; i < groupSizes[shared] && !ranking.isComplete(); i++) {
+				final int index = groups[shared][i];
+				ranking.offer(index, score(this.keys[index], query, errors));
+			}
+		}
+		return ranking.getValues(this.values);
+	}
+
+	/**
+	 * @see org.mihalis.opal.textAssist.TextAssistContentProvider#matches(java.lang.String,
+	 *      java.lang.String)
+	 */
+	@Override
+	public boolean matches(final String value, final String entry) {
+		final String key = TextNormalizer.normalize(value, this.ignoreCase, this.ignoreAccents);
+		final String query = TextNormalizer.normalize(entry, this.ignoreCase, this.ignoreAccents);
+		return score(key, query, query.length() < 3 ? 0 : this.maxErrors) != NO_MATCH;
+	}
+
+	/**
+	 * A value may match an entry with a typo and not match the entries it
+	 * starts with ("xbcd" matches "abcd", but not "abc"), so the propositions
+	 * of an entry can not be computed from the propositions of a shorter
+	 * entry.
+	 *
+	 * @see org.mihalis.opal.textAssist.TextAssistContentProvider#canNarrow()
+	 */
+	@Override
+	public boolean canNarrow() {
+		return false;
+	}
+
+	/**
+	 * @return the number of indexed values
+	 */
+	public int size() {
+		return this.values.length;
+	}
+
+	/**
+	 * @return the maximum number of typos tolerated in the text typed by the
+	 *         user
+	 */
+	public int getMaxErrors() {
+		return this.maxErrors;
+	}
+
+	/**
+	 * @param maxErrors the maximum number of typos tolerated in the text typed
+	 *            by the user (0 to disable the fuzzy matching)
+	 *
+	 * @exception IllegalArgumentException
+	 *                <ul>
+	 *                <li>ERROR_INVALID_ARGUMENT - if the value is negative</li>
+	 *                </ul>
+	 */
+	public void setMaxErrors(final int maxErrors) {
+		if (maxErrors < 0) {
+			SWT.error(SWT.ERROR_INVALID_ARGUMENT);
+		}
+		this.maxErrors = maxErrors;
+	}
+
+	/**
+	 * @param key normalized value
+	 * @param query normalized text typed by the user
+	 * @param errors maximum number of typos
+	 * @return the score of the value (the lower the better), or
+	 *         <code>NO_MATCH</code>
+	 */
+	private static int score(final String key, final String query, final int errors) {
+		final int index = key.indexOf(query);
+		if (index >= 0) {
+			return Math.min(index, SUBSEQUENCE - 1);
+		}
+		final int gaps = getSubsequenceGaps(key, query);
+		if (gaps >= 0) {
+			return SUBSEQUENCE + Math.min(gaps, TYPO - SUBSEQUENCE - 1);
+		}
+		if (errors > 0) {
+			final int distance = getInfixDistance(key, query, errors);
+			if (distance <= errors) {
+				return TYPO + distance;
+			}
+		}
+		return NO_MATCH;
+	}
+
+	/**
+	 * @return the number of characters between the first and the last
+	 *         character of the query in the key, minus the length of the
+	 *         query, or -1 if the key does not contain the characters of the
+	 *         query in the same order
+	 */
+	private static int getSubsequenceGaps(final String key, final String query) {
+		int first = -1;
+		int position = 0;
+		for (int i = 0; i < query.length(); i++) {
+			position = key.indexOf(query.charAt(i), position);
+			if (position < 0) {
+				return -1;
+			}
+			if (first < 0) {
+				first = position;
+			}
+			position++;
+		}
+		return position - first - query.length();
+	}
+
+	/**
+	 * Computes the smallest edit distance between the query and any part of
+	 * the key
+	 *
+	 * @param key normalized value
+	 * @param query normalized text typed by the user
+	 * @param errors maximum number of typos: the computation stops when this
+	 *            number is exceeded
+	 * @return the distance, or a number greater than <code>errors</code>
+	 */
+	private static int getInfixDistance(final String key, final String query, final int errors) {
+		final int length = query.length();
+		int[] previous = new int[length + 1];
+		int[] current = new int[length + 1];
+		for (int j = 0; j <= length; j++) {
+			previous[j] = j;
+		}
+		int best = previous[length];
+		for (int i = 1; i <= key.length(); i++) {
+			// A match can start anywhere in the key
+			current[0] = 0;
+			final char c = key.charAt(i - 1);
+			for (int j = 1; j <= length; j++) {
+				final int substitution = previous[j - 1] + (c == query.charAt(j - 1) ? 0 : 1);
+				current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+			}
+			best = Math.min(best, current[length]);
+			if (best == 0) {
+				return 0;
+			}
+			final int[] temp = previous;
+			previous = current;
+			current = temp;
+		}
+		return best;
+	}
+
+	/**
+	 * @param key normalized text
+	 * @return the distinct trigrams of the text, each one packed in a long
+	 */
+	private static long[] getTrigrams(final String key) {
+		final int count = key.length() - 2;
+		if (count <= 0) {
+			return new long[0];
+		}
+		final long[] result = new long[count];
+		for (int i = 0; i < count; i++) {
+			result[i] = (long) key.charAt(i) << 32 | (long) key.charAt(i + 1) << 16 | key.charAt(i + 2);
+		}
+		Arrays.sort(result);
+		int distinct = 1;
+		for (int i = 1; i < count; i++) {
+			if (result[i] != result[distinct - 1]) {
+				result[distinct++] = result[i];
+			}
+		}
+		return distinct == count ? result : Arrays.copyOf(result, distinct);
+	}
+
+	/**
+	 * Open addressing hash table that gives a slot number to each trigram,
+	 * without boxing the trigrams
+	 */
+	private static class TrigramTable {
+		private static final long EMPTY = -1L;
+		private long[] trigrams;
+		private int[] slots;
+		private int size;
+
+		TrigramTable() {
+			this.trigrams = new long[64];
+			Arrays.fill(this.trigrams, EMPTY);
+			this.slots = new int[64];
+		}
+
+		int size() {
+			return this.size;
+		}
+
+		/**
+		 * @return the slot of the trigram, -1 if the trigram is unknown
+		 */
+		int get(final long trigram) {
+			final int mask = this.trigrams.length - 1;
+			int i = hash(trigram) & mask;
+			while (this.trigrams[i] != EMPTY) {
+				if (this.trigrams[i] == trigram) {
+					return this.slots[i];
+				}
+				i = i + 1 & mask;
+			}
+			return -1;
+		}
+
+		/**
+		 * @return the slot of the trigram, which is created if needed
+		 */
+		int add(final long trigram) {
+			final int mask = this.trigrams.length - 1;
+			int i = hash(trigram) & mask;
+			while (this.trigrams[i] != EMPTY) {
+				if (this.trigrams[i] == trigram) {
+					return this.slots[i];
+				}
+				i = i + 1 & mask;
+			}
+			this.trigrams[i] = trigram;
+			this.slots[i] = this.size;
+			this.size++;
+			if (this.size * 2 > this.trigrams.length) {
+				grow();
+			}
+			return this.size - 1;
+		}
+
+		private void grow() {
+			final long[] oldTrigrams = this.trigrams;
+			final int[] oldSlots = this.slots;
+			this.trigrams = new long[oldTrigrams.length * 2];
+			Arrays.fill(this.trigrams, EMPTY);
+			this.slots = new int[oldSlots.length * 2];
+			final int mask = this.trigrams.length - 1;
+			for (int j = 0; j < oldTrigrams.length; j++) {
+				if (oldTrigrams[j] != EMPTY) {
+					int i = hash(oldTrigrams[j]) & mask;
+					while (this.trigrams[i] != EMPTY) {
+						i = i + 1 & mask;
+					}
+					this.trigrams[i] = oldTrigrams[j];
+					this.slots[i] = oldSlots[j];
+				}
+			}
+		}
+
+		private static int hash(final long trigram) {
+			final long h = trigram * 0x9E3779B97F4A7C15L;
+			return (int) (h ^ h >>> 32);
+		}
+	}
+
+	/**
+	 * The best values found so far, sorted by score
+	 */
+	private static class Ranking {
+		private final int[] indexes;
+		private final int[] scores;
+		private int size;
+
+		Ranking(final int capacity) {
+			this.indexes = new int[capacity];
+			this.scores = new int[capacity];
+		}
+
+		void offer(final int index, final int score) {
+			if (score == NO_MATCH || this.size == this.scores.length && score >= this.scores[this.size - 1]) {
+				return;
+			}
+			int position = this.size == this.scores.length ? this.size - 1 : this.size++;
+			while (position > 0 && this.scores[position - 1] > score) {
+				this.scores[position] = this.scores[position - 1];
+				this.indexes[position] = this.indexes[position - 1];
+				position--;
+			}
+			this.scores[position] = score;
+			this.indexes[position] = index;
+		}
+
+		/**
+		 * @return <code>true</code> if the ranking is full of values that
+		 *         start with the query, so no value can be better
+		 */
+		boolean isComplete() {
+			return this.size == this.scores.length && this.scores[this.size - 1] == 0;
+		}
+
+		List<String> getValues(final String[] values) {
+			final List<String> result = new ArrayList<String>(this.size);
+			for (int i = 0; i < this.size; i++) {
+				result.add(values[this.indexes[i]]);
+			}
+			return result;
+		}
+	}
+
+}
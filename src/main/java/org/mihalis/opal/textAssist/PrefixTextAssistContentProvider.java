@@ -0,0 +1,310 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Laurent CARON
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Laurent CARON (laurent.caron at gmail dot com) - initial API and implementation
+ *******************************************************************************/
+package org.mihalis.opal.textAssist;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.eclipse.swt.SWT;
+
+/**
+ * This content provider proposes the values that start with the text typed by
+ * the user. The values are indexed once in a sorted array, so a query costs a
+ * binary search instead of a scan of all values: it is designed for lists of
+ * millions of values.
+ * <p>
+ * Case and accents can be ignored. When weights are given, the propositions
+ * are the values with the highest weights (the most frequent values for
+ * example); otherwise they are sorted in alphabetical order.
+ * </p>
+ * <p>
+ * Memory: the values are not copied, the index keeps a reference to each
+ * value. For each value, the index uses 2 references and, if weights are
+ * given, 12 bytes (the weight and a range maximum tree). A normalized copy of
+ * the value is created only when case or accents must be removed (a value
+ * already in lower case without accent is not copied).
+ * </p>
+ */
+public class PrefixTextAssistContentProvider extends TextAssistContentProvider {
+
+	private final boolean ignoreCase;
+	private final boolean ignoreAccents;
+	private final String[] keys;
+	private final String[] values;
+	private final float[] weights;
+	private final int[] maxTree;
+
+	/**
+	 * Constructor. Case and accents are ignored, the propositions are sorted in
+	 * alphabetical order.
+	 *
+	 * @param values values proposed by the provider
+	 */
+	public PrefixTextAssistContentProvider(final Collection<String> values) {
+		this(values.toArray(new String[values.size()]), null, true, true);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param values values proposed by the provider (the array is not modified)
+	 * @param weights weight of each value (the values with the highest weights
+	 *            are proposed first), or null to sort the propositions in
+	 *            alphabetical order
+	 * @param ignoreCase if <code>true</code>, the case is ignored
+	 * @param ignoreAccents if <code>true</code>, accents are ignored
+	 *
+	 * @exception IllegalArgumentException
+	 *                <ul>
+	 *                <li>ERROR_NULL_ARGUMENT - if the values are null</li>
+	 *                <li>ERROR_INVALID_ARGUMENT - if the number of weights is
+	 *                not the number of values</li>
+	 *                </ul>
+	 */
+	public PrefixTextAssistContentProvider(final String[] values, final float[] weights, final boolean ignoreCase, final boolean ignoreAccents) {
+		if (values == null) {
+			SWT.error(SWT.ERROR_NULL_ARGUMENT);
+		}
+		if (weights != null && weights.length != values.length) {
+			SWT.error(SWT.ERROR_INVALID_ARGUMENT);
+		}
+		this.ignoreCase = ignoreCase;
+		this.ignoreAccents = ignoreAccents;
+
+		final int size = values.length;
+		final String[] normalizedKeys = new String[size];
+		for (int i = 0; i < size; i++) {
+			normalizedKeys[i] = TextNormalizer.normalize(values[i], ignoreCase, ignoreAccents);
+		}
+
+		final int[] order = new int[size];
+		for (int i = 0; i < size; i++) {
+			order[i] = i;
+		}
+		sort(order, new int[size], 0, size, normalizedKeys);
+
+		this.keys = new String[size];
+		this.values = new String[size];
+		this.weights = weights == null ? null : new float[size];
+		for (int i = 0; i < size; i++) {
+			this.keys[i] = normalizedKeys[order[i]];
+			this.values[i] = values[order[i]];
+			if (weights != null) {
+				this.weights[i] = weights[order[i]];
+			}
+		}
+		this.maxTree = weights == null ? null : buildMaxTree(this.weights);
+	}
+
+	/**
+	 * @see org.mihalis.opal.textAssist.TextAssistContentProvider#getContent(java.lang.String)
+	 */
+	@Override
+	public List<String> getContent(final String entry) {
+		return getContent(entry, getMaxNumberOfLines());
+	}
+
+	/**
+	 * Returns the values that start with a given text
+	 *
+	 * @param entry text typed by the user
+	 * @param maxNumberOfResults maximum number of values returned
+	 * @return the values that start with the entry: the ones with the highest
+	 *         weights if weights have been given, the first ones in
+	 *         alphabetical order otherwise
+	 */
+	public List<String> getContent(final String entry, final int maxNumberOfResults) {
+		final List<String> result = new ArrayList<String>();
+		if (entry == null || maxNumberOfResults <= 0) {
+			return result;
+		}
+		final String prefix = TextNormalizer.normalize(entry, this.ignoreCase, this.ignoreAccents);
+		final int start = lowerBound(prefix);
+		final int end = endOfPrefix(prefix, start);
+		if (start >= end) {
+			return result;
+		}
+
+		if (this.weights == null) {
+			for (int i = start; i < end && result.size() < maxNumberOfResults; i++) {
+				result.add(this.values[i]);
+			}
+			return result;
+		}
+
+		// Best-first search: each range of the queue is represented by the
+		// index of its maximum weight
+		final PriorityQueue<int[]> ranges = new PriorityQueue<int[]>(16, new Comparator<int[]>() {
+			@Override
+			public int compare(final int[] first, final int[] second) {
+				final int comparison = Float.compare(PrefixTextAssistContentProvider.this.weights[second[2]], PrefixTextAssistContentProvider.this.weights[first[2]]);
+				return comparison != 0 ? comparison : first[2] - second[2];
+			}
+		});
+		ranges.add(new int[] { start, end, maxIndex(start, end) });
+		while (!ranges.isEmpty() && result.size() < maxNumberOfResults) {
+			final int[] range = ranges.poll();
+			final int best = range[2];
+			result.add(this.values[best]);
+			if (range[0] < best) {
+				ranges.add(new int[] { range[0], best, maxIndex(range[0], best) });
+			}
+			if (best + 1 < range[1]) {
+				ranges.add(new int[] { best + 1, range[1], maxIndex(best + 1, range[1]) });
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @see org.mihalis.opal.textAssist.TextAssistContentProvider#matches(java.lang.String,
+	 *      java.lang.String)
+	 */
+	@Override
+	public boolean matches(final String value, final String entry) {
+		final String key = TextNormalizer.normalize(value, this.ignoreCase, this.ignoreAccents);
+		return key.startsWith(TextNormalizer.normalize(entry, this.ignoreCase, this.ignoreAccents));
+	}
+
+	/**
+	 * @return the number of indexed values
+	 */
+	public int size() {
+		return this.values.length;
+	}
+
+	/**
+	 * @param prefix normalized prefix
+	 * @return the index of the first key greater or equal to the prefix
+	 */
+	private int lowerBound(final String prefix) {
+		int low = 0;
+		int high = this.keys.length;
+		while (low < high) {
+			final int middle = (low + high) >>> 1;
+			if (this.keys[middle].compareTo(prefix) < 0) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * @param prefix normalized prefix
+	 * @param start index of the first key that starts with the prefix
+	 * @return the index following the last key that starts with the prefix
+	 */
+	private int endOfPrefix(final String prefix, final int start) {
+		// The keys that start with the prefix are contiguous
+		int low = start;
+		int high = this.keys.length;
+		while (low < high) {
+			final int middle = (low + high) >>> 1;
+			if (this.keys[middle].startsWith(prefix)) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Build a segment tree that contains, for each node, the index of the
+	 * highest weight of its range
+	 *
+	 * @param weights sorted weights
+	 * @return the tree (leaves are stored from index <code>length</code>)
+	 */
+	private static int[] buildMaxTree(final float[] weights) {
+		final int size = weights.length;
+		final int[] tree = new int[2 * size];
+		for (int i = 0; i < size; i++) {
+			tree[size + i] = i;
+		}
+		for (int i = size - 1; i > 0; i--) {
+			tree[i] = best(weights, tree[2 * i], tree[2 * i + 1]);
+		}
+		return tree;
+	}
+
+	private static int best(final float[] weights, final int first, final int second) {
+		if (weights[first] != weights[second]) {
+			return weights[first] > weights[second] ? first : second;
+		}
+		return Math.min(first, second);
+	}
+
+	/**
+	 * @return the index of the highest weight between start (inclusive) and
+	 *         end (exclusive)
+	 */
+	private int maxIndex(final int start, final int end) {
+		final int size = this.weights.length;
+		int result = start;
+		int low = start + size;
+		int high = end + size;
+		while (low < high) {
+			if ((low & 1) == 1) {
+				result = best(this.weights, result, this.maxTree[low++]);
+			}
+			if ((high & 1) == 1) {
+				result = best(this.weights, result, this.maxTree[--high]);
+			}
+			low >>= 1;
+			high >>= 1;
+		}
+		return result;
+	}
+
+	/**
+	 * Merge sort of indices by key, without boxing the indices
+	 */
+	private static void sort(final int[] order, final int[] buffer, final int from, final int to, final String[] keys) {
+		if (to - from < 2) {
+			return;
+		}
+		if (to - from <= 16) {
+			for (int i = from + 1; i < to; i++) {
+				final int index = order[i];
+				int j = i - 1;
+				while (j >= from && keys[order[j]].compareTo(keys[index]) > 0) {
+					order[j + 1] = order[j];
+					j--;
+				}
+				order[j + 1] = index;
+			}
+			return;
+		}
+		final int middle = (from + to) >>> 1;
+		sort(order, buffer, from, middle, keys);
+		sort(order, buffer, middle, to, keys);
+		if (keys[order[middle - 1]].compareTo(keys[order[middle]]) <= 0) {
+			return;
+		}
+		System.arraycopy(order, from, buffer, from, to - from);
+		int left = from;
+		int right = middle;
+		for (int i = from; i < to; i++) {
+			if (right >= to || left < middle && keys[buffer[left]].compareTo(keys[buffer[right]]) <= 0) {
+				order[i] = buffer[left++];
+			} else {
+				order[i] = buffer[right++];
+			}
+		}
+	}
+
+}
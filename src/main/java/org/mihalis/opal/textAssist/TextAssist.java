@@ -11,7 +11,15 @@
  *******************************************************************************/
 package org.mihalis.opal.textAssist;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.SWTException;
@@ -20,11 +28,13 @@ import org.eclipse.swt.events.SelectionListener;
 import org.eclipse.swt.events.VerifyListener;
 import org.eclipse.swt.graphics.Color;
 import org.eclipse.swt.graphics.Font;
+import org.eclipse.swt.graphics.GC;
 import org.eclipse.swt.graphics.Point;
 import org.eclipse.swt.graphics.Rectangle;
 import org.eclipse.swt.layout.FillLayout;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.Event;
 import org.eclipse.swt.widgets.Listener;
 import org.eclipse.swt.widgets.Shell;
@@ -43,11 +53,25 @@ import org.eclipse.swt.widgets.Widget;
 public class TextAssist extends Composite {
 
 	private static final String SETTEXT_KEY = "org.mihalis.opal.textAssist.TextAssist.settext";
+	private static final int NUMBER_OF_WORKERS = 2;
+	private static final long WORKER_KEEP_ALIVE = 60;
 	private final Text text;
 	private final Shell popup;
 	private final Table table;
 	private TextAssistContentProvider contentProvider;
-	private int numberOfLines;
+	private volatile int numberOfLines;
+	private int delay;
+	private String pendingEntry;
+	private TextAssistQuery currentQuery;
+	private final Runnable delayedQuery;
+	private int cacheSize;
+	private Map<String, List<String>> cache;
+	private int rowHeight = -1;
+	private int horizontalPadding;
+	private int verticalPadding;
+	private Point popupAnchor;
+
+	private static ExecutorService executor;
 
 	/**
 	 * Constructs a new instance of this class given its parent and a style
@@ -104,6 +128,18 @@ public class TextAssist extends Composite {
 		popup.setLayout(new FillLayout());
 		table = new Table(popup, SWT.SINGLE);
 
+		delayedQuery = new Runnable() {
+			@Override
+			public void run() {
+				if (isDisposed() || pendingEntry == null) {
+					return;
+				}
+				final String entry = pendingEntry;
+				pendingEntry = null;
+				runQuery(entry);
+			}
+		};
+
 		addTextListener();
 		addTableLittle();
 
@@ -112,7 +148,7 @@ public class TextAssist extends Composite {
 			getShell().addListener(event, new Listener() {
 				@Override
 				public void handleEvent(final Event event) {
-					popup.setVisible(false);
+					hidePopup();
 				}
 			});
 		}
@@ -123,6 +159,12 @@ public class TextAssist extends Composite {
 		text.addListener(SWT.KeyDown, createKeyDownListener());
 		text.addListener(SWT.Modify, createModifyListener());
 		text.addListener(SWT.FocusOut, createFocusOutListener());
+		text.addListener(SWT.Dispose, new Listener() {
+			@Override
+			public void handleEvent(final Event event) {
+				cancelQuery();
+			}
+		});
 	}
 
 	private void addTableLittle() {
@@ -130,14 +172,14 @@ public class TextAssist extends Composite {
 			@Override
 			public void handleEvent(final Event event) {
 				text.setText(table.getSelection()[0].getText());
-				popup.setVisible(false);
+				hidePopup();
 			}
 		});
 		table.addListener(SWT.KeyDown, new Listener() {
 			@Override
 			public void handleEvent(final Event event) {
 				if (event.keyCode == SWT.ESC) {
-					popup.setVisible(false);
+					hidePopup();
 				}
 			}
 		});
@@ -170,11 +212,11 @@ public class TextAssist extends Composite {
 				case SWT.KEYPAD_CR:
 					if (popup.isVisible() && table.getSelectionIndex() != -1) {
 						text.setText(table.getSelection()[0].getText());
-						popup.setVisible(false);
+						hidePopup();
 					}
 					break;
 				case SWT.ESC:
-					popup.setVisible(false);
+					hidePopup();
 					break;
 				}
 			}
@@ -190,55 +232,287 @@ public class TextAssist extends Composite {
 			public void handleEvent(final Event event) {
 				if (text.getData(SETTEXT_KEY) != null && Boolean.TRUE.equals(text.getData(SETTEXT_KEY))) {
 					text.setData(SETTEXT_KEY, null);
+					cancelQuery();
 					return;
 				}
 				text.setData(SETTEXT_KEY, null);
 
 				final String string = text.getText();
+				cancelQuery();
 				if (string.length() == 0) {
 					popup.setVisible(false);
 					return;
 				}
 
-				List<String> values = contentProvider.getContent(string);
-				if (values == null || values.isEmpty()) {
-					popup.setVisible(false);
+				final List<String> cachedPropositions = getCachedPropositions(string);
+				if (cachedPropositions != null) {
+					showPropositions(cachedPropositions);
 					return;
 				}
 
-				if (values.size() > numberOfLines) {
-					values = values.subList(0, numberOfLines);
+				if (delay > 0) {
+					pendingEntry = string;
+					getDisplay().timerExec(delay, delayedQuery);
+				} else {
+					runQuery(string);
 				}
+			}
+		};
+	}
 
-				table.removeAll();
-				final int numberOfRows = Math.min(values.size(), numberOfLines);
-				for (int i = 0; i < numberOfRows; i++) {
-					final TableItem tableItem = new TableItem(table, SWT.NONE);
-					tableItem.setText(values.get(i));
+	/**
+	 * Ask the content provider for the propositions of an entry. Asynchronous
+	 * providers are called from a worker thread, and their result is displayed
+	 * only if no other query has been sent in the meantime.
+	 *
+	 * @param entry text typed by the user
+	 */
+	private void runQuery(final String entry) {
+		if (!(contentProvider instanceof AsyncTextAssistContentProvider)) {
+			final List<String> values = contentProvider.getContent(entry);
+			cachePropositions(entry, values);
+			showPropositions(values);
+			return;
+		}
+
+		final AsyncTextAssistContentProvider provider = (AsyncTextAssistContentProvider) contentProvider;
+		final TextAssistQuery query = new TextAssistQuery(entry);
+		final Display display = getDisplay();
+		currentQuery = query;
+		getExecutor().execute(new Runnable() {
+			@Override
+			public void run() {
+				if (query.isCancelled()) {
+					return;
+				}
+				final List<String> values = provider.getContent(entry, query);
+				if (query.isCancelled() || display.isDisposed()) {
+					return;
+				}
+				try {
+					display.asyncExec(new Runnable() {
+						@Override
+						public void run() {
+							if (isDisposed() || query != currentQuery || query.isCancelled()) {
+								return;
+							}
+							currentQuery = null;
+							cachePropositions(entry, values);
+							showPropositions(values);
+						}
+					});
+				} catch (final SWTException e) {
+					// The display has been disposed in the meantime
+				}
+			}
+		});
+	}
+
+	/**
+	 * Find the propositions of an entry in the cache. If the entry has not been
+	 * cached, the propositions of the longest cached prefix of the entry are
+	 * narrowed with <code>TextAssistContentProvider.matches</code>, provided
+	 * that this list is complete (it has not been truncated to the number of
+	 * lines) and that the content provider allows it (see
+	 * <code>TextAssistContentProvider.canNarrow</code>).
+	 *
+	 * @param entry text typed by the user
+	 * @return the propositions, or null if the content provider must be called
+	 */
+	private List<String> getCachedPropositions(final String entry) {
+		if (cache == null) {
+			return null;
+		}
+		final List<String> propositions = cache.get(entry);
+		if (propositions != null || !contentProvider.canNarrow()) {
+			return propositions;
+		}
+		for (int length = entry.length() - 1; length > 0; length--) {
+			final List<String> superset = cache.get(entry.substring(0, length));
+			if (superset == null) {
+				continue;
+			}
+			if (superset.size() >= numberOfLines) {
+				// Values beyond the number of lines are missing
+				return null;
+			}
+			final List<String> narrowed = new ArrayList<String>();
+			for (final String value : superset) {
+				if (contentProvider.matches(value, entry)) {
+					narrowed.add(value);
 				}
+			}
+			cache.put(entry, narrowed);
+			return narrowed;
+		}
+		return null;
+	}
 
-				final Point point = text.toDisplay(text.getLocation().x, text.getSize().y + text.getBorderWidth() - 3);
-				int x = point.x;
-				int y = point.y;
+	/**
+	 * Store the propositions returned by the content provider
+	 *
+	 * @param entry text typed by the user
+	 * @param propositions propositions for this entry
+	 */
+	private void cachePropositions(final String entry, final List<String> propositions) {
+		if (cache != null) {
+			cache.put(entry, propositions == null ? new ArrayList<String>() : new ArrayList<String>(propositions));
+		}
+	}
 
-				final Rectangle displayRect = getMonitor().getClientArea();
-				final Rectangle parentRect = getDisplay().map(getParent(), null, getBounds());
-				popup.pack();
-				final int width = popup.getBounds().width;
-				final int height = popup.getBounds().height;
+	/**
+	 * Cancel the query in progress and the query waiting for the end of the
+	 * delay
+	 */
+	private void cancelQuery() {
+		if (currentQuery != null) {
+			currentQuery.cancel();
+			currentQuery = null;
+		}
+		if (pendingEntry != null) {
+			pendingEntry = null;
+			if (!getDisplay().isDisposed()) {
+				getDisplay().timerExec(-1, delayedQuery);
+			}
+		}
+	}
 
-				if (y + height > displayRect.y + displayRect.height) {
-					y = parentRect.y - height;
-				}
-				if (x + width > displayRect.x + displayRect.width) {
-					x = displayRect.x + displayRect.width - width;
+	/**
+	 * Hide the popup and forget the pending queries
+	 */
+	private void hidePopup() {
+		cancelQuery();
+		popup.setVisible(false);
+	}
+
+	/**
+	 * @return the pool of threads that run the asynchronous content providers.
+	 *         The number of threads is bounded: the queries waiting for a
+	 *         thread are skipped if they have been superseded (cancelled) in
+	 *         the meantime, and idle threads are stopped.
+	 */
+	private static synchronized ExecutorService getExecutor() {
+		if (executor == null) {
+			final ThreadPoolExecutor pool = new ThreadPoolExecutor(NUMBER_OF_WORKERS, NUMBER_OF_WORKERS, WORKER_KEEP_ALIVE, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+				@Override
+				public Thread newThread(final Runnable runnable) {
+					final Thread thread = new Thread(runnable, "Opal TextAssist worker");
+					thread.setDaemon(true);
+					return thread;
 				}
+			});
+			pool.allowCoreThreadTimeOut(true);
+			executor = pool;
+		}
+		return executor;
+	}
+
+	/**
+	 * Display the propositions in the popup
+	 *
+	 * @param propositions propositions returned by the content provider
+	 */
+	private void showPropositions(final List<String> propositions) {
+		List<String> values = propositions;
+		if (values == null || values.isEmpty()) {
+			popup.setVisible(false);
+			return;
+		}
+
+		if (values.size() > numberOfLines) {
+			values = values.subList(0, numberOfLines);
+		}
 
-				popup.setLocation(x, y);
-				popup.setVisible(true);
+		updateRows(values);
+		final Point size = computePopupSize(values);
+		final Point anchor = text.toDisplay(text.getLocation().x, text.getSize().y + text.getBorderWidth() - 3);
+		final Point currentSize = popup.getSize();
+		if (size.x != currentSize.x || size.y != currentSize.y) {
+			popup.setSize(size);
+			popupAnchor = null;
+		}
+		if (!anchor.equals(popupAnchor)) {
+			popupAnchor = anchor;
+			placePopup(anchor, size);
+		}
+		if (!popup.isVisible()) {
+			popup.setVisible(true);
+		}
+	}
 
+	/**
+	 * Update the rows of the table in place: existing rows are reused, and
+	 * only the difference in the number of rows is created or removed
+	 *
+	 * @param values the propositions to display
+	 */
+	private void updateRows(final List<String> values) {
+		final int numberOfRows = values.size();
+		final int currentNumberOfRows = table.getItemCount();
+		if (currentNumberOfRows > numberOfRows) {
+			table.remove(numberOfRows, currentNumberOfRows - 1);
+		}
+		for (int i = 0; i < numberOfRows; i++) {
+			final String value = values.get(i);
+			if (i < currentNumberOfRows) {
+				final TableItem tableItem = table.getItem(i);
+				if (!value.equals(tableItem.getText())) {
+					tableItem.setText(value);
+				}
+			} else {
+				new TableItem(table, SWT.NONE).setText(value);
 			}
-		};
+		}
+		table.deselectAll();
+	}
+
+	/**
+	 * Compute the size of the popup from the width of the texts and the height
+	 * of a row. The table is measured (by a full layout) only the first time,
+	 * to find the paddings around the texts.
+	 *
+	 * @param values the displayed propositions
+	 * @return the size of the popup
+	 */
+	private Point computePopupSize(final List<String> values) {
+		final GC gc = new GC(table);
+		int textWidth = 0;
+		for (final String value : values) {
+			textWidth = Math.max(textWidth, gc.textExtent(value).x);
+		}
+		gc.dispose();
+
+		if (rowHeight < 0) {
+			rowHeight = table.getItemHeight();
+			final Point tableSize = table.computeSize(SWT.DEFAULT, SWT.DEFAULT);
+			final Rectangle trim = popup.computeTrim(0, 0, 0, 0);
+			horizontalPadding = tableSize.x - textWidth + trim.width;
+			verticalPadding = tableSize.y - values.size() * rowHeight + trim.height;
+		}
+		return new Point(textWidth + horizontalPadding, values.size() * rowHeight + verticalPadding);
+	}
+
+	/**
+	 * Move the popup below the text, or above the text if there is not enough
+	 * space below
+	 *
+	 * @param anchor location of the bottom left corner of the text
+	 * @param size size of the popup
+	 */
+	private void placePopup(final Point anchor, final Point size) {
+		int x = anchor.x;
+		int y = anchor.y;
+
+		final Rectangle displayRect = getMonitor().getClientArea();
+		if (y + size.y > displayRect.y + displayRect.height) {
+			final Rectangle parentRect = getDisplay().map(getParent(), null, getBounds());
+			y = parentRect.y - size.y;
+		}
+		if (x + size.x > displayRect.x + displayRect.width) {
+			x = displayRect.x + displayRect.width - size.x;
+		}
+
+		popup.setLocation(x, y);
 	}
 
 	/**
@@ -259,7 +533,7 @@ public class TextAssist extends Composite {
 						}
 						final Control control = TextAssist.this.getDisplay().getFocusControl();
 						if (control == null || control != text && control != table) {
-							popup.setVisible(false);
+							hidePopup();
 						}
 					}
 				});
@@ -307,7 +581,10 @@ public class TextAssist extends Composite {
 	 */
 	public void setContentProvider(final TextAssistContentProvider contentProvider) {
 		checkWidget();
+		cancelQuery();
 		this.contentProvider = contentProvider;
+		this.contentProvider.setTextAssist(this);
+		clearCache();
 	}
 
 	/**
@@ -324,6 +601,130 @@ public class TextAssist extends Composite {
 	public void setNumberOfLines(final int numberOfLines) {
 		checkWidget();
 		this.numberOfLines = numberOfLines;
+		clearCache();
+	}
+
+	/**
+	 * @return the numberOfLines. This method can be called from any thread.
+	 */
+	int getMaxNumberOfLines() {
+		return numberOfLines;
+	}
+
+	/**
+	 * @return the delay (in milliseconds) between the last keystroke and the
+	 *         query sent to the content provider
+	 */
+	public int getDelay() {
+		checkWidget();
+		return delay;
+	}
+
+	/**
+	 * Sets the delay between the last keystroke and the query sent to the
+	 * content provider. While the user types faster than this delay, the
+	 * content provider is not called. With a value of 0 (the default value),
+	 * the content provider is called after each keystroke.
+	 *
+	 * @param delay the delay in milliseconds
+	 *
+	 * @exception IllegalArgumentException
+	 *                <ul>
+	 *                <li>ERROR_INVALID_ARGUMENT - if the delay is negative</li>
+	 *                </ul>
+	 * @exception SWTException
+	 *                <ul>
+	 *                <li>ERROR_WIDGET_DISPOSED - if the receiver has been
+	 *                disposed</li>
+	 *                <li>ERROR_THREAD_INVALID_ACCESS - if not called from the
+	 *                thread that created the receiver</li>
+	 *                </ul>
+	 */
+	public void setDelay(final int delay) {
+		checkWidget();
+		if (delay < 0) {
+			SWT.error(SWT.ERROR_INVALID_ARGUMENT);
+		}
+		this.delay = delay;
+	}
+
+	/**
+	 * @return the number of entries whose propositions are kept in the cache
+	 *         (0 if the cache is disabled)
+	 */
+	public int getCacheSize() {
+		checkWidget();
+		return cacheSize;
+	}
+
+	/**
+	 * Sets the number of entries whose propositions are kept in the cache. The
+	 * cache is disabled by default.
+	 * <p>
+	 * When the cache is enabled, the propositions of an entry already typed
+	 * (after a backspace for example) are taken from the cache. When the user
+	 * types more characters, the cached propositions of the shorter entry are
+	 * filtered with <code>TextAssistContentProvider.matches</code>, if they
+	 * have not been truncated to the number of lines. The content provider is
+	 * called only when the cache cannot answer.
+	 * </p>
+	 * <p>
+	 * The cache should only be enabled if the propositions returned by the
+	 * content provider for an entry do not change over time. Call
+	 * <code>clearCache()</code> when the values of the content provider
+	 * change.
+	 * </p>
+	 *
+	 * @param cacheSize the number of cached entries (0 to disable the cache)
+	 *
+	 * @exception IllegalArgumentException
+	 *                <ul>
+	 *                <li>ERROR_INVALID_ARGUMENT - if the size is negative</li>
+	 *                </ul>
+	 * @exception SWTException
+	 *                <ul>
+	 *                <li>ERROR_WIDGET_DISPOSED - if the receiver has been
+	 *                disposed</li>
+	 *                <li>ERROR_THREAD_INVALID_ACCESS - if not called from the
+	 *                thread that created the receiver</li>
+	 *                </ul>
+	 */
+	public void setCacheSize(final int cacheSize) {
+		checkWidget();
+		if (cacheSize < 0) {
+			SWT.error(SWT.ERROR_INVALID_ARGUMENT);
+		}
+		this.cacheSize = cacheSize;
+		if (cacheSize == 0) {
+			cache = null;
+			return;
+		}
+		cache = new LinkedHashMap<String, List<String>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<String, List<String>> eldest) {
+				return size() > TextAssist.this.cacheSize;
+			}
+		};
+	}
+
+	/**
+	 * Removes all the propositions kept in the cache
+	 *
+	 * @exception SWTException
+	 *                <ul>
+	 *                <li>ERROR_WIDGET_DISPOSED - if the receiver has been
+	 *                disposed</li>
+	 *                <li>ERROR_THREAD_INVALID_ACCESS - if not called from the
+	 *                thread that created the receiver</li>
+	 *                </ul>
+	 */
+	public void clearCache() {
+		checkWidget();
+		if (cache != null) {
+			cache.clear();
+		}
 	}
 
 	/**
@@ -675,6 +1076,7 @@ public class TextAssist extends Composite {
 		checkWidget();
 		text.setFont(font);
 		table.setFont(font);
+		rowHeight = -1;
 	}
 
 	/**
@@ -29,6 +29,40 @@ public abstract class TextAssistContentProvider {
 	 */
 	public abstract List<String> getContent(final String entry);
 
+	/**
+	 * Tells if a value proposed for an entry is still a proposition when the
+	 * user types more characters. This method is used by the cache of the
+	 * TextAssist widget (see <code>TextAssist.setCacheSize</code>) to narrow
+	 * the propositions of an entry without calling <code>getContent</code>
+	 * again. The default implementation checks that the value starts with the
+	 * entry, ignoring case: providers that match values differently should
+	 * override this method.
+	 *
+	 * @param value a value returned by <code>getContent</code> for a shorter
+	 *            entry
+	 * @param entry text typed by the user
+	 * @return <code>true</code> if the value is a proposition for the entry
+	 */
+	public boolean matches(final String value, final String entry) {
+		return value != null && value.regionMatches(true, 0, entry, 0, entry.length());
+	}
+
+	/**
+	 * Tells if the propositions of an entry can be computed from the
+	 * propositions of a shorter entry with <code>matches</code>. This is only
+	 * possible if every proposition for an entry is also a proposition for the
+	 * entries it starts with. The default implementation returns
+	 * <code>true</code>: providers that do not have this property (for
+	 * example providers that tolerate typos) must return <code>false</code>,
+	 * so that the TextAssist widget only uses the propositions cached for the
+	 * same entry.
+	 *
+	 * @return <code>true</code> if the propositions can be narrowed
+	 */
+	public boolean canNarrow() {
+		return true;
+	}
+
 	/**
 	 * @param textAssist the textAssist to set
 	 */
@@ -37,9 +71,10 @@ public abstract class TextAssistContentProvider {
 	}
 
 	/**
-	 * @return the max number of propositions.
+	 * @return the max number of propositions. This method can be called from
+	 *         any thread.
 	 */
 	protected int getMaxNumberOfLines() {
-		return this.textAssist.getNumberOfLines();
+		return this.textAssist.getMaxNumberOfLines();
 	}
 }
@@ -0,0 +1,56 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Laurent CARON
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Laurent CARON (laurent.caron at gmail dot com) - initial API and implementation
+ *******************************************************************************/
+package org.mihalis.opal.textAssist;
+
+/**
+ * Instances of this class represent a request of propositions sent to an
+ * asynchronous content provider. A query is cancelled as soon as the user
+ * types something else: long searches should call <code>isCancelled()</code>
+ * regularly and stop as soon as it returns <code>true</code>.
+ *
+ * @see AsyncTextAssistContentProvider
+ */
+public class TextAssistQuery {
+	private final String entry;
+	private volatile boolean cancelled;
+
+	/**
+	 * Constructor
+	 *
+	 * @param entry text typed by the user
+	 */
+	public TextAssistQuery(final String entry) {
+		this.entry = entry;
+	}
+
+	/**
+	 * @return the text typed by the user
+	 */
+	public String getEntry() {
+		return this.entry;
+	}
+
+	/**
+	 * @return <code>true</code> if the result of this query is no longer
+	 *         needed
+	 */
+	public boolean isCancelled() {
+		return this.cancelled;
+	}
+
+	/**
+	 * Cancel this query
+	 */
+	void cancel() {
+		this.cancelled = true;
+	}
+
+}
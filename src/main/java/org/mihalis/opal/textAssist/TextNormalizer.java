@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Laurent CARON
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Laurent CARON (laurent.caron at gmail dot com) - initial API and implementation
+ *******************************************************************************/
+package org.mihalis.opal.textAssist;
+
+import java.text.Normalizer;
+import java.util.Locale;
+
+/**
+ * This class converts the texts indexed by the content providers to a form
+ * where case and accents can be ignored
+ */
+final class TextNormalizer {
+
+	private TextNormalizer() {
+	}
+
+	/**
+	 * Normalize a text. When the text does not need to be changed (plain ASCII
+	 * text in lower case for example), the same instance is returned, so no
+	 * string is copied.
+	 *
+	 * @param text text to normalize
+	 * @param ignoreCase if <code>true</code>, the text is converted to lower
+	 *            case
+	 * @param ignoreAccents if <code>true</code>, accents and other diacritical
+	 *            marks are removed
+	 * @return the normalized text
+	 */
+	static String normalize(final String text, final boolean ignoreCase, final boolean ignoreAccents) {
+		if (text == null) {
+			return "";
+		}
+		if (!needsNormalization(text, ignoreCase, ignoreAccents)) {
+			return text;
+		}
+
+		String result = text;
+		if (ignoreAccents) {
+			final String decomposed = Normalizer.normalize(result, Normalizer.Form.NFD);
+			final StringBuilder sb = new StringBuilder(decomposed.length());
+			for (int i = 0; i < decomposed.length(); i++) {
+				final char c = decomposed.charAt(i);
+				if (Character.getType(c) != Character.NON_SPACING_MARK) {
+					sb.append(c);
+				}
+			}
+			result = sb.toString();
+		}
+		if (ignoreCase) {
+			result = result.toLowerCase(Locale.ROOT);
+		}
+		return result;
+	}
+
+	private static boolean needsNormalization(final String text, final boolean ignoreCase, final boolean ignoreAccents) {
+		for (int i = 0; i < text.length(); i++) {
+			final char c = text.charAt(i);
+			if (c >= 128) {
+				if (ignoreCase || ignoreAccents) {
+					return true;
+				}
+			} else if (ignoreCase && c >= 'A' && c <= 'Z') {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
@@ -0,0 +1,503 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Laurent CARON
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Laurent CARON (laurent.caron at gmail dot com) - initial API and implementation
+ *******************************************************************************/
+package org.mihalis.opal.utils;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * Instances of this class are lists backed by a balanced tree (a treap ordered
+ * by position).<br/>
+ * Positional access, insertion and removal cost O(log n), and the position of
+ * an element is found in O(log n) because elements are looked up by identity
+ * (not with <code>equals()</code>). When the same element is stored several
+ * times, the first occurrence is found in O(k log n), k being the number of
+ * occurrences. Iteration is done in O(n).
+ *
+ * @param <T> Type of objects stored in this list
+ */
+public class IndexedList<T> extends AbstractList<T> {
+
+	private static class Node<T> {
+		private T value;
+		private final int priority;
+		private int size;
+		private Node<T> left;
+		private Node<T> right;
+		private Node<T> parent;
+
+		private Node(final T value, final int priority) {
+			this.value = value;
+			this.priority = priority;
+			this.size = 1;
+		}
+	}
+
+	private final Random random;
+	private final Map<T, Node<T>> nodes;
+	private final Map<T, List<Node<T>>> duplicates;
+	private Node<T> root;
+
+	/**
+	 * Constructor
+	 */
+	public IndexedList() {
+		this.random = new Random();
+		this.nodes = new IdentityHashMap<T, Node<T>>();
+		this.duplicates = new IdentityHashMap<T, List<Node<T>>>();
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param collection initial content of the list
+	 */
+	public IndexedList(final Collection<? extends T> collection) {
+		this();
+		addAll(collection);
+	}
+
+	/**
+	 * @see java.util.AbstractList#get(int)
+	 */
+	@Override
+	public T get(final int index) {
+		return getNode(index).value;
+	}
+
+	/**
+	 * @see java.util.AbstractList#set(int, java.lang.Object)
+	 */
+	@Override
+	public T set(final int index, final T element) {
+		final Node<T> node = getNode(index);
+		final T previous = node.value;
+		unindex(node);
+		node.value = element;
+		index(node);
+		return previous;
+	}
+
+	/**
+	 * @see java.util.AbstractCollection#size()
+	 */
+	@Override
+	public int size() {
+		return size(this.root);
+	}
+
+	/**
+	 * @see java.util.AbstractList#add(int, java.lang.Object)
+	 */
+	@Override
+	public void add(final int index, final T element) {
+		checkPositionIndex(index);
+		final Node<T> node = createNode(element);
+		final Node<T>[] parts = split(this.root, index);
+		setRoot(merge(merge(parts[0], node), parts[1]));
+		this.modCount++;
+	}
+
+	/**
+	 * @see java.util.AbstractList#addAll(int, java.util.Collection)
+	 */
+	@Override
+	public boolean addAll(final int index, final Collection<? extends T> collection) {
+		checkPositionIndex(index);
+		if (collection.isEmpty()) {
+			return false;
+		}
+		final Node<T>[] parts = split(this.root, index);
+		setRoot(merge(merge(parts[0], build(collection)), parts[1]));
+		this.modCount++;
+		return true;
+	}
+
+	/**
+	 * @see java.util.AbstractCollection#addAll(java.util.Collection)
+	 */
+	@Override
+	public boolean addAll(final Collection<? extends T> collection) {
+		return addAll(size(), collection);
+	}
+
+	/**
+	 * @see java.util.AbstractList#remove(int)
+	 */
+	@Override
+	public T remove(final int index) {
+		if (index < 0 || index >= size()) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+		}
+		final Node<T>[] parts = split(this.root, index);
+		final Node<T>[] rest = split(parts[1], 1);
+		setRoot(merge(parts[0], rest[1]));
+		unindex(rest[0]);
+		this.modCount++;
+		return rest[0].value;
+	}
+
+	/**
+	 * @see java.util.AbstractCollection#remove(java.lang.Object)
+	 */
+	@Override
+	public boolean remove(final Object o) {
+		final int index = indexOf(o);
+		if (index == -1) {
+			return false;
+		}
+		remove(index);
+		return true;
+	}
+
+	/**
+	 * @see java.util.AbstractList#removeRange(int, int)
+	 */
+	@Override
+	protected void removeRange(final int fromIndex, final int toIndex) {
+		if (fromIndex >= toIndex) {
+			return;
+		}
+		final Node<T>[] parts = split(this.root, fromIndex);
+		final Node<T>[] rest = split(parts[1], toIndex - fromIndex);
+		setRoot(merge(parts[0], rest[1]));
+		for (final Node<T> node : nodesOf(rest[0])) {
+			unindex(node);
+		}
+		this.modCount++;
+	}
+
+	/**
+	 * @see java.util.AbstractList#clear()
+	 */
+	@Override
+	public void clear() {
+		this.root = null;
+		this.nodes.clear();
+		this.duplicates.clear();
+		this.modCount++;
+	}
+
+	/**
+	 * Returns the index of the first occurrence of an element. The element is
+	 * looked up by identity.
+	 *
+	 * @see java.util.AbstractList#indexOf(java.lang.Object)
+	 */
+	@Override
+	public int indexOf(final Object o) {
+		if (o == null) {
+			// null values are not indexed
+			int index = 0;
+			for (final T element : this) {
+				if (element == null) {
+					return index;
+				}
+				index++;
+			}
+			return -1;
+		}
+		final List<Node<T>> occurrences = this.duplicates.get(o);
+		if (occurrences != null) {
+			int index = Integer.MAX_VALUE;
+			for (final Node<T> node : occurrences) {
+				index = Math.min(index, rank(node));
+			}
+			return index;
+		}
+		final Node<T> node = this.nodes.get(o);
+		return node == null ? -1 : rank(node);
+	}
+
+	/**
+	 * @see java.util.AbstractCollection#contains(java.lang.Object)
+	 */
+	@Override
+	public boolean contains(final Object o) {
+		return indexOf(o) != -1;
+	}
+
+	/**
+	 * @see java.util.AbstractList#iterator()
+	 */
+	@Override
+	public Iterator<T> iterator() {
+		return new Iterator<T>() {
+			private Node<T> next = first(IndexedList.this.root);
+			private int nextIndex = 0;
+			private int lastIndex = -1;
+			private int expectedModCount = IndexedList.this.modCount;
+
+			@Override
+			public boolean hasNext() {
+				return this.next != null;
+			}
+
+			@Override
+			public T next() {
+				checkForComodification();
+				if (this.next == null) {
+					throw new NoSuchElementException();
+				}
+				final T value = this.next.value;
+				this.next = successor(this.next);
+				this.lastIndex = this.nextIndex++;
+				return value;
+			}
+
+			@Override
+			public void remove() {
+				if (this.lastIndex == -1) {
+					throw new IllegalStateException();
+				}
+				checkForComodification();
+				IndexedList.this.remove(this.lastIndex);
+				this.nextIndex = this.lastIndex;
+				this.lastIndex = -1;
+				this.expectedModCount = IndexedList.this.modCount;
+			}
+
+			private void checkForComodification() {
+				if (IndexedList.this.modCount != this.expectedModCount) {
+					throw new ConcurrentModificationException();
+				}
+			}
+		};
+	}
+
+	private Node<T> createNode(final T element) {
+		final Node<T> node = new Node<T>(element, this.random.nextInt());
+		index(node);
+		return node;
+	}
+
+	/**
+	 * Register a node in the maps used to find the position of its element.
+	 * The nodes of an element stored several times are all kept, because the
+	 * first occurrence may change when one of them is removed.
+	 */
+	private void index(final Node<T> node) {
+		if (node.value == null) {
+			return;
+		}
+		final Node<T> existing = this.nodes.get(node.value);
+		if (existing == null) {
+			this.nodes.put(node.value, node);
+			return;
+		}
+		List<Node<T>> occurrences = this.duplicates.get(node.value);
+		if (occurrences == null) {
+			occurrences = new ArrayList<Node<T>>(2);
+			occurrences.add(existing);
+			this.duplicates.put(node.value, occurrences);
+		}
+		occurrences.add(node);
+	}
+
+	private void unindex(final Node<T> node) {
+		if (node.value == null) {
+			return;
+		}
+		final List<Node<T>> occurrences = this.duplicates.get(node.value);
+		if (occurrences == null) {
+			if (this.nodes.get(node.value) == node) {
+				this.nodes.remove(node.value);
+			}
+			return;
+		}
+		occurrences.remove(node);
+		if (this.nodes.get(node.value) == node) {
+			this.nodes.put(node.value, occurrences.get(0));
+		}
+		if (occurrences.size() == 1) {
+			this.duplicates.remove(node.value);
+		}
+	}
+
+	private void checkPositionIndex(final int index) {
+		if (index < 0 || index > size()) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+		}
+	}
+
+	private Node<T> getNode(final int index) {
+		if (index < 0 || index >= size()) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+		}
+		Node<T> node = this.root;
+		int position = index;
+		while (true) {
+			final int leftSize = size(node.left);
+			if (position < leftSize) {
+				node = node.left;
+			} else if (position == leftSize) {
+				return node;
+			} else {
+				position -= leftSize + 1;
+				node = node.right;
+			}
+		}
+	}
+
+	private void setRoot(final Node<T> node) {
+		this.root = node;
+		if (node != null) {
+			node.parent = null;
+		}
+	}
+
+	/**
+	 * Build a treap containing the elements of a collection, in linear time
+	 */
+	private Node<T> build(final Collection<? extends T> collection) {
+		final List<Node<T>> stack = new ArrayList<Node<T>>();
+		for (final T element : collection) {
+			final Node<T> node = createNode(element);
+			Node<T> last = null;
+			while (!stack.isEmpty() && stack.get(stack.size() - 1).priority < node.priority) {
+				last = stack.remove(stack.size() - 1);
+			}
+			node.left = last;
+			if (!stack.isEmpty()) {
+				stack.get(stack.size() - 1).right = node;
+			}
+			stack.add(node);
+		}
+		final Node<T> built = stack.get(0);
+		updateAll(built);
+		return built;
+	}
+
+	/**
+	 * Recompute the sizes and the parents of a whole subtree
+	 */
+	private void updateAll(final Node<T> node) {
+		if (node == null) {
+			return;
+		}
+		updateAll(node.left);
+		updateAll(node.right);
+		update(node);
+	}
+
+	private static <T> int size(final Node<T> node) {
+		return node == null ? 0 : node.size;
+	}
+
+	private static <T> void update(final Node<T> node) {
+		node.size = 1 + size(node.left) + size(node.right);
+		if (node.left != null) {
+			node.left.parent = node;
+		}
+		if (node.right != null) {
+			node.right.parent = node;
+		}
+	}
+
+	/**
+	 * Split a tree in 2 trees: the first one contains the <code>count</code>
+	 * first elements, the second one the other elements
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static <T> Node<T>[] split(final Node<T> node, final int count) {
+		if (node == null) {
+			return new Node[] { null, null };
+		}
+		final int leftSize = size(node.left);
+		if (count <= leftSize) {
+			final Node<T>[] parts = split(node.left, count);
+			node.left = parts[1];
+			update(node);
+			if (parts[0] != null) {
+				parts[0].parent = null;
+			}
+			parts[1] = node;
+			return parts;
+		}
+		final Node<T>[] parts = split(node.right, count - leftSize - 1);
+		node.right = parts[0];
+		update(node);
+		if (parts[1] != null) {
+			parts[1].parent = null;
+		}
+		parts[0] = node;
+		return parts;
+	}
+
+	/**
+	 * Merge 2 trees, all the elements of the first one being placed before the
+	 * elements of the second one
+	 */
+	private static <T> Node<T> merge(final Node<T> first, final Node<T> second) {
+		if (first == null) {
+			return second;
+		}
+		if (second == null) {
+			return first;
+		}
+		if (first.priority > second.priority) {
+			first.right = merge(first.right, second);
+			update(first);
+			return first;
+		}
+		second.left = merge(first, second.left);
+		update(second);
+		return second;
+	}
+
+	private static <T> int rank(final Node<T> node) {
+		int rank = size(node.left);
+		Node<T> current = node;
+		while (current.parent != null) {
+			if (current == current.parent.right) {
+				rank += size(current.parent.left) + 1;
+			}
+			current = current.parent;
+		}
+		return rank;
+	}
+
+	private static <T> Node<T> first(final Node<T> node) {
+		Node<T> current = node;
+		while (current != null && current.left != null) {
+			current = current.left;
+		}
+		return current;
+	}
+
+	private static <T> Node<T> successor(final Node<T> node) {
+		if (node.right != null) {
+			return first(node.right);
+		}
+		Node<T> current = node;
+		while (current.parent != null && current == current.parent.right) {
+			current = current.parent;
+		}
+		return current.parent;
+	}
+
+	private static <T> List<Node<T>> nodesOf(final Node<T> node) {
+		final List<Node<T>> list = new ArrayList<Node<T>>();
+		for (Node<T> current = first(node); current != null; current = successor(current)) {
+			list.add(current);
+		}
+		return list;
+	}
+
+}
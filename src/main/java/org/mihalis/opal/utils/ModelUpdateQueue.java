@@ -0,0 +1,161 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Laurent CARON
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Laurent CARON (laurent.caron at gmail dot com) - initial API and implementation
+ *******************************************************************************/
+package org.mihalis.opal.utils;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.SWTException;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Widget;
+
+/**
+ * Instances of this class collect changes of the model of a widget posted by
+ * any thread, and apply them on the UI thread.<br/>
+ * The changes are stored in a lock-free queue. The first change posted wakes
+ * up the UI thread, which then applies the changes queued so far at once, as a
+ * single update of the widget. Changes posted during this update are applied
+ * by the next one, so a producer faster than the widget cannot hold the UI
+ * thread. Posting thousands of changes costs one
+ * <code>asyncExec</code> per batch instead of one per change.
+ * <p>
+ * The changes are applied in the order they have been posted. Changes posted
+ * after the widget has been disposed are ignored.
+ * </p>
+ *
+ * @param <W> Type of the updated widget
+ */
+public class ModelUpdateQueue<W extends Widget> {
+
+	/**
+	 * A change of the model of a widget
+	 *
+	 * @param <W> Type of the updated widget
+	 */
+	public interface Update<W> {
+		/**
+		 * Applies the change. This method is called on the UI thread.
+		 *
+		 * @param widget the updated widget
+		 */
+		void apply(W widget);
+	}
+
+	private final W widget;
+	private final Display display;
+	private final ConcurrentLinkedQueue<Update<W>> updates;
+	private final AtomicBoolean drainScheduled;
+	private final Runnable drain;
+
+	/**
+	 * Constructor
+	 *
+	 * @param widget the updated widget
+	 */
+	public ModelUpdateQueue(final W widget) {
+		if (widget == null) {
+			SWT.error(SWT.ERROR_NULL_ARGUMENT);
+		}
+		this.widget = widget;
+		this.display = widget.getDisplay();
+		this.updates = new ConcurrentLinkedQueue<Update<W>>();
+		this.drainScheduled = new AtomicBoolean();
+		this.drain = new Runnable() {
+			@Override
+			public void run() {
+				drain();
+			}
+		};
+	}
+
+	/**
+	 * Posts a change. This method can be called from any thread.
+	 *
+	 * @param update the change to apply to the widget
+	 *
+	 * @exception IllegalArgumentException
+	 *                <ul>
+	 *                <li>ERROR_NULL_ARGUMENT - if the update is null</li>
+	 *                </ul>
+	 */
+	public void post(final Update<W> update) {
+		if (update == null) {
+			SWT.error(SWT.ERROR_NULL_ARGUMENT);
+		}
+		this.updates.add(update);
+		if (this.drainScheduled.compareAndSet(false, true)) {
+			scheduleDrain();
+		}
+	}
+
+	/**
+	 * @return the widget updated by this queue
+	 */
+	public W getWidget() {
+		return this.widget;
+	}
+
+	/**
+	 * Applies a batch of changes to the widget. By default, the changes are
+	 * simply executed: widgets override this method to wrap them in their bulk
+	 * update methods.
+	 *
+	 * @param widget the updated widget
+	 * @param changes the queued changes
+	 */
+	protected void applyBatch(final W widget, final Runnable changes) {
+		changes.run();
+	}
+
+	private void scheduleDrain() {
+		if (this.display.isDisposed()) {
+			return;
+		}
+		try {
+			this.display.asyncExec(this.drain);
+		} catch (final SWTException e) {
+			// The display has been disposed in the meantime
+		}
+	}
+
+	private void drain() {
+		// Reset the flag first: a change posted while the batch is applied
+		// schedules a new drain
+		this.drainScheduled.set(false);
+		if (this.widget.isDisposed()) {
+			this.updates.clear();
+			return;
+		}
+		// Only the changes queued so far are applied, the other ones are
+		// applied by the drain scheduled when they have been posted
+		final int count = this.updates.size();
+		if (count == 0) {
+			return;
+		}
+		applyBatch(this.widget, new Runnable() {
+			@Override
+			public void run() {
+				for (int i = 0; i < count; i++) {
+					final Update<W> update = ModelUpdateQueue.this.updates.poll();
+					if (update == null) {
+						return;
+					}
+					update.apply(ModelUpdateQueue.this.widget);
+				}
+			}
+		});
+		if (!this.updates.isEmpty() && this.drainScheduled.compareAndSet(false, true)) {
+			scheduleDrain();
+		}
+	}
+
+}
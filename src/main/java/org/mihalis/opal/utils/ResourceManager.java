@@ -13,6 +13,24 @@ public class ResourceManager {
 
 	public static final String MEGABYTES = "megabytes";
 	public static final String PERFORM_GC = "performGC";
+	public static final String HEAP_MANAGER_EDEN = "heapManager.eden";
+	public static final String HEAP_MANAGER_SURVIVOR = "heapManager.survivor";
+	public static final String HEAP_MANAGER_OLD_GEN = "heapManager.oldGen";
+	public static final String HEAP_MANAGER_METASPACE = "heapManager.metaspace";
+	public static final String HEAP_MANAGER_ALLOCATION_RATE = "heapManager.allocationRate";
+	public static final String HEAP_MANAGER_RATE = "heapManager.rate";
+	public static final String HEAP_MANAGER_LAST_GC = "heapManager.lastGC";
+	public static final String HEAP_MANAGER_DIAGNOSTICS = "heapManager.diagnostics";
+	public static final String HEAP_MANAGER_DUMP_HEAP = "heapManager.dumpHeap";
+	public static final String HEAP_MANAGER_CLASS_HISTOGRAM = "heapManager.classHistogram";
+	public static final String HEAP_MANAGER_CLASS = "heapManager.class";
+	public static final String HEAP_MANAGER_INSTANCES = "heapManager.instances";
+	public static final String HEAP_MANAGER_BYTES = "heapManager.bytes";
+	public static final String HEAP_MANAGER_RUNNING = "heapManager.running";
+	public static final String HEAP_MANAGER_GC_RESULT = "heapManager.gcResult";
+	public static final String HEAP_MANAGER_DUMPING = "heapManager.dumping";
+	public static final String HEAP_MANAGER_DUMP_DONE = "heapManager.dumpDone";
+	public static final String HEAP_MANAGER_DIAGNOSTIC_ERROR = "heapManager.diagnosticError";
 
 	public static final String LOGIN = "login";
 	public static final String NAME = "name";
@@ -69,6 +87,12 @@ public class ResourceManager {
 
 	public static final String MULTICHOICE_MESSAGE = "multichoice.message";
 	public static final String MULTICHOICE_MESSAGE_PLURAL = "multichoice.message.plural";
+	public static final String MULTICHOICE_FILTER = "multichoice.filter";
+
+	public static final String DUAL_LIST_FILTER = "dualList.filter";
+	public static final String DUAL_LIST_LOADING = "dualList.loading";
+
+	public static final String COLUMN_BROWSER_LOADING = "columnBrowser.loading";
 
 	/**
 	 * Get a translated label
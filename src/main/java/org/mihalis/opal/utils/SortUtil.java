@@ -0,0 +1,267 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Laurent CARON
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Laurent CARON (laurent.caron at gmail dot com) - initial API and implementation
+ *******************************************************************************/
+package org.mihalis.opal.utils;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.eclipse.swt.SWT;
+
+/**
+ * This class provides useful methods to sort localized lists
+ */
+public class SortUtil {
+
+	/**
+	 * Under this number of elements, arrays are sorted on the calling thread
+	 */
+	public static final int PARALLEL_THRESHOLD = 8192;
+
+	private static ExecutorService executor;
+
+	/**
+	 * An element associated to its collation key, so that comparisons do not
+	 * need to compute the key again
+	 *
+	 * @param <T> Type of the element
+	 */
+	public static class Keyed<T> {
+		private final T element;
+		private final CollationKey key;
+
+		/**
+		 * Constructor
+		 *
+		 * @param element element
+		 * @param key collation key of the element
+		 */
+		public Keyed(final T element, final CollationKey key) {
+			this.element = element;
+			this.key = key;
+		}
+
+		/**
+		 * @return the element
+		 */
+		public T getElement() {
+			return this.element;
+		}
+
+		/**
+		 * @return the collation key of the element
+		 */
+		public CollationKey getKey() {
+			return this.key;
+		}
+	}
+
+	/**
+	 * Creates a comparator of collation keys
+	 *
+	 * @param direction SWT.UP for an ascending order, SWT.DOWN for a
+	 *            descending order
+	 * @return a comparator of keyed elements
+	 */
+	public static <T> Comparator<Keyed<T>> createComparator(final int direction) {
+		final int sign = direction == SWT.DOWN ? -1 : 1;
+		return new Comparator<Keyed<T>>() {
+			@Override
+			public int compare(final Keyed<T> first, final Keyed<T> second) {
+				return sign * first.key.compareTo(second.key);
+			}
+		};
+	}
+
+	/**
+	 * Returns the collation key of a text
+	 *
+	 * @param collator collator
+	 * @param text text (null is considered as an empty string)
+	 * @return the collation key of the text
+	 */
+	public static CollationKey getCollationKey(final Collator collator, final String text) {
+		return collator.getCollationKey(text == null ? "" : text);
+	}
+
+	/**
+	 * Sorts an array. The sort is stable: equal elements are not reordered.
+	 * Above <code>PARALLEL_THRESHOLD</code> elements, parts of the array are
+	 * sorted on several threads and then merged.
+	 *
+	 * @param array array to sort
+	 * @param comparator comparator
+	 */
+	public static <T> void stableSort(final T[] array, final Comparator<? super T> comparator) {
+		final int numberOfThreads = Math.min(Runtime.getRuntime().availableProcessors(), array.length / (PARALLEL_THRESHOLD / 2));
+		if (array.length < PARALLEL_THRESHOLD || numberOfThreads < 2) {
+			Arrays.sort(array, comparator);
+			return;
+		}
+
+		// Sort the chunks in parallel
+		final int[] bounds = new int[numberOfThreads + 1];
+		for (int i = 0; i <= numberOfThreads; i++) {
+			bounds[i] = (int) ((long) array.length * i / numberOfThreads);
+		}
+		final List<Future<?>> sorts = new ArrayList<Future<?>>(numberOfThreads);
+		for (int i = 0; i < numberOfThreads; i++) {
+			final int from = bounds[i];
+			final int to = bounds[i + 1];
+			sorts.add(getExecutor().submit(new Runnable() {
+				@Override
+				public void run() {
+					Arrays.sort(array, from, to, comparator);
+				}
+			}));
+		}
+		waitFor(sorts);
+
+		// Merge the chunks 2 by 2, the merges of a pass being done in parallel
+		@SuppressWarnings("unchecked")
+		final T[] buffer = (T[]) new Object[array.length];
+		int[] currentBounds = bounds;
+		T[] source = array;
+		T[] destination = buffer;
+		while (currentBounds.length > 2) {
+			final int numberOfChunks = currentBounds.length - 1;
+			final int[] nextBounds = new int[(numberOfChunks + 1) / 2 + 1];
+			final List<Future<?>> merges = new ArrayList<Future<?>>((numberOfChunks + 1) / 2);
+			for (int i = 0; i < numberOfChunks; i += 2) {
+				final int from = currentBounds[i];
+				final int middle = currentBounds[i + 1];
+				final int to = i + 2 < currentBounds.length ? currentBounds[i + 2] : middle;
+				nextBounds[i / 2] = from;
+				final T[] mergeSource = source;
+				final T[] mergeDestination = destination;
+				merges.add(getExecutor().submit(new Runnable() {
+					@Override
+					public void run() {
+						merge(mergeSource, mergeDestination, from, middle, to, comparator);
+					}
+				}));
+			}
+			nextBounds[nextBounds.length - 1] = array.length;
+			waitFor(merges);
+			currentBounds = nextBounds;
+			final T[] temp = source;
+			source = destination;
+			destination = temp;
+		}
+		if (source != array) {
+			System.arraycopy(source, 0, array, 0, array.length);
+		}
+	}
+
+	/**
+	 * Creates an array of keyed elements
+	 *
+	 * @param size size of the array
+	 * @return a new array
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public static <T> Keyed<T>[] newKeyedArray(final int size) {
+		return new Keyed[size];
+	}
+
+	/**
+	 * Finds where an element should be inserted in a sorted list. If the list
+	 * contains elements equal to this element, the position after the last one
+	 * is returned, so that the insertion is stable.
+	 *
+	 * @param list sorted list
+	 * @param element element to insert
+	 * @param comparator comparator used to sort the list
+	 * @return the index where the element should be inserted
+	 */
+	public static <T> int insertionPoint(final List<? extends T> list, final T element, final Comparator<? super T> comparator) {
+		int low = 0;
+		int high = list.size();
+		while (low < high) {
+			final int middle = (low + high) >>> 1;
+			if (comparator.compare(list.get(middle), element) <= 0) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	private static <T> void merge(final T[] source, final T[] destination, final int from, final int middle, final int to, final Comparator<? super T> comparator) {
+		int left = from;
+		int right = middle;
+		int index = from;
+		while (left < middle && right < to) {
+			// Take the left element on equality to keep the sort stable
+			if (comparator.compare(source[right], source[left]) < 0) {
+				destination[index++] = source[right++];
+			} else {
+				destination[index++] = source[left++];
+			}
+		}
+		System.arraycopy(source, left, destination, index, middle - left);
+		index += middle - left;
+		System.arraycopy(source, right, destination, index, to - right);
+	}
+
+	/**
+	 * @return the executor shared by all sorts, created on the first parallel
+	 *         sort
+	 */
+	private static synchronized ExecutorService getExecutor() {
+		if (executor == null) {
+			executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+				@Override
+				public Thread newThread(final Runnable runnable) {
+					final Thread thread = new Thread(runnable, "Opal sort");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return executor;
+	}
+
+	private static void waitFor(final List<Future<?>> tasks) {
+		boolean interrupted = false;
+		try {
+			for (final Future<?> task : tasks) {
+				while (true) {
+					try {
+						task.get();
+						break;
+					} catch (final InterruptedException e) {
+						interrupted = true;
+					} catch (final ExecutionException e) {
+						if (e.getCause() instanceof RuntimeException) {
+							throw (RuntimeException) e.getCause();
+						}
+						throw new RuntimeException(e.getCause());
+					}
+				}
+			}
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+}
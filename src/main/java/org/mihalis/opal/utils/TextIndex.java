@@ -0,0 +1,174 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Laurent CARON
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Laurent CARON (laurent.caron at gmail dot com) - initial API and implementation
+ *******************************************************************************/
+package org.mihalis.opal.utils;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Instances of this class index elements by the grams (sequences of 1 to 3
+ * characters) of a text associated to each element, in order to find quickly
+ * the elements whose text contains a given string. The search is not case
+ * sensitive. A query of 1 or 2 characters is answered directly by its gram,
+ * a longer query by its rarest trigram.<br/>
+ * The index is maintained incrementally: adding or removing an element only
+ * costs the number of grams of its text.
+ *
+ * @param <T> Type of objects stored in this index
+ */
+public class TextIndex<T> {
+	private static final int GRAM_LENGTH = 3;
+
+	private final Map<T, String> texts;
+	private final Map<String, Set<T>> grams;
+
+	/**
+	 * Constructor
+	 */
+	public TextIndex() {
+		this.texts = new IdentityHashMap<T, String>();
+		this.grams = new HashMap<String, Set<T>>();
+	}
+
+	/**
+	 * Add an element to the index. If the element is already indexed, its text
+	 * is replaced.
+	 *
+	 * @param element element to index
+	 * @param text text associated to this element
+	 */
+	public void add(final T element, final String text) {
+		remove(element);
+		final String normalizedText = normalize(text);
+		this.texts.put(element, normalizedText);
+		for (int length = 1; length <= GRAM_LENGTH; length++) {
+			for (int i = 0; i + length <= normalizedText.length(); i++) {
+				final String gram = normalizedText.substring(i, i + length);
+				Set<T> elements = this.grams.get(gram);
+				if (elements == null) {
+					elements = Collections.newSetFromMap(new IdentityHashMap<T, Boolean>());
+					this.grams.put(gram, elements);
+				}
+				elements.add(element);
+			}
+		}
+	}
+
+	/**
+	 * Remove an element from the index
+	 *
+	 * @param element element to remove
+	 */
+	public void remove(final T element) {
+		final String normalizedText = this.texts.remove(element);
+		if (normalizedText == null) {
+			return;
+		}
+		for (int length = 1; length <= GRAM_LENGTH; length++) {
+			for (int i = 0; i + length <= normalizedText.length(); i++) {
+				final String gram = normalizedText.substring(i, i + length);
+				final Set<T> elements = this.grams.get(gram);
+				if (elements != null) {
+					elements.remove(element);
+					if (elements.isEmpty()) {
+						this.grams.remove(gram);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Remove all elements from the index
+	 */
+	public void clear() {
+		this.texts.clear();
+		this.grams.clear();
+	}
+
+	/**
+	 * @param element element
+	 * @return <code>true</code> if the element is indexed
+	 */
+	public boolean contains(final T element) {
+		return this.texts.containsKey(element);
+	}
+
+	/**
+	 * @return the number of indexed elements
+	 */
+	public int size() {
+		return this.texts.size();
+	}
+
+	/**
+	 * @param element an indexed element
+	 * @param query a string
+	 * @return <code>true</code> if the text of the element contains the query
+	 *         (case is ignored)
+	 */
+	public boolean matches(final T element, final String query) {
+		final String normalizedText = this.texts.get(element);
+		return normalizedText != null && normalizedText.contains(normalize(query));
+	}
+
+	/**
+	 * Find the elements whose text contains a string
+	 *
+	 * @param query string to look for (case is ignored)
+	 * @return a set (compared by identity) of all the elements whose text
+	 *         contains the query
+	 */
+	public Set<T> search(final String query) {
+		final String normalizedQuery = normalize(query);
+		final Set<T> result = Collections.newSetFromMap(new IdentityHashMap<T, Boolean>());
+
+		if (normalizedQuery.length() == 0) {
+			result.addAll(this.texts.keySet());
+			return result;
+		}
+		if (normalizedQuery.length() < GRAM_LENGTH) {
+			// The query is a gram: its elements are exactly the result
+			final Set<T> elements = this.grams.get(normalizedQuery);
+			if (elements != null) {
+				result.addAll(elements);
+			}
+			return result;
+		}
+
+		// Start with the smallest set of candidates
+		Set<T> candidates = null;
+		for (int i = 0; i + GRAM_LENGTH <= normalizedQuery.length(); i++) {
+			final Set<T> elements = this.grams.get(normalizedQuery.substring(i, i + GRAM_LENGTH));
+			if (elements == null) {
+				return result;
+			}
+			if (candidates == null || elements.size() < candidates.size()) {
+				candidates = elements;
+			}
+		}
+
+		for (final T candidate : candidates) {
+			if (this.texts.get(candidate).contains(normalizedQuery)) {
+				result.add(candidate);
+			}
+		}
+		return result;
+	}
+
+	private static String normalize(final String text) {
+		return text == null ? "" : text.toLowerCase();
+	}
+
+}
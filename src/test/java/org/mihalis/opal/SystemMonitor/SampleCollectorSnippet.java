@@ -0,0 +1,42 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Laurent CARON.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Laurent CARON (laurent.caron at gmail dot com) - initial API and implementation
+ *******************************************************************************/
+package org.mihalis.opal.SystemMonitor;
+
+import java.util.Map;
+
+import org.mihalis.opal.systemMonitor.SampleBucket;
+import org.mihalis.opal.systemMonitor.SampleCollector;
+import org.mihalis.opal.systemMonitor.SampleCollectorListener;
+import org.mihalis.opal.systemMonitor.SampleIdentifier;
+
+/**
+ * A simple snippet for the SampleCollector, used without any SWT widget
+ */
+public class SampleCollectorSnippet {
+	public static void main(final String[] args) throws InterruptedException {
+		final SampleCollector collector = new SampleCollector(20, 1000, 60);
+		collector.addSample(SampleIdentifier.CPU_USAGE);
+		collector.addSample(SampleIdentifier.HEAP_MEMORY);
+		collector.addSample("random", new RandomSample());
+		collector.addListener(new SampleCollectorListener() {
+
+			@Override
+			public void samplesRolledUp(final Map<String, SampleBucket> buckets) {
+				for (final Map.Entry<String, SampleBucket> entry : buckets.entrySet()) {
+					System.out.println(entry.getKey() + " : " + entry.getValue());
+				}
+			}
+		});
+		collector.start();
+		Thread.sleep(5000);
+		collector.stop();
+	}
+}
@@ -0,0 +1,75 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Laurent CARON
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Laurent CARON (laurent.caron at gmail dot com) - initial API and implementation
+ *******************************************************************************/
+package org.mihalis.opal.columns;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Shell;
+import org.mihalis.opal.utils.SWTGraphicUtil;
+
+/**
+ * This snippet demonstrates the ColumnBrowser widget, with a content provider
+ * that browses the file system
+ */
+public class ColumnsContentProviderSnippet {
+
+	/**
+	 * @param args
+	 */
+	public static void main(final String[] args) {
+		final Display display = new Display();
+		final Shell shell = new Shell(display);
+		shell.setLayout(new GridLayout(1, false));
+
+		final ColumnBrowserWidget cbw = new ColumnBrowserWidget(shell, SWT.NONE);
+		cbw.setLayoutData(new GridData(GridData.FILL, GridData.FILL, true, true));
+		cbw.setContentProvider(new ColumnContentProvider() {
+
+			@Override
+			public Object[] getChildren(final Object element) {
+				final File[] files = element == null ? File.listRoots() : ((File) element).listFiles();
+				if (files == null) {
+					return new Object[0];
+				}
+				Arrays.sort(files);
+				return files;
+			}
+
+			@Override
+			public boolean hasChildren(final Object element) {
+				return ((File) element).isDirectory();
+			}
+
+			@Override
+			public void updateItem(final ColumnItem item) {
+				final File file = (File) item.getData();
+				item.setText(file.getName().length() == 0 ? file.getPath() : file.getName());
+			}
+		}, null);
+
+		shell.setSize(640, 350);
+		shell.open();
+		SWTGraphicUtil.centerShell(shell);
+
+		while (!shell.isDisposed()) {
+			if (!display.readAndDispatch()) {
+				display.sleep();
+			}
+		}
+		display.dispose();
+	}
+
+}
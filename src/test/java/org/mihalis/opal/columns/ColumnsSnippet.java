@@ -37,8 +37,10 @@ public class ColumnsSnippet {
 		final ColumnBrowserWidget cbw = new ColumnBrowserWidget(shell, SWT.NONE);
 		cbw.setLayoutData(new GridData(GridData.FILL, GridData.FILL, true, true, 2, 1));
 
+		cbw.beginUpdate();
 		final ColumnItem item = createColors(cbw);
 		createSports(cbw);
+		cbw.endUpdate();
 
 		createShowSelectionButton(shell, cbw);
 		createForceSelection(shell, cbw, item);
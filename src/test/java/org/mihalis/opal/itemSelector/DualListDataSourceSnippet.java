@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Laurent CARON.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Laurent CARON (laurent.caron at gmail dot com) - initial API and implementation
+ *******************************************************************************/
+package org.mihalis.opal.itemSelector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Shell;
+
+/**
+ * A simple snippet for the DualList Widget, with items loaded page by page from
+ * a (slow) data source
+ */
+public class DualListDataSourceSnippet {
+
+	public static void main(final String[] args) {
+		final Display display = new Display();
+		final Shell shell = new Shell(display);
+		shell.setText("Dual List Snippet");
+		shell.setSize(600, 600);
+		shell.setLayout(new GridLayout(1, false));
+
+		final DualList dl = new DualList(shell, SWT.VIRTUAL);
+		dl.setDataSource(new DLDataSource() {
+
+			@Override
+			public int getItemCount() {
+				return 500000;
+			}
+
+			@Override
+			public List<DLItem> getItems(final int start, final int count) {
+				// Simulate a database query
+				try {
+					Thread.sleep(200);
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				final List<DLItem> items = new ArrayList<DLItem>(count);
+				for (int i = start; i < Math.min(start + count, getItemCount()); i++) {
+					final DLItem item = new DLItem("Row #" + i);
+					item.setData(i);
+					items.add(item);
+				}
+				return items;
+			}
+
+			@Override
+			public Object getKey(final DLItem item) {
+				return item.getData();
+			}
+		});
+
+		dl.addSelectionChangeListener(new SelectionChangeListener() {
+
+			@Override
+			public void widgetSelected(final SelectionChangeEvent e) {
+				System.out.println(e.getItems().size() + " item(s) moved");
+			}
+		});
+
+		dl.setLayoutData(new GridData(GridData.FILL, GridData.FILL, true, true));
+
+		shell.open();
+
+		while (!shell.isDisposed()) {
+			if (!display.readAndDispatch()) {
+				display.sleep();
+			}
+		}
+		display.dispose();
+
+	}
+
+}
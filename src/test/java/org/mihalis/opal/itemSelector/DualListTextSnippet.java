@@ -38,7 +38,7 @@ public class DualListTextSnippet {
 		shell.setSize(600, 600);
 		shell.setLayout(new GridLayout(1, false));
 
-		final DualList dl = new DualList(shell, SWT.NONE);
+		final DualList dl = new DualList(shell, SWT.SEARCH);
 		dl.setItems(createItems(shell));
 		dl.addSelectionListener(new SelectionListener() {
 
@@ -154,7 +154,7 @@ public class MultiChoiceSnippet {
 		for (int i = 0; i < 1000; i++) {
 			data.add("Data #" + i);
 		}
-		final MultiChoice<String> mcLotOfData = new MultiChoice<String>(shell, SWT.NONE);
+		final MultiChoice<String> mcLotOfData = new MultiChoice<String>(shell, SWT.SEARCH);
 		mcLotOfData.setLayoutData(new GridData(GridData.FILL, GridData.BEGINNING, true, true));
 		mcLotOfData.setLabelProvider(new MultiChoiceLabelProvider() {
 			@Override
@@ -0,0 +1,73 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Laurent CARON.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Laurent CARON (laurent.caron at gmail dot com) - initial API and implementation
+ *******************************************************************************/
+package org.mihalis.opal.textAssist;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Shell;
+
+/**
+ * A snippet for the TextAssist Widget, with a (slow) asynchronous content
+ * provider
+ */
+public class TextAssistAsyncSnippet {
+	public static void main(final String[] args) {
+		final Display display = new Display();
+		final Shell shell = new Shell(display);
+		shell.setLayout(new GridLayout());
+
+		final TextAssistContentProvider contentProvider = new AsyncTextAssistContentProvider() {
+
+			@Override
+			public List<String> getContent(final String entry, final TextAssistQuery query) {
+				final List<String> returnedList = new ArrayList<String>();
+				for (int i = 0; i < 100000 && returnedList.size() < getMaxNumberOfLines(); i++) {
+					// Simulate a slow search
+					if (i % 1000 == 0) {
+						if (query.isCancelled()) {
+							return null;
+						}
+						try {
+							Thread.sleep(5);
+						} catch (final InterruptedException e) {
+							Thread.currentThread().interrupt();
+							return null;
+						}
+					}
+					final String value = "Entry #" + i;
+					if (value.contains(entry)) {
+						returnedList.add(value);
+					}
+				}
+				return returnedList;
+			}
+		};
+
+		final TextAssist text = new TextAssist(shell, SWT.SINGLE | SWT.BORDER, contentProvider);
+		text.setDelay(150);
+		text.setLayoutData(new GridData(150, SWT.DEFAULT));
+		shell.pack();
+		shell.open();
+
+		while (!shell.isDisposed()) {
+			if (!display.readAndDispatch()) {
+				display.sleep();
+			}
+		}
+		display.dispose();
+	}
+
+}